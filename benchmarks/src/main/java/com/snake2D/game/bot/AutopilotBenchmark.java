@@ -0,0 +1,47 @@
+package com.snake2D.game.bot;
+
+import com.snake2D.game.simulation.BoardLayout;
+import com.snake2D.game.simulation.Simulation;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Planning a step of the autopilot on boards of different size and fill ratio.
+ * The food lies right behind the tail, as far from the head as it gets, so the
+ * search covers most of the board and the way to it has to be checked.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class AutopilotBenchmark
+{
+    @Param( { "16", "64", "256", "1024" } )
+    public int tiles;
+
+    @Param( { "0.01", "0.5" } )
+    public double fillRatio;
+
+    private Simulation simulation;
+    private Autopilot autopilot;
+
+    @Setup( Level.Trial )
+    public void setUp()
+    {
+        simulation = new Simulation( tiles, tiles, 42 );
+
+        new BoardLayout( simulation, fillRatio ).reset();
+
+        autopilot = new Autopilot();
+        autopilot.plan( simulation );
+    }
+
+    @Benchmark
+    public int plan()
+    {
+        return autopilot.plan( simulation );
+    }
+}
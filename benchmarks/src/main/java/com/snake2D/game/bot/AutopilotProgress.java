@@ -0,0 +1,62 @@
+package com.snake2D.game.bot;
+
+import com.snake2D.game.simulation.Simulation;
+
+/**
+ * Checks that the autopilot keeps eating: it plays games without a window
+ * until they end and fails with exit code 1 if one of them goes more than
+ * the given number of steps per tile without the snake growing, which means
+ * it is circling forever. Prints the average length reached.
+ *
+ * java -cp benchmarks/target/benchmarks.jar com.snake2D.game.bot.AutopilotProgress [tiles] [games] [steps per tile]
+ */
+public class AutopilotProgress
+{
+    public static void main( String[] args )
+    {
+        int tiles = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : 20;
+        int games = args.length > 1 ? Integer.parseInt( args[ 1 ] ) : 20;
+        int stepsPerTile = args.length > 2 ? Integer.parseInt( args[ 2 ] ) : 10;
+
+        long maxStepsWithoutGrowing = ( long ) stepsPerTile * tiles * tiles;
+
+        int stalled = 0;
+        long lengths = 0;
+
+        for( int seed = 0; seed < games; seed++ )
+        {
+            Autopilot autopilot = new Autopilot();
+            Simulation simulation = new Simulation( tiles, tiles, seed );
+
+            long steps = 0;
+            long lastGrowth = 0;
+            int length = simulation.getBodyLength();
+
+            while( !simulation.isGameOver() && steps - lastGrowth <= maxStepsWithoutGrowing )
+            {
+                simulation.step( autopilot.plan( simulation ) );
+                steps++;
+
+                if( simulation.getBodyLength() != length )
+                {
+                    length = simulation.getBodyLength();
+                    lastGrowth = steps;
+                }
+            }
+
+            lengths += simulation.getSegmentCount();
+
+            if( !simulation.isGameOver() )
+            {
+                stalled++;
+                System.out.println( "seed " + seed + " stopped growing at length " + length + " after step " + lastGrowth );
+            }
+        }
+
+        System.out.println( String.format( "%dx%d tiles, %d of %d games stopped growing, average length %.1f",
+                tiles, tiles, stalled, games, ( double ) lengths / games ) );
+
+        if( stalled > 0 )
+            System.exit( 1 );
+    }
+}
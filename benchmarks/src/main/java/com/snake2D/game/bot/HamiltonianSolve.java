@@ -0,0 +1,89 @@
+package com.snake2D.game.bot;
+
+import com.snake2D.game.simulation.Simulation;
+
+import java.io.File;
+
+/**
+ * Plays games with the Hamiltonian bot without a window as fast as possible.
+ * It prints the time mapping the cached cycle took, how many games filled
+ * the board, the average length reached and the time of a game. It fails if
+ * a game ended before the board was full.
+ *
+ * java -cp benchmarks/target/benchmarks.jar com.snake2D.game.bot.HamiltonianSolve [tiles] [games]
+ */
+public class HamiltonianSolve
+{
+    public static void main( String[] args )
+    {
+        int tiles = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : 20;
+        int games = args.length > 1 ? Integer.parseInt( args[ 1 ] ) : 100;
+
+        File cacheDirectory = HamiltonianBot.DEFAULT_CACHE_DIRECTORY;
+        boolean cached = new File( cacheDirectory, "cycle-" + tiles + "x" + tiles + ".bin" ).isFile();
+
+        HamiltonianBot bot = new HamiltonianBot( cacheDirectory );
+
+        long start = System.nanoTime();
+        bot.prepare( tiles, tiles );
+        long prepareNanos = System.nanoTime() - start;
+
+        System.out.println( tiles + "x" + tiles + " tiles, cycle " + ( cached ? "mapped" : "built and cached" ) + " in "
+                + String.format( "%.2f ms", prepareNanos / 1e6 ) );
+
+        // warm up, then play the same seeds again
+        for( int seed = 0; seed < games; seed++ )
+            play( bot, tiles, seed );
+
+        int fullBoards = 0;
+        long lengths = 0;
+        long steps = 0;
+        StringBuilder failedSeeds = new StringBuilder();
+
+        start = System.nanoTime();
+
+        for( int seed = 0; seed < games; seed++ )
+        {
+            Simulation simulation = new Simulation( tiles, tiles, seed );
+            steps += play( bot, simulation );
+
+            lengths += simulation.getSegmentCount();
+            if( simulation.getSegmentCount() == tiles * tiles )
+                fullBoards++;
+            else
+                failedSeeds.append( ' ' ).append( seed );
+        }
+
+        double millis = ( System.nanoTime() - start ) / 1e6;
+
+        System.out.println( String.format( "%d of %d games filled the board, average length %.1f of %d, %.2f ms and %d steps per game",
+                fullBoards, games, ( double ) lengths / games, tiles * tiles, millis / games, steps / games ) );
+
+        if( fullBoards < games )
+        {
+            System.out.println( "seeds ending before the board was full:" + failedSeeds );
+            System.exit( 1 );
+        }
+    }
+
+    private static long play( HamiltonianBot bot, int tiles, long seed )
+    {
+        return play( bot, new Simulation( tiles, tiles, seed ) );
+    }
+
+    /**
+     * Plays the game to its end and returns the steps taken.
+     */
+    private static long play( HamiltonianBot bot, Simulation simulation )
+    {
+        long steps = 0;
+
+        while( !simulation.isGameOver() )
+        {
+            simulation.step( bot.plan( simulation ) );
+            steps++;
+        }
+
+        return steps;
+    }
+}
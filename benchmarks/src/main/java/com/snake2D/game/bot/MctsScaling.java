@@ -0,0 +1,71 @@
+package com.snake2D.game.bot;
+
+import com.snake2D.game.simulation.Simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures how the Monte-Carlo tree search scales with the number of workers.
+ * It plans the same steps of a game with 1, 2, 4, ... workers up to twice the
+ * cores and prints the futures played per second and the speedup over a
+ * single worker, which should grow about linearly up to the number of cores.
+ *
+ * java -cp benchmarks/target/benchmarks.jar com.snake2D.game.bot.MctsScaling [tiles] [budget ms] [steps]
+ */
+public class MctsScaling
+{
+    // steps the autopilot plays first, so the search starts on a snake of some length
+    private static final int OPENING_STEPS = 300;
+
+    public static void main( String[] args )
+    {
+        int tiles = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : 32;
+        long budgetNanos = ( args.length > 1 ? Long.parseLong( args[ 1 ] ) : 10 ) * 1000000L;
+        int steps = args.length > 2 ? Integer.parseInt( args[ 2 ] ) : 200;
+
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        List<Integer> workerCounts = new ArrayList<Integer>();
+        for( int workers = 1; workers <= 2 * cores; workers *= 2 )
+            workerCounts.add( workers );
+
+        Simulation opening = new Simulation( tiles, tiles, 42 );
+        Autopilot autopilot = new Autopilot();
+
+        for( int i = 0; i < OPENING_STEPS && !opening.isGameOver(); i++ )
+            opening.step( autopilot.plan( opening ) );
+
+        System.out.println( tiles + "x" + tiles + " tiles, snake of " + opening.getSegmentCount() + ", "
+                + budgetNanos / 1000000 + " ms per step, " + cores + " cores" );
+        System.out.println( "workers   playouts/s   speedup" );
+
+        Simulation simulation = new Simulation( tiles, tiles, 0 );
+        double singlePlayoutsPerSecond = 0;
+
+        for( int workers : workerCounts )
+        {
+            MctsBot bot = new MctsBot( workers, budgetNanos );
+
+            // warm up, then play the same steps from the same opening for every worker count
+            simulation.copyFrom( opening );
+            for( int i = 0; i < steps / 4 && !simulation.isGameOver(); i++ )
+                simulation.step( bot.plan( simulation ) );
+
+            simulation.copyFrom( opening );
+            long playouts = bot.getPlayouts();
+            long start = System.nanoTime();
+
+            for( int i = 0; i < steps && !simulation.isGameOver(); i++ )
+                simulation.step( bot.plan( simulation ) );
+
+            double playoutsPerSecond = ( bot.getPlayouts() - playouts ) / ( ( System.nanoTime() - start ) / 1e9 );
+
+            if( workers == 1 )
+                singlePlayoutsPerSecond = playoutsPerSecond;
+
+            System.out.println( String.format( "%7d %12.0f %9.2f", workers, playoutsPerSecond,
+                    playoutsPerSecond / singlePlayoutsPerSecond ) );
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.snake2D.game.input;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.event.KeyEvent;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starting a tick of the keyboard state with a number of key events waiting in the queue.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( value = 1, jvmArgs = "-Djava.awt.headless=true" )
+@State( Scope.Thread )
+public class KeyboardInputHandlerBenchmark
+{
+    private static final int[] KEYS = { KeyEvent.VK_UP, KeyEvent.VK_LEFT, KeyEvent.VK_DOWN, KeyEvent.VK_RIGHT };
+
+    @Param( { "0", "8", "64" } )
+    public int eventsPerTick;
+
+    private KeyboardInputHandler handler;
+
+    private KeyEvent[] events;
+
+    @Setup( Level.Trial )
+    public void setUp()
+    {
+        handler = new KeyboardInputHandler();
+
+        Component source = new Canvas();
+
+        // every key is pressed and released again
+        events = new KeyEvent[ eventsPerTick ];
+        for( int i = 0; i < eventsPerTick; i++ )
+        {
+            int key = KEYS[ ( i / 2 ) % KEYS.length ];
+            int id = i % 2 == 0 ? KeyEvent.KEY_PRESSED : KeyEvent.KEY_RELEASED;
+
+            events[ i ] = new KeyEvent( source, id, 0, 0, key, KeyEvent.CHAR_UNDEFINED );
+        }
+    }
+
+    @Benchmark
+    public int update()
+    {
+        for( int i = 0; i < events.length; i++ )
+        {
+            if( events[ i ].getID() == KeyEvent.KEY_PRESSED )
+                handler.keyPressed( events[ i ] );
+            else
+                handler.keyReleased( events[ i ] );
+        }
+
+        handler.update();
+
+        return handler.getPressCount();
+    }
+}
@@ -0,0 +1,196 @@
+package com.snake2D.game.metrics;
+
+import com.snake2D.game.input.KeyboardInputHandler;
+import com.snake2D.game.input.TurnQueue;
+import com.snake2D.game.rendering.Java2DRenderer;
+import com.snake2D.game.rendering.RasterRenderer;
+import com.snake2D.game.rendering.Renderer;
+import com.snake2D.game.rendering.Snapshot;
+import com.snake2D.game.rendering.SnapshotPainter;
+import com.snake2D.game.rendering.StepChanges;
+import com.snake2D.game.rendering.TripleBuffer;
+import com.snake2D.game.simulation.BoardLayout;
+import com.snake2D.game.simulation.Simulation;
+
+import java.awt.*;
+import java.awt.event.KeyEvent;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Checks that ticks and frames allocate nothing once the game is warm.
+ * It runs the same work as the simulation and render threads, headless and
+ * on one thread, and measures every tick and frame with the allocation
+ * counter of the thread. Exits with 1 if any of them allocated.
+ *
+ * java -cp benchmarks/target/benchmarks.jar com.snake2D.game.metrics.AllocationBudget [tiles] [ticks] [software|java2d]
+ */
+public class AllocationBudget
+{
+    // the JIT allocates a little on the thread while it swaps in compiled code,
+    // so warming up ends only after a round without any compilation
+    private static final int WARMUP_ROUND_TICKS = 20000;
+    private static final int MAX_WARMUP_ROUNDS = 50;
+    private static final int CALIBRATION_ROUNDS = 1000;
+
+    private static final long STEP_DURATION = 100000000L;
+
+    private final com.sun.management.ThreadMXBean threads = ( com.sun.management.ThreadMXBean ) ManagementFactory.getThreadMXBean();
+    private final long threadId = Thread.currentThread().getId();
+
+    private final int tiles;
+
+    private final Simulation simulation;
+    private final BoardLayout layout;
+
+    private final KeyboardInputHandler keyboard = new KeyboardInputHandler();
+    private final KeyEvent pressed;
+    private final KeyEvent released;
+    private final TurnQueue turns = new TurnQueue( TurnQueue.DEFAULT_CAPACITY );
+
+    private final TripleBuffer<Snapshot> snapshots = new TripleBuffer<Snapshot>( new Snapshot(), new Snapshot(), new Snapshot() );
+    private final StepChanges changes = new StepChanges();
+    private final SnapshotPainter painter = new SnapshotPainter();
+    private final Renderer renderer;
+
+    private final FrameMetrics metrics = new FrameMetrics();
+
+    private long tick = 0;
+
+    public AllocationBudget( int tiles, Renderer renderer )
+    {
+        this.tiles = tiles;
+        this.renderer = renderer;
+
+        simulation = new Simulation( tiles, tiles, 42 );
+
+        layout = new BoardLayout( simulation, 0.5 );
+        layout.reset();
+
+        Component source = new Canvas();
+        pressed = new KeyEvent( source, KeyEvent.KEY_PRESSED, 0, 0, KeyEvent.VK_SPACE, KeyEvent.CHAR_UNDEFINED );
+        released = new KeyEvent( source, KeyEvent.KEY_RELEASED, 0, 0, KeyEvent.VK_SPACE, KeyEvent.CHAR_UNDEFINED );
+
+        painter.setViewSize( tiles * 16, tiles * 16 );
+    }
+
+    private void tick()
+    {
+        long start = System.nanoTime();
+
+        // what the AWT thread does between two ticks
+        keyboard.keyPressed( pressed );
+        keyboard.keyReleased( released );
+
+        keyboard.update();
+
+        // steer along the layout through the turn queue like a player would
+        turns.offer( layout.nextDirection(), start, simulation.getMoveDirection() );
+        simulation.step( turns.poll( start ) );
+        layout.keepFoodAway();
+
+        snapshots.getBack().capture( simulation, tiles, tiles, tick * STEP_DURATION, STEP_DURATION, changes );
+        snapshots.publish();
+
+        metrics.recordTick( System.nanoTime() - start, 0 );
+        tick++;
+    }
+
+    private void frame()
+    {
+        long start = System.nanoTime();
+
+        Snapshot snapshot = snapshots.acquire();
+        painter.paint( snapshot, renderer, snapshot.getStepTime() + STEP_DURATION / 2 );
+
+        metrics.recordFrame( System.nanoTime() - start, 0, 0 );
+    }
+
+    private long getAllocatedBytes()
+    {
+        return threads.getThreadAllocatedBytes( threadId );
+    }
+
+    /**
+     * Returns what reading the counter allocates by itself, if anything.
+     */
+    private long calibrate()
+    {
+        long overhead = Long.MAX_VALUE;
+
+        for( int i = 0; i < CALIBRATION_ROUNDS; i++ )
+        {
+            long before = getAllocatedBytes();
+            overhead = Math.min( overhead, getAllocatedBytes() - before );
+        }
+
+        return overhead;
+    }
+
+    public boolean run( int ticks )
+    {
+        CompilationMXBean compiler = ManagementFactory.getCompilationMXBean();
+
+        for( int round = 0; round < MAX_WARMUP_ROUNDS; round++ )
+        {
+            long compilationTime = compiler.getTotalCompilationTime();
+
+            for( int i = 0; i < WARMUP_ROUND_TICKS; i++ )
+            {
+                tick();
+                frame();
+            }
+
+            if( compiler.getTotalCompilationTime() == compilationTime )
+                break;
+        }
+
+        long overhead = calibrate();
+
+        int allocatingTicks = 0;
+        int allocatingFrames = 0;
+        long tickBytes = 0;
+        long frameBytes = 0;
+
+        for( int i = 0; i < ticks; i++ )
+        {
+            long before = getAllocatedBytes();
+            tick();
+            long bytes = getAllocatedBytes() - before - overhead;
+
+            if( bytes > 0 )
+            {
+                allocatingTicks++;
+                tickBytes += bytes;
+            }
+
+            before = getAllocatedBytes();
+            frame();
+            bytes = getAllocatedBytes() - before - overhead;
+
+            if( bytes > 0 )
+            {
+                allocatingFrames++;
+                frameBytes += bytes;
+            }
+        }
+
+        System.out.println( tiles + "x" + tiles + " tiles, " + ticks + " ticks, counter overhead " + overhead + " bytes" );
+        System.out.println( "ticks allocating:  " + allocatingTicks + " (" + tickBytes + " bytes)" );
+        System.out.println( "frames allocating: " + allocatingFrames + " (" + frameBytes + " bytes)" );
+
+        return allocatingTicks == 0 && allocatingFrames == 0;
+    }
+
+    public static void main( String[] args )
+    {
+        int tiles = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : 64;
+        int ticks = args.length > 1 ? Integer.parseInt( args[ 1 ] ) : 100000;
+
+        Renderer renderer = args.length > 2 && args[ 2 ].equals( "java2d" ) ? new Java2DRenderer() : new RasterRenderer();
+
+        boolean withinBudget = new AllocationBudget( tiles, renderer ).run( ticks );
+
+        System.exit( withinBudget ? 0 : 1 );
+    }
+}
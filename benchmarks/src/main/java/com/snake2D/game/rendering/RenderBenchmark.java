@@ -0,0 +1,98 @@
+package com.snake2D.game.rendering;
+
+import com.snake2D.game.basic.Options;
+import com.snake2D.game.simulation.BoardLayout;
+import com.snake2D.game.simulation.Simulation;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drawing frames into an off-screen image, the same way the render thread does.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( value = 1, jvmArgs = "-Djava.awt.headless=true" )
+@State( Scope.Thread )
+public class RenderBenchmark
+{
+    // the window never gets larger than this, bigger boards scroll
+    private static final int MAX_VIEW_SIZE = 1024;
+
+    private static final long STEP_DURATION = 100000000L;
+
+    @Param( { "16", "64", "256" } )
+    public int tiles;
+
+    @Param( { "0.1", "0.5", "0.9" } )
+    public double fillRatio;
+
+    @Param( { "java2d", "software" } )
+    public String renderer;
+
+    // sliding segments move every visible one each frame, resting ones only change around the head, tail and food
+    @Param( { "true", "false" } )
+    public boolean fluid;
+
+    private Simulation simulation;
+    private BoardLayout layout;
+
+    private final Snapshot snapshot = new Snapshot();
+    private final StepChanges changes = new StepChanges();
+    private final SnapshotPainter painter = new SnapshotPainter();
+    private Renderer target;
+
+    private int viewColumns;
+    private int viewRows;
+
+    @Setup( Level.Trial )
+    public void setUp()
+    {
+        Options.fluid = fluid;
+
+        simulation = new Simulation( tiles, tiles, 42 );
+
+        layout = new BoardLayout( simulation, fillRatio );
+        layout.reset();
+
+        int viewSize = Math.min( MAX_VIEW_SIZE, tiles * Options.tileSize );
+        viewColumns = viewSize / Options.tileSize;
+        viewRows = viewSize / Options.tileSize;
+
+        painter.setViewSize( viewSize, viewSize );
+
+        target = "software".equals( renderer ) ? new RasterRenderer() : new Java2DRenderer();
+
+        snapshot.capture( simulation, viewColumns, viewRows, 0, STEP_DURATION, changes );
+        painter.paint( snapshot, target, 0 );
+    }
+
+    /**
+     * A frame after the snake moved one tile.
+     */
+    @Benchmark
+    public BufferedImage stepFrame()
+    {
+        simulation.step( layout.nextDirection() );
+        layout.keepFoodAway();
+
+        snapshot.capture( simulation, viewColumns, viewRows, 0, STEP_DURATION, changes );
+        painter.paint( snapshot, target, STEP_DURATION / 2 );
+
+        return target.getImage();
+    }
+
+    /**
+     * A frame showing the same state as the one before, nothing needs to be repainted.
+     */
+    @Benchmark
+    public BufferedImage unchangedFrame()
+    {
+        painter.paint( snapshot, target, STEP_DURATION / 2 );
+
+        return target.getImage();
+    }
+}
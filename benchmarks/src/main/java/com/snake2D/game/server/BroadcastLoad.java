@@ -0,0 +1,173 @@
+package com.snake2D.game.server;
+
+import com.snake2D.game.basic.Options;
+import com.snake2D.game.metrics.FrameMetrics;
+import com.snake2D.game.metrics.LatencyHistogram;
+import com.snake2D.game.simulation.Simulation;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Runs the game server with many clients connected over loopback, one of
+ * them playing with random turns, and the snake stepping on every tick.
+ * Prints how well the server kept its tick rate and how much it sent, and
+ * checks that every client ends up with the same game as the server.
+ * Exits with 1 if one of them does not.
+ *
+ * java -cp benchmarks/target/benchmarks.jar com.snake2D.game.server.BroadcastLoad [clients] [seconds] [tiles]
+ */
+public class BroadcastLoad
+{
+    // time without anything arriving after which the clients are taken as up to date
+    private static final long DRAIN_IDLE_MILLIS = 500;
+
+    private static final int TURN_INTERVAL_MILLIS = 150;
+
+    public static void main( String[] args ) throws Exception
+    {
+        System.setProperty( "java.awt.headless", "true" );
+
+        int clientCount = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : 200;
+        int seconds = args.length > 1 ? Integer.parseInt( args[ 1 ] ) : 10;
+        int tiles = args.length > 2 ? Integer.parseInt( args[ 2 ] ) : 64;
+
+        Options.tilesX = tiles;
+        Options.tilesY = tiles;
+        Options.seed = 42;
+        Options.stepTicks = 1;
+
+        GameServer server = new GameServer( 0 );
+        Thread serverThread = new Thread( server, "Server" );
+        serverThread.start();
+
+        InetSocketAddress address = new InetSocketAddress( InetAddress.getLoopbackAddress(), server.getPort() );
+
+        Selector selector = Selector.open();
+        ServerConnection[] clients = new ServerConnection[ clientCount ];
+
+        for( int i = 0; i < clientCount; i++ )
+        {
+            clients[ i ] = new ServerConnection( address, i == 0 );
+            clients[ i ].awaitState();
+            clients[ i ].getChannel().register( selector, SelectionKey.OP_READ, clients[ i ] );
+        }
+
+        Random random = new Random( 42 );
+        long applied = 0;
+
+        long start = System.currentTimeMillis();
+        long lastTurn = start;
+
+        while( System.currentTimeMillis() - start < seconds * 1000L )
+        {
+            applied += poll( selector, 10 );
+
+            if( System.currentTimeMillis() - lastTurn >= TURN_INTERVAL_MILLIS )
+            {
+                clients[ 0 ].sendTurn( random.nextInt( 4 ) );
+                lastTurn = System.currentTimeMillis();
+            }
+        }
+
+        server.stop();
+
+        // take everything the server still sends until it has stopped and nothing arrives any more
+        long lastArrival = System.currentTimeMillis();
+        while( serverThread.isAlive() || System.currentTimeMillis() - lastArrival < DRAIN_IDLE_MILLIS )
+        {
+            int polled = poll( selector, 10 );
+            if( polled > 0 )
+                lastArrival = System.currentTimeMillis();
+
+            applied += polled;
+        }
+
+        Simulation expected = server.getState().getSimulation();
+
+        int inSync = 0;
+        for( ServerConnection client : clients )
+        {
+            if( isEqual( expected, client.getSimulation() ) )
+                inSync++;
+
+            client.close();
+        }
+
+        server.close();
+
+        FrameMetrics metrics = server.getMetrics();
+        LatencyHistogram lateness = server.getTickLateness();
+
+        System.out.println( clientCount + " clients, " + tiles + "x" + tiles + " tiles, " + metrics.getTicks() + " ticks in "
+                + seconds + " s (" + Options.TICK_RATE + " per second wanted)" );
+        System.out.println( "tick time:      p50 " + metrics.getUpdateTimeP50() / 1000 + " us, p99 "
+                + metrics.getUpdateTimeP99() / 1000 + " us, max " + metrics.getUpdateTimeMax() / 1000 + " us" );
+        System.out.println( "tick lateness:  p50 " + lateness.getPercentile( 0.5 ) / 1000 + " us, p99 "
+                + lateness.getPercentile( 0.99 ) / 1000 + " us, max " + lateness.getMax() / 1000 + " us, "
+                + server.getLateTicks() + " ticks skipped" );
+        System.out.println( "sent:           " + server.getBytesSent() / 1024 + " KiB, "
+                + server.getBytesSent() / clientCount / seconds + " bytes per client and second, "
+                + applied + " messages applied, " + server.getDroppedClients() + " clients dropped" );
+        System.out.println( "in sync:        " + inSync + " of " + clientCount + " clients" );
+
+        System.exit( inSync == clientCount ? 0 : 1 );
+    }
+
+    private static int poll( Selector selector, long timeoutMillis ) throws IOException
+    {
+        int applied = 0;
+
+        selector.select( timeoutMillis );
+
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while( keys.hasNext() )
+        {
+            SelectionKey key = keys.next();
+            keys.remove();
+
+            try
+            {
+                applied += ( ( ServerConnection ) key.attachment() ).poll();
+            }
+            catch( IOException e )
+            {
+                // the server closed the connection, what arrived until then is checked
+                key.cancel();
+            }
+        }
+
+        return applied;
+    }
+
+    /**
+     * Returns whether both games look the same to a player.
+     */
+    private static boolean isEqual( Simulation expected, Simulation actual )
+    {
+        if( actual == null
+                || actual.getTilesX() != expected.getTilesX() || actual.getTilesY() != expected.getTilesY()
+                || actual.getSegmentCount() != expected.getSegmentCount()
+                || actual.getBodyLength() != expected.getBodyLength()
+                || actual.getFoodX() != expected.getFoodX() || actual.getFoodY() != expected.getFoodY()
+                || actual.getMoveDirection() != expected.getMoveDirection()
+                || actual.isGameOver() != expected.isGameOver() )
+            return false;
+
+        for( int i = 0; i < expected.getSegmentCount(); i++ )
+        {
+            int segment = expected.getSegment( i );
+
+            if( actual.getSegment( i ) != segment
+                    || actual.getSegmentDirection( segment ) != expected.getSegmentDirection( segment ) )
+                return false;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,92 @@
+package com.snake2D.game.simulation;
+
+/**
+ * Lays out a snake of a given length along a cycle through every tile and
+ * steers it along that cycle, so a benchmark can step it forever.
+ * The cycle runs row by row, every other row backwards; on a board with an
+ * even number of rows the last row leads back into the first one.
+ */
+public class BoardLayout
+{
+    private final Simulation simulation;
+
+    // tiles in the order of the cycle
+    private final int[] cycle;
+
+    // position of every tile within the cycle
+    private final int[] positions;
+
+    private final int[] segments;
+    private final int length;
+
+    public BoardLayout( Simulation simulation, double fillRatio )
+    {
+        int tilesX = simulation.getTilesX();
+        int tilesY = simulation.getTilesY();
+
+        if( tilesY % 2 != 0 )
+            throw new IllegalArgumentException( "the board needs an even number of rows: " + tilesY );
+
+        this.simulation = simulation;
+
+        cycle = new int[ tilesX * tilesY ];
+        positions = new int[ cycle.length ];
+
+        for( int y = 0, position = 0; y < tilesY; y++ )
+        {
+            for( int i = 0; i < tilesX; i++, position++ )
+            {
+                int x = y % 2 == 0 ? i : tilesX - 1 - i;
+
+                cycle[ position ] = simulation.getElement( x, y );
+                positions[ cycle[ position ] ] = position;
+            }
+        }
+
+        // keep two tiles free, one for the head to move into and one for the food
+        length = Math.max( 1, Math.min( cycle.length - 2, ( int ) ( cycle.length * fillRatio ) ) );
+
+        segments = new int[ length ];
+        for( int i = 0; i < length; i++ )
+            segments[ i ] = cycle[ length - 1 - i ];
+    }
+
+    /**
+     * Puts the snake back to its initial layout.
+     */
+    public void reset()
+    {
+        simulation.setSnake( segments, length, simulation.getDirection( cycle[ length - 1 ], cycle[ length ] ) );
+
+        keepFoodAway();
+    }
+
+    /**
+     * Returns the direction to pass to the next step to stay on the cycle.
+     */
+    public int nextDirection()
+    {
+        int head = simulation.getElement( simulation.getHeadX(), simulation.getHeadY() );
+
+        // the next move is already decided, the direction passed now is the one after it
+        int next = cycle[ ( positions[ head ] + 1 ) % cycle.length ];
+        int afterNext = cycle[ ( positions[ head ] + 2 ) % cycle.length ];
+
+        return simulation.getDirection( next, afterNext );
+    }
+
+    /**
+     * Moves the food right behind the tail, which is the farthest the head can get from it.
+     */
+    public void keepFoodAway()
+    {
+        int tail = simulation.getSegment( simulation.getSegmentCount() - 1 );
+
+        simulation.setFood( cycle[ ( positions[ tail ] + cycle.length - 1 ) % cycle.length ] );
+    }
+
+    public int getLength()
+    {
+        return length;
+    }
+}
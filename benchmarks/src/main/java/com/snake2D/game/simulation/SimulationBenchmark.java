@@ -0,0 +1,96 @@
+package com.snake2D.game.simulation;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moving the snake, placing food, saving, copying and observing the state on boards of different size and fill ratio.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class SimulationBenchmark
+{
+    @Param( { "16", "256", "2048" } )
+    public int tiles;
+
+    @Param( { "0.01", "0.5", "0.9" } )
+    public double fillRatio;
+
+    private Simulation simulation;
+    private BoardLayout layout;
+
+    private ByteBuffer state;
+    private Simulation snapshot;
+    private ByteBuffer observation;
+
+    @Setup( Level.Trial )
+    public void setUp()
+    {
+        simulation = new Simulation( tiles, tiles, 42 );
+
+        layout = new BoardLayout( simulation, fillRatio );
+        layout.reset();
+
+        state = ByteBuffer.allocate( Simulation.getMaxStateSize( tiles, tiles ) );
+        snapshot = new Simulation( tiles, tiles, 0 );
+        observation = ByteBuffer.allocateDirect( Observation.getSize( tiles, tiles ) ).order( ByteOrder.LITTLE_ENDIAN );
+    }
+
+    /**
+     * One move, i.e. updateBody() and updateHead(), plus putting the food out of reach again.
+     */
+    @Benchmark
+    public int step()
+    {
+        simulation.step( layout.nextDirection() );
+        layout.keepFoodAway();
+
+        return simulation.getHeadX();
+    }
+
+    @Benchmark
+    public int generateFood()
+    {
+        simulation.generateFood();
+
+        return simulation.getFoodX();
+    }
+
+    @Benchmark
+    public int saveState()
+    {
+        state.clear();
+        simulation.saveState( state );
+
+        return state.position();
+    }
+
+    /**
+     * Cloning into a preallocated simulation, as done for snapshots kept in memory.
+     */
+    @Benchmark
+    public int copyState()
+    {
+        snapshot.copyFrom( simulation );
+
+        return snapshot.getHeadX();
+    }
+
+    /**
+     * Writing the bit planes into a direct buffer, as done for every step shared with other processes.
+     */
+    @Benchmark
+    public int writeObservation()
+    {
+        Observation.write( simulation, observation, 0 );
+
+        return observation.getInt( 8 );
+    }
+}
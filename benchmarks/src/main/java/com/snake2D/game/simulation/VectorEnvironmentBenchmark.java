@@ -0,0 +1,59 @@
+package com.snake2D.game.simulation;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stepping many boards at once, the time is given per board and step.
+ * The snakes mostly keep their direction and turn now and then, so they grow,
+ * eat and die and the resets are part of the measurement.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class VectorEnvironmentBenchmark
+{
+    private static final int BOARDS = 1024;
+
+    // different actions for the following steps, so the boards don't repeat
+    private static final int ACTION_SETS = 64;
+
+    private static final double TURN_PROBABILITY = 0.1;
+
+    @Param( { "10", "20", "64" } )
+    public int tiles;
+
+    private VectorEnvironment environment;
+    private int[][] actions;
+    private int nextActions = 0;
+
+    @Setup( Level.Trial )
+    public void setUp()
+    {
+        environment = new VectorEnvironment( BOARDS, tiles, tiles, 42 );
+
+        Random random = new Random( 42 );
+        actions = new int[ ACTION_SETS ][ BOARDS ];
+
+        for( int[] set : actions )
+        {
+            for( int board = 0; board < BOARDS; board++ )
+                set[ board ] = random.nextDouble() < TURN_PROBABILITY ? random.nextInt( 4 ) : Simulation.NONE;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( BOARDS )
+    public float step()
+    {
+        environment.step( actions[ nextActions ] );
+        nextActions = ( nextActions + 1 ) & ( ACTION_SETS - 1 );
+
+        return environment.getRewards()[ 0 ];
+    }
+}
@@ -0,0 +1,107 @@
+package com.snake2D.game.basic;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Waits for the start of the next frame without burning a whole core.
+ * Most of the wait is spent parked, only the last part before the deadline
+ * is spun because parking may oversleep by the timer slack of the system.
+ * The spin window adapts to the oversleeping actually observed.
+ */
+public class FramePacer
+{
+    private static final long MIN_SPIN_NANO = 50000L;
+    private static final long MAX_SPIN_NANO = 4000000L;
+
+    // 0 renders as fast as possible
+    private long frameTimeNano;
+
+    private long spinThresholdNano = 1000000L;
+
+    private long nextFrameTime;
+
+    private long missedDeadlines = 0;
+
+    public FramePacer( int targetFps )
+    {
+        setTargetFps( targetFps );
+        nextFrameTime = System.nanoTime() + frameTimeNano;
+    }
+
+    /**
+     * Sets the frame rate to pace to, 0 or less means uncapped.
+     */
+    public void setTargetFps( int targetFps )
+    {
+        frameTimeNano = targetFps > 0 ? 1000000000L / targetFps : 0;
+    }
+
+    public boolean isUncapped()
+    {
+        return frameTimeNano == 0;
+    }
+
+    /**
+     * Returns how many frames were not finished before their deadline.
+     */
+    public long getMissedDeadlines()
+    {
+        return missedDeadlines;
+    }
+
+    public long getSpinThresholdNano()
+    {
+        return spinThresholdNano;
+    }
+
+    /**
+     * Blocks until the next frame is due and returns the current time.
+     */
+    public long waitForNextFrame()
+    {
+        long now = System.nanoTime();
+
+        if( isUncapped() )
+        {
+            nextFrameTime = now;
+            return now;
+        }
+
+        // the frame took too long, start the next one right away instead of catching up
+        if( now - nextFrameTime > 0 )
+        {
+            missedDeadlines++;
+            nextFrameTime = now + frameTimeNano;
+            return now;
+        }
+
+        // park for most of the remaining time ...
+        long parkTime = nextFrameTime - now - spinThresholdNano;
+        if( parkTime > 0 )
+        {
+            LockSupport.parkNanos( parkTime );
+
+            long woken = System.nanoTime();
+            adaptSpinThreshold( woken - now - parkTime );
+            now = woken;
+        }
+
+        // ... and spin the rest to hit the deadline precisely
+        while( nextFrameTime - now > 0 )
+        {
+            Thread.yield();
+            now = System.nanoTime();
+        }
+
+        nextFrameTime += frameTimeNano;
+
+        return now;
+    }
+
+    private void adaptSpinThreshold( long oversleep )
+    {
+        // moving average of twice the observed oversleep, so rare outliers are still covered
+        long target = Math.max( MIN_SPIN_NANO, Math.min( MAX_SPIN_NANO, oversleep * 2 ) );
+        spinThresholdNano += ( target - spinThresholdNano ) / 8;
+    }
+}
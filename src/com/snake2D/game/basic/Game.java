@@ -1,35 +1,62 @@
 package com.snake2D.game.basic;
 
+import com.snake2D.game.bot.Autopilot;
+import com.snake2D.game.bot.HamiltonianBot;
+import com.snake2D.game.bot.MctsBot;
+import com.snake2D.game.com.snake2D.game.states.GameState;
 import com.snake2D.game.com.snake2D.game.states.GameStateManager;
 import com.snake2D.game.com.snake2D.game.states.MainState;
+import com.snake2D.game.com.snake2D.game.states.RemoteState;
+import com.snake2D.game.com.snake2D.game.states.VersusState;
+import com.snake2D.game.input.DirectionSource;
+import com.snake2D.game.input.KeyboardDirectionSource;
 import com.snake2D.game.input.KeyboardInputHandler;
+import com.snake2D.game.metrics.FrameMetrics;
+import com.snake2D.game.netplay.RollbackSession;
+import com.snake2D.game.netplay.UdpInputLink;
+import com.snake2D.game.rendering.Java2DRenderer;
+import com.snake2D.game.rendering.RasterRenderer;
+import com.snake2D.game.rendering.Renderer;
+import com.snake2D.game.replay.Replay;
+import com.snake2D.game.replay.ReplayDirectionSource;
+import com.snake2D.game.server.ServerConnection;
+import com.snake2D.game.simulation.VersusSimulation;
 
 import javax.swing.*;
 
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 
 
 public class Game extends Canvas implements Runnable
 {
     public static final String TITLE = "Snake";
 
-    public static final int TILE_SIZE = 16;
-    public static final int TILES_X = 20;
-    public static final int TILES_Y = 20;
+    private volatile boolean running = false;
 
-    public static final int WIDTH = TILE_SIZE * TILES_X;
-    public static final int HEIGHT = TILE_SIZE * TILES_Y;
-
-    private boolean running = false;
+    // the thread ticking the simulation, stopped before the game state is disposed
+    private Thread simulationThread;
+    private boolean stopped = false;
 
     private static JFrame frame;
 
-    private static final long FPS = 60L;
+    private static final long FPS = Options.TICK_RATE;
     private static final long FRAME_TIME_NANO = 1000000000L / FPS;
 
     private GameStateManager gameStateManager;
+    private Renderer renderer;
+    private final FrameMetrics metrics = new FrameMetrics();
     public static KeyboardInputHandler keyboardInputHandler;
+
+    // timings of the last frame, only touched by the render thread
+    private long renderTime;
+    private long presentTime;
     
     public Game()
     {
@@ -45,13 +72,36 @@ public class Game extends Canvas implements Runnable
 
         // <<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<
 
-        setMinimumSize( new Dimension( WIDTH, HEIGHT ) );
-        setMaximumSize( new Dimension( WIDTH, HEIGHT ) );
-        setPreferredSize( new Dimension( WIDTH, HEIGHT ) );
+        // the window shows the part of the board around the snake, not necessarily all of it
+        Dimension size = new Dimension( Options.getViewWidth(), Options.getViewHeight() );
+
+        setMinimumSize( size );
+        setMaximumSize( size );
+        setPreferredSize( size );
 
         frame = new JFrame( TITLE );
 
-        frame.setDefaultCloseOperation( JFrame.EXIT_ON_CLOSE );
+        // closing the window disposes the game state first, which saves the recording and flushes the save state
+        frame.setDefaultCloseOperation( JFrame.DO_NOTHING_ON_CLOSE );
+        frame.addWindowListener( new WindowAdapter()
+        {
+            @Override
+            public void windowClosing( WindowEvent event )
+            {
+                dispose();
+                System.exit( 0 );
+            }
+        } );
+
+        // the game state is disposed on any other way out as well, e.g. an interrupt from the terminal
+        Runtime.getRuntime().addShutdownHook( new Thread( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                stop();
+            }
+        }, "Shutdown" ) );
         frame.setLayout( new BorderLayout() );
 
         frame.add( this, BorderLayout.CENTER );
@@ -65,23 +115,70 @@ public class Game extends Canvas implements Runnable
         frame.addKeyListener( keyboardInputHandler );
     }
 
-    public synchronized void start()
+    public synchronized void start( DirectionSource directions )
+    {
+        gameStateManager = new GameStateManager();
+
+        start( new MainState( gameStateManager, directions ) );
+    }
+
+    /**
+     * Shows the game of a server instead of running one, playing it unless only spectating.
+     */
+    public synchronized void start( ServerConnection connection, boolean spectating )
+    {
+        gameStateManager = new GameStateManager();
+
+        start( new RemoteState( gameStateManager, connection,
+                spectating ? null : new KeyboardDirectionSource( keyboardInputHandler ) ) );
+    }
+
+    /**
+     * Plays a versus game against another peer instead of a game alone.
+     */
+    public synchronized void start( RollbackSession session, UdpInputLink link )
     {
+        gameStateManager = new GameStateManager();
+
+        start( new VersusState( gameStateManager, session, link, new KeyboardDirectionSource( keyboardInputHandler ) ) );
+    }
+
+    private void start( GameState gameState )
+    {
+        gameStateManager.setGameState( gameState );
+
+        if( Options.softwareRendering )
+            renderer = new RasterRenderer();
+        else
+            renderer = new Java2DRenderer();
+
+        metrics.register();
+
         running = true;
-        new Thread( this ).start();
+
+        // the simulation ticks on this thread ...
+        simulationThread = new Thread( this, "Simulation" );
+        simulationThread.start();
+
+        // ... while frames are drawn on their own one, so a slow frame never delays a tick
+        new Thread( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                renderLoop();
+            }
+        }, "Render" ).start();
     }
 
     @Override
     public void run()
     {
-        gameStateManager = new GameStateManager();
-        gameStateManager.setGameState( new MainState( gameStateManager ) );
+        FramePacer tickPacer = new FramePacer( ( int ) FPS );
 
         long currTime = System.nanoTime();
         long lastTime;
         double updateRatio = 0;
-        long milliSecCounter = System.currentTimeMillis();
-        int fps = 0;
 
         while( running )
         {
@@ -92,28 +189,39 @@ public class Game extends Canvas implements Runnable
 
             while( updateRatio >= 1 )
             {
+                long updateStart = System.nanoTime();
+
                 update( ( float ) updateRatio );
 
+                metrics.recordTick( System.nanoTime() - updateStart, tickPacer.getMissedDeadlines() );
+
                 updateRatio -= 1;
             }
 
+            tickPacer.waitForNextFrame();
+        }
+    }
+
+    private void renderLoop()
+    {
+        FramePacer framePacer = new FramePacer( Options.targetFps );
+
+        while( running )
+        {
             render();
 
-            fps++;
+            metrics.recordFrame( renderTime, presentTime, framePacer.getMissedDeadlines() );
 
-            if( System.currentTimeMillis() - milliSecCounter >= 1000 )
-            {
-                milliSecCounter += 1000;
-                //System.out.println( "FPS: " + fps );
-                fps = 0;
-            }
+            // sleep until the next frame is due instead of rendering it again and again
+            framePacer.waitForNextFrame();
         }
     }
 
     public void update( float updateRatio )
     {
-        gameStateManager.update( updateRatio );
+        // apply the key events which arrived since the last tick before the game looks at them
         keyboardInputHandler.update();
+        gameStateManager.update( updateRatio );
     }
 
     public void render()
@@ -126,33 +234,159 @@ public class Game extends Canvas implements Runnable
             return;
         }
 
-        Graphics graphics = bufferStrategy.getDrawGraphics();
+        long renderStart = System.nanoTime();
+
+        gameStateManager.render( renderer );
 
-        graphics.setColor( Options.backgroundColor );
-        graphics.fillRect( 0, 0, getWidth(), getHeight() );
+        // the frame covers the whole canvas, so there is nothing to clear
+        Graphics graphics = bufferStrategy.getDrawGraphics();
 
-        gameStateManager.render( ( Graphics2D ) graphics );
+        BufferedImage image = renderer.getImage();
+        if( image != null )
+            graphics.drawImage( image, 0, 0, null );
 
         graphics.dispose();
+
+        long presentStart = System.nanoTime();
+
         bufferStrategy.show();
+
+        renderTime = presentStart - renderStart;
+        presentTime = System.nanoTime() - presentStart;
     }
 
     public static void setTitle( String title )
     {
-        frame.setTitle( title );
+        // there is no window when a replay is played back headless
+        if( frame != null )
+            frame.setTitle( title );
     }
 
-    public synchronized void dispose()
+    /**
+     * Stops ticking and disposes the game state, which saves the recording and flushes the save state.
+     * Runs once, the window stays open.
+     */
+    public synchronized void stop()
     {
-        gameStateManager.dispose();
+        if( stopped )
+            return;
 
+        stopped = true;
         running = false;
 
+        // let the tick running finish, the game state must not change while it is disposed
+        if( simulationThread != null && simulationThread != Thread.currentThread() )
+        {
+            try
+            {
+                simulationThread.join();
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if( gameStateManager != null )
+            gameStateManager.dispose();
+    }
+
+    public synchronized void dispose()
+    {
+        stop();
+
         frame.dispose();
     }
 
-    public static void main( String[] args )
+    private static DirectionSource createBot( String name )
     {
-        new Game().start();
+        if( name.equals( "autopilot" ) )
+            return new Autopilot();
+        else if( name.equals( "mcts" ) )
+            return new MctsBot();
+        else if( name.equals( "hamilton" ) )
+        {
+            // the cycle is mapped now rather than on the first step
+            HamiltonianBot bot = new HamiltonianBot();
+            bot.prepare( Options.tilesX, Options.tilesY );
+
+            return bot;
+        }
+
+        throw new IllegalArgumentException( "unknown bot: " + name );
+    }
+
+    /**
+     * Binds the socket of a versus game, player 0 and 1 take neighbouring default ports so both can play on one machine.
+     */
+    private static UdpInputLink createVersusLink() throws IOException
+    {
+        int player = Options.versusPlayer;
+        int localPort = Options.serverPort > 0 ? Options.serverPort : VersusState.DEFAULT_PORT + player;
+
+        InetSocketAddress peer;
+        if( Options.peerAddress != null )
+        {
+            int separator = Options.peerAddress.lastIndexOf( ':' );
+            peer = new InetSocketAddress( Options.peerAddress.substring( 0, separator ),
+                    Integer.parseInt( Options.peerAddress.substring( separator + 1 ) ) );
+        }
+        else
+            peer = new InetSocketAddress( InetAddress.getLoopbackAddress(), VersusState.DEFAULT_PORT + 1 - player );
+
+        return new UdpInputLink( new InetSocketAddress( localPort ), peer );
+    }
+
+    public static void main( String[] args ) throws IOException
+    {
+        Options.parseArguments( args );
+
+        // a replay brings its own board and seed, which have to be set before the window is sized
+        Replay replay = null;
+        if( Options.replayFile != null )
+        {
+            replay = Replay.load( Options.replayFile );
+            replay.apply();
+
+            // watching a recording doesn't replace the last one
+            Options.recordFile = null;
+        }
+
+        // the board of a server is only known once its state has arrived
+        ServerConnection connection = null;
+        if( Options.serverAddress != null )
+        {
+            connection = new ServerConnection( Options.serverAddress, !Options.spectating );
+            connection.awaitState();
+
+            Options.tilesX = connection.getSimulation().getTilesX();
+            Options.tilesY = connection.getSimulation().getTilesY();
+        }
+
+        // an unknown bot is reported before a window opens
+        DirectionSource bot = Options.bot != null ? createBot( Options.bot ) : null;
+
+        // so are a board too small for two snakes and a port in use, both peers have to use the same board and seed
+        RollbackSession session = null;
+        UdpInputLink link = null;
+        if( Options.versusPlayer >= 0 )
+        {
+            session = new RollbackSession( new VersusSimulation( Options.tilesX, Options.tilesY, Options.getVersusSeed() ),
+                    Options.versusPlayer, RollbackSession.DEFAULT_MAX_ROLLBACK, 0 );
+            link = createVersusLink();
+        }
+
+        Game game = new Game();
+
+        if( connection != null )
+            game.start( connection, Options.spectating );
+        else if( session != null )
+            game.start( session, link );
+        else if( replay != null )
+            game.start( new ReplayDirectionSource( replay ) );
+        else if( bot != null )
+            game.start( bot );
+        else
+            game.start( new KeyboardDirectionSource( keyboardInputHandler ) );
     }
 }
\ No newline at end of file
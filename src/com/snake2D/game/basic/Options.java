@@ -23,6 +23,228 @@ public class Options
         return MIN_STEP_TIME + (int) range;
     }
 
+    // the game logic runs at a fixed rate and counts time in ticks, so a session plays out the same every time
+    public static final int TICK_RATE = 60;
+
+    // ticks between two steps, 0 derives them from the speed
+    public static int stepTicks = 0;
+
+    public static int getStepTicks()
+    {
+        if( stepTicks > 0 )
+            return stepTicks;
+
+        return Math.max( 1, Math.round( getStepTime() * TICK_RATE / 1000.0f ) );
+    }
+
     // fluid
     public static boolean fluid = true;
+
+    // seed of the food and start position generator
+    public static long seed = System.nanoTime();
+    private static boolean seedGiven = false;
+
+    // seed of a versus game without -seed, both peers have to use the same one
+    public static final long DEFAULT_VERSUS_SEED = 42;
+
+    public static long getVersusSeed()
+    {
+        return seedGiven ? seed : DEFAULT_VERSUS_SEED;
+    }
+
+    // frames per second to render, 0 renders as fast as possible
+    public static int targetFps = 60;
+
+    // draw frames with the int[] software rasterizer instead of Java2D
+    public static boolean softwareRendering = false;
+
+    // file every session is recorded to unless another one is given, "-record none" doesn't record it
+    public static final String DEFAULT_RECORD_FILE = "last.replay";
+
+    // file the session is recorded to, null doesn't record it
+    public static String recordFile = DEFAULT_RECORD_FILE;
+
+    // file of a recorded session to play back instead of reading the keyboard, null plays live
+    public static String replayFile = null;
+
+    // file the game is saved to every tick and resumed from after a crash, null doesn't save it
+    public static String saveStateFile = null;
+
+    // bot steering the snake instead of the keyboard, "autopilot", "mcts" or "hamilton", null plays with the keyboard
+    public static String bot = null;
+
+    // file the board is shared through with other processes every step, null doesn't share it
+    public static String observationFile = null;
+
+    // port the game server or the peer of a versus game listens on, 0 takes the default one
+    public static int serverPort = 0;
+
+    // host:port of a game server to play or watch on instead of playing locally, null plays locally
+    public static String serverAddress = null;
+    public static boolean spectating = false;
+
+    // snake played in a versus game against another peer over UDP, 0 or 1, -1 plays alone
+    public static int versusPlayer = -1;
+
+    // host:port of the other peer of a versus game, null takes the default port of the other player on this machine
+    public static String peerAddress = null;
+
+    // Board
+    public static int tilesX = 20;
+    public static int tilesY = 20;
+    public static int tileSize = 16;
+
+    // Window, 0 shows the whole board
+    public static int viewWidth = 0;
+    public static int viewHeight = 0;
+
+    public static int getViewWidth()
+    {
+        return viewWidth > 0 ? viewWidth : tilesX * tileSize;
+    }
+
+    public static int getViewHeight()
+    {
+        return viewHeight > 0 ? viewHeight : tilesY * tileSize;
+    }
+
+    /**
+     * Reads options given on the command line, e.g. "-tiles 200x150 -tileSize 8 -view 640x480 -seed 42 -fps 30 -renderer software -record game.replay"
+     * or "-versus 1 -peer 192.168.0.2:47800".
+     */
+    public static void parseArguments( String[] args )
+    {
+        for( int i = 0; i < args.length; i += 2 )
+        {
+            // every option takes a value
+            if( i + 1 == args.length )
+                throw new IllegalArgumentException( "missing value for " + args[ i ] );
+
+            String value = args[ i + 1 ];
+
+            if( args[ i ].equals( "-tiles" ) )
+            {
+                // the simulation needs a neighbour on every side which isn't the tile itself
+                tilesX = parseNumber( args[ i ], parseWidth( args[ i ], value ), 2 );
+                tilesY = parseNumber( args[ i ], parseHeight( args[ i ], value ), 2 );
+
+                // tiles are numbered with an int
+                if( ( long ) tilesX * tilesY > Integer.MAX_VALUE )
+                    throw new IllegalArgumentException( "too many tiles for " + args[ i ] + ": " + value );
+            }
+            else if( args[ i ].equals( "-tileSize" ) )
+                tileSize = parseNumber( args[ i ], value, 1 );
+            else if( args[ i ].equals( "-view" ) )
+            {
+                viewWidth = parseNumber( args[ i ], parseWidth( args[ i ], value ), 1 );
+                viewHeight = parseNumber( args[ i ], parseHeight( args[ i ], value ), 1 );
+            }
+            else if( args[ i ].equals( "-seed" ) )
+            {
+                try
+                {
+                    seed = Long.parseLong( value );
+                    seedGiven = true;
+                }
+                catch( NumberFormatException e )
+                {
+                    throw new IllegalArgumentException( "invalid value for " + args[ i ] + ": " + value );
+                }
+            }
+            else if( args[ i ].equals( "-fps" ) )
+                targetFps = parseNumber( args[ i ], value, 0 );
+            else if( args[ i ].equals( "-renderer" ) )
+                softwareRendering = value.equals( "software" );
+            else if( args[ i ].equals( "-record" ) )
+                recordFile = value.equals( "none" ) ? null : value;
+            else if( args[ i ].equals( "-replay" ) )
+                replayFile = value;
+            else if( args[ i ].equals( "-saveState" ) )
+                saveStateFile = value;
+            else if( args[ i ].equals( "-bot" ) )
+                bot = value;
+            else if( args[ i ].equals( "-observe" ) )
+                observationFile = value;
+            else if( args[ i ].equals( "-port" ) )
+            {
+                serverPort = parseNumber( args[ i ], value, 0 );
+                if( serverPort > 65535 )
+                    throw new IllegalArgumentException( "invalid value for " + args[ i ] + ": " + value );
+            }
+            else if( args[ i ].equals( "-connect" ) )
+            {
+                serverAddress = value;
+                spectating = false;
+            }
+            else if( args[ i ].equals( "-spectate" ) )
+            {
+                serverAddress = value;
+                spectating = true;
+            }
+            else if( args[ i ].equals( "-versus" ) )
+            {
+                versusPlayer = parseNumber( args[ i ], value, 0 );
+                if( versusPlayer > 1 )
+                    throw new IllegalArgumentException( "invalid value for " + args[ i ] + ", expected 0 or 1: " + value );
+            }
+            else if( args[ i ].equals( "-peer" ) )
+            {
+                int separator = value.lastIndexOf( ':' );
+                if( separator <= 0 )
+                    throw new IllegalArgumentException( "invalid address for " + args[ i ] + ", expected host:port: " + value );
+
+                if( parseNumber( args[ i ], value.substring( separator + 1 ), 1 ) > 65535 )
+                    throw new IllegalArgumentException( "invalid value for " + args[ i ] + ": " + value );
+
+                peerAddress = value;
+            }
+            else
+                throw new IllegalArgumentException( "unknown option: " + args[ i ] );
+        }
+    }
+
+    /**
+     * Returns the number given for the option, which has to be at least the minimum.
+     */
+    private static int parseNumber( String option, String value, int min )
+    {
+        int number;
+
+        try
+        {
+            number = Integer.parseInt( value );
+        }
+        catch( NumberFormatException e )
+        {
+            throw new IllegalArgumentException( "invalid value for " + option + ": " + value );
+        }
+
+        if( number < min )
+            throw new IllegalArgumentException( "value for " + option + " has to be at least " + min + ": " + value );
+
+        return number;
+    }
+
+    /**
+     * Returns the part in front of the x of a size given as WxH.
+     */
+    private static String parseWidth( String option, String size )
+    {
+        return size.substring( 0, getSeparator( option, size ) );
+    }
+
+    private static String parseHeight( String option, String size )
+    {
+        return size.substring( getSeparator( option, size ) + 1 );
+    }
+
+    private static int getSeparator( String option, String size )
+    {
+        int separator = size.indexOf( 'x' );
+
+        if( separator <= 0 || separator == size.length() - 1 )
+            throw new IllegalArgumentException( "invalid size for " + option + ", expected WxH: " + size );
+
+        return separator;
+    }
 }
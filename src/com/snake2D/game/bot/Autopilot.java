@@ -0,0 +1,402 @@
+package com.snake2D.game.bot;
+
+import com.snake2D.game.input.PlanningDirectionSource;
+import com.snake2D.game.simulation.Simulation;
+
+/**
+ * Steers the snake by itself: a breadth-first search over the board, across
+ * the borders, finds the shortest way to the food. The way is only taken if
+ * the snake could still reach its tail after eating, otherwise it follows
+ * its tail, and if even that is impossible it heads for the largest space.
+ * It follows the tail the long way round, which moves the body around and
+ * opens up new ways to the food; if it still hasn't eaten for a while it
+ * takes the way to the food anyway rather than circling forever.
+ *
+ * The search knows that the body moves along: a tile of the snake can be
+ * entered once the tail has left it, which is also what lets it follow its
+ * tail. All buffers are allocated for the size of the board once; they are
+ * marked with the number of the search instead of being cleared, so planning
+ * a step allocates nothing.
+ *
+ * The move coming next is decided already, so every plan starts from the
+ * tile the head is about to move to.
+ */
+public class Autopilot extends PlanningDirectionSource
+{
+    // steps without eating per tile of the board after which the food is taken even if it isn't safe
+    private static final int STALL_STEPS_PER_TILE = 2;
+
+    private int tilesX;
+    private int tilesY;
+    private int cellCount;
+
+    // the tiles next to every tile, four per tile indexed by the direction
+    private int[] neighbours;
+
+    // the body the search runs against, a tile of it can be entered from the move given by freeAt on
+    private int[] bodyStamps;
+    private int[] freeAt;
+    private int bodyGeneration;
+
+    // breadth-first search
+    private int[] queue;
+    private int[] visitStamps;
+    private int[] parents;
+    private int visitGeneration;
+    private int visitedCount;
+
+    // the snake once the coming move is done, as it would be on reaching the food and after eating it, from the head on
+    private int[] body;
+    private int bodyLength;
+    private int[] virtualBody;
+    private int[] grownBody;
+
+    // to notice circling without ever eating
+    private int lastBodyLength;
+    private int stepsSinceEating;
+
+    /**
+     * Returns the direction to take after the coming move, or Simulation.NONE if the snake can't be saved.
+     */
+    @Override
+    public int plan( Simulation simulation )
+    {
+        if( simulation.getTilesX() != tilesX || simulation.getTilesY() != tilesY )
+            allocate( simulation.getTilesX(), simulation.getTilesY() );
+
+        if( simulation.getBodyLength() != lastBodyLength )
+        {
+            lastBodyLength = simulation.getBodyLength();
+            stepsSinceEating = 0;
+        }
+        else
+            stepsSinceEating++;
+
+        int segmentCount = simulation.getSegmentCount();
+        int moveDirection = simulation.getMoveDirection();
+
+        int head = simulation.getSegment( 0 );
+        int tail = simulation.getSegment( segmentCount - 1 );
+        int pending = neighbours[ head * 4 + moveDirection ];
+        int food = simulation.getElement( simulation.getFoodX(), simulation.getFoodY() );
+
+        // the coming move runs into the body, nothing helps anymore
+        if( simulation.isOccupied( pending ) && pending != tail )
+            return Simulation.NONE;
+
+        // the tail moves away first, then the head moves on
+        body[ 0 ] = pending;
+        for( int i = 1; i < segmentCount; i++ )
+            body[ i ] = simulation.getSegment( i - 1 );
+
+        bodyLength = segmentCount;
+
+        // turning back is ignored by the simulation
+        int excludedDirection = moveDirection ^ 1;
+
+        if( pending == food )
+            return planEating( body, excludedDirection, false );
+
+        markBody( body, bodyLength, 0 );
+
+        if( search( pending, 0, excludedDirection, food ) >= 0 )
+        {
+            int direction = getFirstDirection( pending, food );
+
+            if( stepsSinceEating > STALL_STEPS_PER_TILE * cellCount || isSafeAfterEating( pending, food ) )
+                return direction;
+
+            markBody( body, bodyLength, 0 );
+        }
+
+        // follow the tail, which keeps a way open
+        int direction = followTail( pending, excludedDirection );
+        if( direction != Simulation.NONE )
+            return direction;
+
+        return findLargestSpace( pending, excludedDirection );
+    }
+
+    /**
+     * Returns the direction leading to the tile next to the start from which the tail is the farthest
+     * but still reachable, or Simulation.NONE if it can't be reached. The shortest way would take the
+     * snake round the same loop again and again, leaving the body as it is.
+     */
+    private int followTail( int start, int excludedDirection )
+    {
+        if( bodyLength < 2 )
+            return Simulation.NONE;
+
+        int bodyTail = body[ bodyLength - 1 ];
+
+        int bestDirection = Simulation.NONE;
+        int bestDistance = -1;
+
+        for( int direction = Simulation.UP; direction <= Simulation.RIGHT; direction++ )
+        {
+            int element = neighbours[ start * 4 + direction ];
+
+            if( direction == excludedDirection || !isFree( element, 1 ) )
+                continue;
+
+            int distance = search( element, 1, direction ^ 1, bodyTail );
+
+            if( distance > bestDistance )
+            {
+                bestDistance = distance;
+                bestDirection = direction;
+            }
+        }
+
+        return bestDirection;
+    }
+
+    /**
+     * Plans the move after eating. The snake moves once more right away, without the tail following,
+     * and the move of the next step goes the same way, so the direction decides two moves. The new food
+     * isn't known yet, so the direction only has to keep the tail reachable.
+     *
+     * @param segments  the body with the head on the food, bodyLength long
+     * @param tailOnly  whether to give up instead of heading for the largest space if the tail can't be reached
+     */
+    private int planEating( int[] segments, int excludedDirection, boolean tailOnly )
+    {
+        int start = segments[ 0 ];
+
+        int bestDirection = Simulation.NONE;
+        int bestCount = 0;
+
+        for( int direction = Simulation.UP; direction <= Simulation.RIGHT; direction++ )
+        {
+            markBody( segments, bodyLength, 1 );
+
+            int first = neighbours[ start * 4 + direction ];
+            int second = neighbours[ first * 4 + direction ];
+
+            if( direction == excludedDirection || !isFree( first, 1 ) || !isFree( second, 2 ) )
+                continue;
+
+            // the body after both moves, one segment longer
+            grownBody[ 0 ] = second;
+            grownBody[ 1 ] = first;
+            for( int i = 2; i <= bodyLength; i++ )
+                grownBody[ i ] = segments[ i - 2 ];
+
+            markBody( grownBody, bodyLength + 1, 0 );
+
+            if( search( second, 0, direction ^ 1, grownBody[ bodyLength ] ) >= 0 )
+                return direction;
+
+            if( tailOnly )
+                continue;
+
+            search( second, 0, direction ^ 1, -1 );
+
+            if( visitedCount > bestCount )
+            {
+                bestCount = visitedCount;
+                bestDirection = direction;
+            }
+        }
+
+        return bestDirection;
+    }
+
+    /**
+     * Returns whether the snake could still reach its tail once it has followed the way found to the food.
+     */
+    private boolean isSafeAfterEating( int start, int food )
+    {
+        // the way to the food becomes the front of the body, the rest of the old body follows
+        int length = 0;
+        for( int element = food; element != start && length < bodyLength; element = parents[ element ] )
+            virtualBody[ length++ ] = element;
+
+        for( int i = 0; length < bodyLength; i++ )
+            virtualBody[ length++ ] = body[ i ];
+
+        // the segment behind the head is never free, so no direction has to be excluded
+        return planEating( virtualBody, -1, true ) != Simulation.NONE;
+    }
+
+    /**
+     * Returns the direction leading to the most tiles the snake could still reach, or Simulation.NONE if there is none.
+     */
+    private int findLargestSpace( int start, int excludedDirection )
+    {
+        int bestDirection = Simulation.NONE;
+        int bestCount = 0;
+
+        for( int direction = Simulation.UP; direction <= Simulation.RIGHT; direction++ )
+        {
+            int element = neighbours[ start * 4 + direction ];
+
+            if( direction == excludedDirection || !isFree( element, 1 ) )
+                continue;
+
+            search( element, 1, -1, -1 );
+
+            if( visitedCount > bestCount )
+            {
+                bestCount = visitedCount;
+                bestDirection = direction;
+            }
+        }
+
+        return bestDirection;
+    }
+
+    /**
+     * Searches the board breadth-first from the given tile, reached after the given number of moves.
+     * Fills in the parent of every tile reached and counts them.
+     *
+     * @param excludedDirection a direction not to leave the start in, or -1
+     * @param target            the tile to stop at, or -1 to reach all
+     * @return the moves to the target, or -1 if it can't be reached
+     */
+    private int search( int start, int startDistance, int excludedDirection, int target )
+    {
+        int generation = nextVisitGeneration();
+
+        visitStamps[ start ] = generation;
+        parents[ start ] = -1;
+        visitedCount = 1;
+
+        if( start == target )
+            return startDistance;
+
+        int head = 0;
+        int tail = 0;
+        queue[ tail++ ] = start;
+
+        // the queue holds the tiles of one distance after the other
+        int distance = startDistance + 1;
+        int distanceEnd = tail;
+
+        while( head < tail )
+        {
+            if( head == distanceEnd )
+            {
+                distance++;
+                distanceEnd = tail;
+            }
+
+            int element = queue[ head++ ];
+
+            for( int direction = Simulation.UP; direction <= Simulation.RIGHT; direction++ )
+            {
+                if( element == start && direction == excludedDirection )
+                    continue;
+
+                int neighbour = neighbours[ element * 4 + direction ];
+
+                // a tile of the body may still be reached later by another way, so it isn't marked as visited
+                if( visitStamps[ neighbour ] == generation || !isFree( neighbour, distance ) )
+                    continue;
+
+                visitStamps[ neighbour ] = generation;
+                parents[ neighbour ] = element;
+                visitedCount++;
+
+                if( neighbour == target )
+                    return distance;
+
+                queue[ tail++ ] = neighbour;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the direction of the first move on the way the last search found from the start to the given tile.
+     */
+    private int getFirstDirection( int start, int element )
+    {
+        while( parents[ element ] != start )
+            element = parents[ element ];
+
+        for( int direction = Simulation.UP; direction < Simulation.RIGHT; direction++ )
+        {
+            if( neighbours[ start * 4 + direction ] == element )
+                return direction;
+        }
+
+        return Simulation.RIGHT;
+    }
+
+    /**
+     * Returns whether the tile can be entered with the given move.
+     */
+    private boolean isFree( int element, int move )
+    {
+        return bodyStamps[ element ] != bodyGeneration || move >= freeAt[ element ];
+    }
+
+    /**
+     * Makes the given body the one the search runs against.
+     *
+     * @param delay the moves before the tail starts moving
+     */
+    private void markBody( int[] segments, int length, int delay )
+    {
+        if( ++bodyGeneration == 0 )
+        {
+            clear( bodyStamps );
+            bodyGeneration = 1;
+        }
+
+        // the tail leaves with the first move, every segment in front of it one move later
+        for( int i = 0; i < length; i++ )
+        {
+            bodyStamps[ segments[ i ] ] = bodyGeneration;
+            freeAt[ segments[ i ] ] = length - i + delay;
+        }
+    }
+
+    private int nextVisitGeneration()
+    {
+        if( ++visitGeneration == 0 )
+        {
+            clear( visitStamps );
+            visitGeneration = 1;
+        }
+
+        return visitGeneration;
+    }
+
+    private static void clear( int[] stamps )
+    {
+        for( int i = 0; i < stamps.length; i++ )
+            stamps[ i ] = 0;
+    }
+
+    private void allocate( int tilesX, int tilesY )
+    {
+        this.tilesX = tilesX;
+        this.tilesY = tilesY;
+
+        cellCount = tilesX * tilesY;
+
+        neighbours = new int[ cellCount * 4 ];
+
+        for( int element = 0; element < cellCount; element++ )
+        {
+            for( int direction = 0; direction < 4; direction++ )
+                neighbours[ element * 4 + direction ] = Simulation.getNeighbour( element, direction, tilesX, tilesY );
+        }
+
+        bodyStamps = new int[ cellCount ];
+        freeAt = new int[ cellCount ];
+        bodyGeneration = 0;
+
+        queue = new int[ cellCount ];
+        visitStamps = new int[ cellCount ];
+        parents = new int[ cellCount ];
+        visitGeneration = 0;
+
+        body = new int[ cellCount ];
+        virtualBody = new int[ cellCount ];
+        grownBody = new int[ cellCount ];
+    }
+}
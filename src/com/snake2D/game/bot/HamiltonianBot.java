@@ -0,0 +1,168 @@
+package com.snake2D.game.bot;
+
+import com.snake2D.game.input.PlanningDirectionSource;
+import com.snake2D.game.simulation.Simulation;
+
+import java.io.File;
+
+/**
+ * Follows a cycle through every tile of the board. While the snake is short
+ * it cuts corners towards the food: a move may skip ahead on the cycle as
+ * long as it stays behind the tail and doesn't pass the food. Then the body
+ * always lies along the cycle in order, all tiles between the head and the
+ * tail are free and following the cycle from anywhere is safe.
+ *
+ * The move coming next is decided already, so every plan starts from the
+ * tile the head is about to move to. Eating moves the head once more in the
+ * direction planned then, and the next step moves it that way again, so on
+ * the food the direction is chosen so both moves keep the order. In front of
+ * a turn of the cycle that skips about a line, which needs as many free tiles
+ * ahead; with fewer the snake leaves the cycle there and only avoids its body.
+ *
+ * The cycle of every board size is built once and cached in a file, which is
+ * mapped when the bot is prepared for the board.
+ */
+public class HamiltonianBot extends PlanningDirectionSource
+{
+    public static final File DEFAULT_CACHE_DIRECTORY = new File( System.getProperty( "java.io.tmpdir" ), "snake2d-cycles" );
+
+    // free tiles left between the head and the tail after cutting a corner besides the ones eating may skip
+    private static final int SHORTCUT_MARGIN = 4;
+
+    // corners are only cut while the snake covers less than this part of the board
+    private static final double SHORTCUT_FILL = 0.5;
+
+    private final File cacheDirectory;
+
+    private HamiltonianCycle cycle;
+
+    public HamiltonianBot()
+    {
+        this( DEFAULT_CACHE_DIRECTORY );
+    }
+
+    /**
+     * @param cacheDirectory where the cycle of every board size is cached
+     */
+    public HamiltonianBot( File cacheDirectory )
+    {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Maps the cycle of the given board size now instead of on the first plan.
+     */
+    public void prepare( int tilesX, int tilesY )
+    {
+        if( cycle == null || cycle.getTilesX() != tilesX || cycle.getTilesY() != tilesY )
+            cycle = HamiltonianCycle.load( cacheDirectory, tilesX, tilesY );
+    }
+
+    /**
+     * Returns the direction to take after the coming move, or Simulation.NONE if the snake can't be saved.
+     */
+    @Override
+    public int plan( Simulation simulation )
+    {
+        prepare( simulation.getTilesX(), simulation.getTilesY() );
+
+        int segmentCount = simulation.getSegmentCount();
+        int moveDirection = simulation.getMoveDirection();
+
+        int head = simulation.getSegment( 0 );
+        int tail = simulation.getSegment( segmentCount - 1 );
+        int pending = simulation.getNeighbour( head, moveDirection );
+        int food = simulation.getElement( simulation.getFoodX(), simulation.getFoodY() );
+
+        // the coming move runs into the body, nothing helps anymore
+        if( simulation.isOccupied( pending ) && pending != tail )
+            return Simulation.NONE;
+
+        // turning back is ignored by the simulation
+        int excludedDirection = moveDirection ^ 1;
+
+        if( pending == food )
+            return planEating( simulation, pending, tail, excludedDirection );
+
+        int bestDirection = cycle.getNextDirection( pending, excludedDirection );
+
+        int cellCount = simulation.getTilesX() * simulation.getTilesY();
+        if( segmentCount >= cellCount * SHORTCUT_FILL )
+            return bestDirection;
+
+        int foodDistance = cycle.getDistance( pending, food );
+
+        // eating in front of a turn may skip up to two lines, which has to stay possible
+        int tailDistance = cycle.getDistance( pending, tail ) - 2 * cycle.getLineLength() - SHORTCUT_MARGIN;
+        int bestDistance = 1;
+
+        for( int direction = Simulation.UP; direction <= Simulation.RIGHT; direction++ )
+        {
+            if( direction == excludedDirection )
+                continue;
+
+            int distance = cycle.getDistance( pending, simulation.getNeighbour( pending, direction ) );
+
+            if( distance > bestDistance && distance <= foodDistance && distance < tailDistance )
+            {
+                bestDistance = distance;
+                bestDirection = direction;
+            }
+        }
+
+        return bestDirection;
+    }
+
+    /**
+     * Plans the moves after eating: one right away without the tail following and one with the next step,
+     * both the same way. Takes the direction skipping the fewest tiles of the cycle which keeps both moves
+     * ahead of each other and behind the tail, preferring one where a third move that way would too, for
+     * food appearing right in front of the head again. If there is none, which happens in front of a turn
+     * once the board is nearly full, it only avoids running into the body and leaves the cycle.
+     */
+    private int planEating( Simulation simulation, int start, int tail, int excludedDirection )
+    {
+        int tailDistance = cycle.getDistance( start, tail );
+
+        int bestDirection = Simulation.NONE;
+        int bestDistance = Integer.MAX_VALUE;
+        boolean bestContinues = false;
+        int survivingDirection = Simulation.NONE;
+
+        for( int direction = Simulation.UP; direction <= Simulation.RIGHT; direction++ )
+        {
+            if( direction == excludedDirection )
+                continue;
+
+            int first = simulation.getNeighbour( start, direction );
+            int second = simulation.getNeighbour( first, direction );
+
+            // the tail only leaves with the second move
+            if( simulation.isOccupied( first ) || ( simulation.isOccupied( second ) && second != tail ) )
+                continue;
+
+            survivingDirection = direction;
+
+            int firstDistance = cycle.getDistance( start, first );
+            int secondDistance = cycle.getDistance( start, second );
+
+            if( firstDistance == 0 || secondDistance <= firstDistance || secondDistance >= tailDistance )
+                continue;
+
+            int thirdDistance = cycle.getDistance( start, simulation.getNeighbour( second, direction ) );
+            boolean continues = thirdDistance > secondDistance && thirdDistance < tailDistance;
+
+            if( ( continues && !bestContinues ) || ( continues == bestContinues && secondDistance < bestDistance ) )
+            {
+                bestDistance = secondDistance;
+                bestContinues = continues;
+                bestDirection = direction;
+            }
+        }
+
+        if( bestDirection == Simulation.NONE )
+            return survivingDirection != Simulation.NONE ? survivingDirection : cycle.getNextDirection( start, excludedDirection );
+
+        return bestDirection;
+    }
+}
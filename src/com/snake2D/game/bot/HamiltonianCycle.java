@@ -0,0 +1,276 @@
+package com.snake2D.game.bot;
+
+import com.snake2D.game.simulation.Simulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A cycle through every tile of the board, across the borders, given as the
+ * position of every tile within it. The cycle runs line by line, rows or
+ * columns, and every line is entered one tile beside where the one before
+ * was entered. The offsets have to add up to whole lines for the last line
+ * to lead back to the start of the first one. As many lines as possible go
+ * the same way, running around the board like a screw, and the rest take
+ * turns like a zigzag; a turn of the screw skips fewer tiles when the snake
+ * eats right in front of it. An odd number of lines works on the wrapping
+ * board too, as long as they are at least as many as their tiles.
+ *
+ * The tables are cached in a file per board size: a header of magic, version,
+ * tiles x, tiles y and the bytes per position (ints), then the position of
+ * every tile, as a short where they fit. The file is mapped and read in place.
+ */
+public class HamiltonianCycle
+{
+    private static final int MAGIC = 0x534E4B48;
+
+    // raised whenever the cycle is built differently, so older caches are rebuilt
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 20;
+
+    private final int tilesX;
+    private final int tilesY;
+    private final int cellCount;
+
+    // the positions, in a mapped file or in memory if it couldn't be written
+    private final ByteBuffer positions;
+    private final int entrySize;
+
+    private HamiltonianCycle( int tilesX, int tilesY, ByteBuffer positions, int entrySize )
+    {
+        this.tilesX = tilesX;
+        this.tilesY = tilesY;
+        this.positions = positions;
+        this.entrySize = entrySize;
+
+        cellCount = tilesX * tilesY;
+    }
+
+    /**
+     * Maps the cycle of the board size cached in the given directory, building and caching it first if it isn't there.
+     */
+    public static HamiltonianCycle load( File directory, int tilesX, int tilesY )
+    {
+        File file = new File( directory, "cycle-" + tilesX + "x" + tilesY + ".bin" );
+
+        try
+        {
+            if( !file.isFile() )
+                write( file, tilesX, tilesY );
+
+            HamiltonianCycle cycle = map( file, tilesX, tilesY );
+            if( cycle != null )
+                return cycle;
+
+            // not a cycle of this size or built by an older version
+            write( file, tilesX, tilesY );
+
+            cycle = map( file, tilesX, tilesY );
+            if( cycle != null )
+                return cycle;
+        }
+        catch( IOException e )
+        {
+            System.err.println( "could not cache the cycle in " + file + ": " + e.getMessage() );
+        }
+
+        return build( tilesX, tilesY );
+    }
+
+    /**
+     * Builds the cycle in memory without caching it.
+     */
+    public static HamiltonianCycle build( int tilesX, int tilesY )
+    {
+        int entrySize = getEntrySize( tilesX * tilesY );
+
+        ByteBuffer buffer = ByteBuffer.allocate( HEADER_SIZE + tilesX * tilesY * entrySize );
+        encode( buffer, tilesX, tilesY );
+
+        return new HamiltonianCycle( tilesX, tilesY, buffer, entrySize );
+    }
+
+    private static int getEntrySize( int cellCount )
+    {
+        return cellCount <= 1 << 16 ? 2 : 4;
+    }
+
+    private static HamiltonianCycle map( File file, int tilesX, int tilesY ) throws IOException
+    {
+        int entrySize = getEntrySize( tilesX * tilesY );
+        long size = HEADER_SIZE + ( long ) tilesX * tilesY * entrySize;
+
+        try( RandomAccessFile input = new RandomAccessFile( file, "r" ) )
+        {
+            if( input.length() != size )
+                return null;
+
+            // the mapping stays valid after the file is closed
+            MappedByteBuffer map = input.getChannel().map( FileChannel.MapMode.READ_ONLY, 0, size );
+
+            if( map.getInt( 0 ) != MAGIC || map.getInt( 4 ) != VERSION || map.getInt( 8 ) != tilesX
+                    || map.getInt( 12 ) != tilesY || map.getInt( 16 ) != entrySize )
+                return null;
+
+            return new HamiltonianCycle( tilesX, tilesY, map, entrySize );
+        }
+    }
+
+    /**
+     * Writes the cycle to a file next to the given one and renames it, so a file of that name is always complete.
+     */
+    private static void write( File file, int tilesX, int tilesY ) throws IOException
+    {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if( !directory.isDirectory() && !directory.mkdirs() )
+            throw new IOException( "could not create " + directory );
+
+        ByteBuffer buffer = ByteBuffer.allocate( HEADER_SIZE + tilesX * tilesY * getEntrySize( tilesX * tilesY ) );
+        encode( buffer, tilesX, tilesY );
+
+        File temporary = File.createTempFile( file.getName(), ".tmp", directory );
+
+        try( RandomAccessFile output = new RandomAccessFile( temporary, "rw" ) )
+        {
+            buffer.rewind();
+            while( buffer.hasRemaining() )
+                output.getChannel().write( buffer );
+        }
+
+        if( !temporary.renameTo( file ) )
+        {
+            // another process may have cached it meanwhile, or the old file is in the way
+            if( !file.delete() || !temporary.renameTo( file ) )
+            {
+                temporary.delete();
+                throw new IOException( "could not rename " + temporary + " to " + file );
+            }
+        }
+    }
+
+    private static void encode( ByteBuffer buffer, int tilesX, int tilesY )
+    {
+        int cellCount = tilesX * tilesY;
+        int entrySize = getEntrySize( cellCount );
+
+        buffer.putInt( 0, MAGIC );
+        buffer.putInt( 4, VERSION );
+        buffer.putInt( 8, tilesX );
+        buffer.putInt( 12, tilesY );
+        buffer.putInt( 16, entrySize );
+
+        boolean rows = isInRows( tilesX, tilesY );
+
+        int lineCount = rows ? tilesY : tilesX;
+        int lineLength = rows ? tilesX : tilesY;
+
+        // lines entered one tile further on, their offsets add up to whole lines, the others cancel out in pairs
+        int wholeLines = lineCount / lineLength;
+        if( ( wholeLines * lineLength - lineCount ) % 2 != 0 )
+            wholeLines--;
+
+        int forwardLines = ( lineCount + wholeLines * lineLength ) / 2;
+        int alternatingLines = 2 * ( lineCount - forwardLines );
+
+        int entry = 0;
+        int position = 0;
+
+        for( int line = 0; line < lineCount; line++ )
+        {
+            boolean forward = line < alternatingLines ? line % 2 == 0 : true;
+
+            // a line entered one tile further on is walked forwards, ending one tile before its entry
+            for( int i = 0; i < lineLength; i++ )
+            {
+                int along = forward ? ( entry + i ) % lineLength : ( entry - i + lineLength ) % lineLength;
+                int element = rows ? line * tilesX + along : along * tilesX + line;
+
+                if( entrySize == 2 )
+                    buffer.putShort( HEADER_SIZE + element * 2, ( short ) position );
+                else
+                    buffer.putInt( HEADER_SIZE + element * 4, position );
+
+                position++;
+            }
+
+            entry = forward ? ( entry - 1 + lineLength ) % lineLength : ( entry + 1 ) % lineLength;
+        }
+    }
+
+    /**
+     * Returns whether the cycle runs along the rows, for an even number of them or else for the more of the odd ones.
+     */
+    private static boolean isInRows( int tilesX, int tilesY )
+    {
+        return tilesY % 2 == 0 || ( tilesX % 2 != 0 && tilesY >= tilesX );
+    }
+
+    public int getTilesX()
+    {
+        return tilesX;
+    }
+
+    public int getTilesY()
+    {
+        return tilesY;
+    }
+
+    /**
+     * Returns the tiles of the rows or columns the cycle runs along.
+     */
+    public int getLineLength()
+    {
+        return isInRows( tilesX, tilesY ) ? tilesX : tilesY;
+    }
+
+    /**
+     * Returns the position of the tile within the cycle, from 0 to the number of tiles - 1.
+     */
+    public int getPosition( int element )
+    {
+        if( entrySize == 2 )
+            return positions.getChar( HEADER_SIZE + element * 2 );
+        else
+            return positions.getInt( HEADER_SIZE + element * 4 );
+    }
+
+    /**
+     * Returns how many tiles further on the cycle the other tile is.
+     */
+    public int getDistance( int element, int otherElement )
+    {
+        int distance = getPosition( otherElement ) - getPosition( element );
+
+        return distance < 0 ? distance + cellCount : distance;
+    }
+
+    /**
+     * Returns the direction to the next tile on the cycle, other than the excluded one where there is a choice.
+     */
+    public int getNextDirection( int element, int excludedDirection )
+    {
+        int next = getPosition( element ) + 1;
+        if( next == cellCount )
+            next = 0;
+
+        int found = Simulation.NONE;
+
+        for( int direction = Simulation.UP; direction <= Simulation.RIGHT; direction++ )
+        {
+            if( getPosition( Simulation.getNeighbour( element, direction, tilesX, tilesY ) ) == next )
+            {
+                if( direction != excludedDirection )
+                    return direction;
+
+                found = direction;
+            }
+        }
+
+        return found;
+    }
+}
@@ -0,0 +1,309 @@
+package com.snake2D.game.bot;
+
+import com.snake2D.game.input.PlanningDirectionSource;
+import com.snake2D.game.simulation.Rng;
+import com.snake2D.game.simulation.Simulation;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Looks ahead with a Monte-Carlo tree search: it tries out many futures of
+ * the game, each one steering by the tree as far as it reaches and then by
+ * random turns which avoid the body, and takes the direction the most
+ * promising futures started with. Where the next food appears isn't known,
+ * so every future places it with a seed of its own.
+ *
+ * Every worker of a fork-join pool searches a tree of its own for the time
+ * given per step and the visits of the first directions are added up in the
+ * end, so the search scales with the cores without any locking. A worker
+ * plays the futures on its own copy of the game, which is overwritten with
+ * the current game for every one of them; the copies and the trees are
+ * allocated once.
+ */
+public class MctsBot extends PlanningDirectionSource
+{
+    public static final long DEFAULT_BUDGET_NANOS = 5000000L;
+
+    // nodes of the tree of every worker, once it is full the futures only start at its leaves
+    private static final int MAX_NODES = 1 << 16;
+
+    // steps of the random part of a future
+    private static final int PLAYOUT_STEPS = 40;
+
+    private static final double DEATH_PENALTY = 3;
+
+    // how much trying out the less visited directions is preferred
+    private static final double EXPLORATION = 1.5;
+
+    private final ForkJoinPool pool;
+    private final Worker[] workers;
+    private final Search search = new Search();
+
+    private final long budgetNanos;
+
+    // of the search running, read by the workers
+    private Simulation root;
+    private long deadline;
+
+    private final long[] visits = new long[ 4 ];
+    private long totalPlayouts;
+
+    public MctsBot()
+    {
+        this( Runtime.getRuntime().availableProcessors(), DEFAULT_BUDGET_NANOS );
+    }
+
+    /**
+     * @param workerCount how many trees are searched at once
+     * @param budgetNanos the time to search for every step
+     */
+    public MctsBot( int workerCount, long budgetNanos )
+    {
+        this.budgetNanos = budgetNanos;
+
+        pool = new ForkJoinPool( workerCount );
+
+        workers = new Worker[ workerCount ];
+        for( int i = 0; i < workerCount; i++ )
+            workers[ i ] = new Worker( i );
+    }
+
+    /**
+     * Returns the futures played by all searches up to now.
+     */
+    public long getPlayouts()
+    {
+        return totalPlayouts;
+    }
+
+    /**
+     * Searches for the given time and returns the direction to take after the coming move, or Simulation.NONE.
+     */
+    @Override
+    public int plan( Simulation simulation )
+    {
+        root = simulation;
+        deadline = System.nanoTime() + budgetNanos;
+
+        for( Worker worker : workers )
+            worker.reinitialize();
+
+        search.reinitialize();
+        pool.invoke( search );
+
+        for( int direction = 0; direction < 4; direction++ )
+            visits[ direction ] = 0;
+
+        for( Worker worker : workers )
+        {
+            worker.addRootVisits( visits );
+            totalPlayouts += worker.playouts;
+        }
+
+        int bestDirection = Simulation.NONE;
+        long bestVisits = 0;
+
+        for( int direction = Simulation.UP; direction <= Simulation.RIGHT; direction++ )
+        {
+            if( visits[ direction ] > bestVisits )
+            {
+                bestVisits = visits[ direction ];
+                bestDirection = direction;
+            }
+        }
+
+        return bestDirection;
+    }
+
+    /**
+     * Runs all workers at once and returns when all are done.
+     */
+    private class Search extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void compute()
+        {
+            invokeAll( workers );
+        }
+    }
+
+    private class Worker extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private Simulation copy;
+        private final Rng random;
+
+        // the tree, the children of a node are indexed by direction, -1 if not added yet
+        private final int[] children = new int[ MAX_NODES * 4 ];
+        private final int[] nodeVisits = new int[ MAX_NODES ];
+        private final double[] nodeValues = new double[ MAX_NODES ];
+        private int nodeCount;
+
+        // the nodes visited by the current future
+        private final int[] path = new int[ MAX_NODES ];
+
+        long playouts;
+
+        Worker( int index )
+        {
+            random = new Rng( System.nanoTime() + index );
+        }
+
+        void addRootVisits( long[] visits )
+        {
+            for( int direction = 0; direction < 4; direction++ )
+            {
+                int child = children[ direction ];
+
+                if( child >= 0 )
+                    visits[ direction ] += nodeVisits[ child ];
+            }
+        }
+
+        @Override
+        protected void compute()
+        {
+            if( copy == null || copy.getTilesX() != root.getTilesX() || copy.getTilesY() != root.getTilesY() )
+                copy = new Simulation( root.getTilesX(), root.getTilesY(), 0 );
+
+            nodeCount = 0;
+            addNode();
+
+            playouts = 0;
+
+            do
+            {
+                playout();
+                playouts++;
+            }
+            while( System.nanoTime() < deadline );
+        }
+
+        private int addNode()
+        {
+            int node = nodeCount++;
+
+            for( int direction = 0; direction < 4; direction++ )
+                children[ node * 4 + direction ] = -1;
+
+            nodeVisits[ node ] = 0;
+            nodeValues[ node ] = 0;
+
+            return node;
+        }
+
+        /**
+         * Plays one future from the current game and adds its outcome to the nodes it passed.
+         */
+        private void playout()
+        {
+            copy.copyFrom( root );
+            copy.setSeed( random.nextInt( Integer.MAX_VALUE ) );
+
+            int startLength = copy.getBodyLength();
+
+            int node = 0;
+            int depth = 0;
+            path[ depth++ ] = node;
+
+            // down the tree until a direction not tried yet is added
+            while( !copy.isGameOver() )
+            {
+                int direction = selectDirection( node );
+                int child = children[ node * 4 + direction ];
+
+                if( child < 0 )
+                {
+                    if( nodeCount == MAX_NODES )
+                        break;
+
+                    child = addNode();
+                    children[ node * 4 + direction ] = child;
+
+                    copy.step( direction );
+                    node = child;
+                    path[ depth++ ] = node;
+                    break;
+                }
+
+                copy.step( direction );
+                node = child;
+                path[ depth++ ] = node;
+            }
+
+            for( int i = 0; i < PLAYOUT_STEPS && !copy.isGameOver(); i++ )
+                copy.step( randomDirection() );
+
+            double value = copy.getBodyLength() - startLength;
+
+            // a full board is a win, not a death
+            if( copy.isGameOver() && copy.getSegmentCount() < copy.getTilesX() * copy.getTilesY() )
+                value -= DEATH_PENALTY;
+
+            for( int i = 0; i < depth; i++ )
+            {
+                nodeVisits[ path[ i ] ]++;
+                nodeValues[ path[ i ] ] += value;
+            }
+        }
+
+        /**
+         * Returns a direction not tried yet at the node, or the one with the best upper confidence bound.
+         */
+        private int selectDirection( int node )
+        {
+            int excluded = copy.getMoveDirection() ^ 1;
+
+            int bestDirection = Simulation.NONE;
+            double bestScore = Double.NEGATIVE_INFINITY;
+
+            double logVisits = Math.log( nodeVisits[ node ] + 1 );
+
+            for( int direction = Simulation.UP; direction <= Simulation.RIGHT; direction++ )
+            {
+                if( direction == excluded )
+                    continue;
+
+                int child = children[ node * 4 + direction ];
+                if( child < 0 )
+                    return direction;
+
+                double score = nodeValues[ child ] / nodeVisits[ child ]
+                        + EXPLORATION * Math.sqrt( logVisits / nodeVisits[ child ] );
+
+                if( score > bestScore )
+                {
+                    bestScore = score;
+                    bestDirection = direction;
+                }
+            }
+
+            return bestDirection;
+        }
+
+        /**
+         * Returns a random direction which doesn't run into the body right after the coming move, if there is one.
+         */
+        private int randomDirection()
+        {
+            int moveDirection = copy.getMoveDirection();
+            int pending = copy.getNeighbour( copy.getSegment( 0 ), moveDirection );
+
+            int start = random.nextInt( 4 );
+
+            for( int i = 0; i < 4; i++ )
+            {
+                int direction = ( start + i ) & 3;
+
+                if( direction != ( moveDirection ^ 1 ) && !copy.isOccupied( copy.getNeighbour( pending, direction ) ) )
+                    return direction;
+            }
+
+            return Simulation.NONE;
+        }
+    }
+}
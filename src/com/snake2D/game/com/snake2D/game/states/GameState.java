@@ -1,6 +1,6 @@
 package com.snake2D.game.com.snake2D.game.states;
 
-import java.awt.*;
+import com.snake2D.game.rendering.Renderer;
 
 /**
  * Created by philipp on 12.11.15.
@@ -16,7 +16,7 @@ public abstract class GameState
 
     public abstract void init();
     public abstract void update( float delta );
-    public abstract void render( Graphics2D graphics2D );
+    public abstract void render( Renderer renderer );
     public abstract void dispose();
 }
 
@@ -1,6 +1,6 @@
 package com.snake2D.game.com.snake2D.game.states;
 
-import java.awt.*;
+import com.snake2D.game.rendering.Renderer;
 
 /**
  * Created by philipp on 12.11.15.
@@ -18,9 +18,9 @@ public class GameStateManager
         currentGameState.update( updateRatio );
     }
 
-    public void render( Graphics2D graphics2D )
+    public void render( Renderer renderer )
     {
-        currentGameState.render( graphics2D );
+        currentGameState.render( renderer );
     }
 
     public void dispose()
@@ -1,472 +1,393 @@
 package com.snake2D.game.com.snake2D.game.states;
 
-import java.awt.*;
-import java.awt.event.KeyEvent;
-import java.awt.image.TileObserver;
-import java.util.Random;
-
 import com.snake2D.game.basic.Game;
 import com.snake2D.game.basic.Options;
+import com.snake2D.game.input.DirectionSource;
+import com.snake2D.game.observation.ObservationFile;
+import com.snake2D.game.rendering.Renderer;
+import com.snake2D.game.rendering.Snapshot;
+import com.snake2D.game.rendering.SnapshotPainter;
+import com.snake2D.game.rendering.StepChanges;
+import com.snake2D.game.rendering.TripleBuffer;
+import com.snake2D.game.replay.Replay;
+import com.snake2D.game.replay.ReplayRecorder;
+import com.snake2D.game.savestate.SaveStateFile;
+import com.snake2D.game.simulation.Simulation;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 
 /**
  * Created by philipp on 12.11.15.
  */
 public class MainState extends GameState
 {
-    private Integer[] elements = new Integer[ Game.TILES_X * Game.TILES_Y ];
+    // tick, last step tick and ticks per step in front of the simulation in a save state
+    private static final int STATE_HEADER_SIZE = 20;
+
+    // simulation side, only touched by update()
+    private Simulation simulation;
 
-    private static final int NO_ELEMENT = -1;
+    // where the turns come from, the keyboard or a replay
+    private final DirectionSource directions;
 
-    private static final int UP = 0;
-    private static final int DOWN = 1;
-    private static final int LEFT = 2;
-    private static final int RIGHT = 3;
+    // of the food and start position generator
+    private final long seed;
 
-    private int inputDirection = DOWN;
-    private int moveDirection = DOWN;
+    // where the game is recorded, saved and shared, null where it isn't
+    private final String recordFile;
+    private final String saveStateFile;
+    private final String observationFile;
 
-    private int moveStepTime;
+    // the session is recorded if it is saved, so it can be played back exactly the same, null otherwise
+    private ReplayRecorder recorder;
+    private boolean recordingSaved;
 
-    private int getFluidMotionStepTime;
-    private int fluidMotionStep = 0;
+    // the game is saved here every tick and resumed from it, null if it isn't saved
+    private SaveStateFile saveStates;
 
-    private long time = 0;
+    // the board is shared with other processes here after every step, null if it isn't shared
+    private ObservationFile observations;
 
-    private int headX;
-    private int headY;
+    // time is counted in ticks, never read from the clock, so the session only depends on its turns
+    private int stepTicks;
+    private long tick;
+    private long lastStepTick;
 
-    private int foodX;
-    private int foodY;
+    // handoff of the game state from update() to render(), which run on different threads
+    private final TripleBuffer<Snapshot> snapshots = new TripleBuffer<Snapshot>( new Snapshot(), new Snapshot(), new Snapshot() );
 
-    private int bodyLength = 1;
+    // render side, only touched by render()
+    private final StepChanges changes = new StepChanges();
+    private final SnapshotPainter painter = new SnapshotPainter();
 
-    private boolean gameOver = false;
+    // snapshots are only taken once the game is drawn, a game without a window doesn't need them
+    private volatile boolean rendered = false;
 
-    private Random random;
+    // last values shown in the title bar
+    private int shownScore;
+    private boolean shownGameOver;
+
+    public MainState( GameStateManager gameStateManager, DirectionSource directions )
+    {
+        this( gameStateManager, directions, Options.seed, Options.recordFile, Options.saveStateFile, Options.observationFile );
+    }
 
-    public MainState( GameStateManager gameStateManager )
+    /**
+     * Creates a game with its own seed and files instead of the ones of the options, e.g. for one of many running at once.
+     *
+     * @param recordFile      file the session is recorded to, null doesn't record it
+     * @param saveStateFile   file the game is saved to every tick and resumed from, null doesn't save it
+     * @param observationFile file the board is shared through every step, null doesn't share it
+     */
+    public MainState( GameStateManager gameStateManager, DirectionSource directions, long seed,
+                      String recordFile, String saveStateFile, String observationFile )
     {
         super( gameStateManager );
+
+        this.directions = directions;
+        this.seed = seed;
+        this.recordFile = recordFile;
+        this.saveStateFile = saveStateFile;
+        this.observationFile = observationFile;
     }
 
     @Override
     public void init()
     {
-        Game.setTitle( Game.TITLE + "   Score: " + bodyLength );
+        simulation = null;
 
-        moveStepTime = Options.getStepTime();
+        if( saveStateFile != null )
+            resume();
 
-        getFluidMotionStepTime = moveStepTime / Game.TILE_SIZE;
-
-        for( int i = 0; i < Game.TILES_X * Game.TILES_Y; i++ )
+        if( simulation == null )
         {
-            elements[ i ] = NO_ELEMENT;
+            stepTicks = Options.getStepTicks();
+
+            simulation = new Simulation( Options.tilesX, Options.tilesY, seed );
+
+            if( recordFile != null )
+                recorder = new ReplayRecorder( seed, Options.tilesX, Options.tilesY, stepTicks );
+
+            recordingSaved = false;
+
+            // the first step happens right away
+            tick = 0;
+            lastStepTick = -stepTicks;
         }
 
-        random = new Random();
+        painter.setViewSize( Options.getViewWidth(), Options.getViewHeight() );
 
-        headX = random.nextInt( Game.TILES_X - 1 ) + 1;
-        headY = random.nextInt( Game.TILES_Y - 1 ) + 1;
+        if( observationFile != null && observations == null )
+            openObservations();
 
-        setNextElement( headX, headY, headX, headY - 1 );
+        publishSnapshot();
+        publishObservation();
 
-        generateFood();
+        updateTitle();
     }
 
-    private int getElement( int elementX, int elementY )
+    @Override
+    public void update( float updateRatio )
     {
-        return elementY * Game.TILES_X + elementX;
+        if( simulation.isGameOver() )
+            return;
+
+        directions.update( tick, simulation );
+
+        if( tick - lastStepTick >= stepTicks )
+        {
+            nextStep();
+        }
+
+        tick++;
+
+        if( saveStates != null )
+            saveState();
+
+        if( simulation.isGameOver() )
+            saveRecording();
     }
 
-    private int getElementX( int element )
+    private void nextStep()
     {
-        return element % Game.TILES_X;
+        int direction = directions.nextDirection( tick );
+
+        if( recorder != null )
+            recorder.record( tick, direction );
+        simulation.step( direction );
+
+        lastStepTick = tick;
+
+        updateTitle();
+
+        publishSnapshot();
+        publishObservation();
     }
 
-    private int getElementY( int element )
+    public long getTick()
     {
-        return element / Game.TILES_X;
+        return tick;
     }
 
-    private void setNextElement( int thisElement, int nextElement )
+    /**
+     * Returns the tick of the last step of the snake.
+     */
+    public long getLastStepTick()
     {
-        elements[ thisElement ] = nextElement;
+        return lastStepTick;
     }
 
-    private void setNextElement( int thisElementX, int thisElementY, int nextElementX, int nextElementY )
+    public int getStepTicks()
     {
-        elements[ thisElementY * Game.TILES_X + thisElementX ] = nextElementY * Game.TILES_X + nextElementX;
+        return stepTicks;
     }
 
-    private int getNextElement( int thisElement )
+    /**
+     * Returns the game logic, which must only be read on the thread calling update().
+     */
+    public Simulation getSimulation()
     {
-        return elements[ thisElement ];
+        return simulation;
     }
 
-    private int getNextElement( int thisElementX, int thisElementY )
+    public int getScore()
     {
-        return elements[ thisElementY * Game.TILES_X + thisElementX ];
+        return simulation.getBodyLength();
     }
 
-    @Override
-    public void update( float updateRatio )
+    public boolean isGameOver()
     {
-        if( gameOver )
-            return;
-
-        handleInput();
-
-        long deltaTime = System.currentTimeMillis() - time;
-
-        fluidMotionStep = ( int ) deltaTime / getFluidMotionStepTime;
-
-        if( deltaTime >= moveStepTime )
-        {
-            nextStep();
-        }
+        return simulation.isGameOver();
     }
 
-    private void handleInput()
+    /**
+     * Returns the session recorded up to now, i.e. up to the tick about to come,
+     * or null if it isn't recorded since recording is turned off.
+     */
+    public Replay getRecording()
     {
-        if( ( Game.keyboardInputHandler.isKeyDown( KeyEvent.VK_UP ) || Game.keyboardInputHandler.isKeyDown( KeyEvent.VK_W ) )
-                && moveDirection != DOWN )
-            inputDirection = UP;
-        else if( ( Game.keyboardInputHandler.isKeyDown( KeyEvent.VK_DOWN ) || Game.keyboardInputHandler.isKeyDown( KeyEvent.VK_S ) )
-                && moveDirection != UP )
-            inputDirection = DOWN;
-        else if( ( Game.keyboardInputHandler.isKeyDown( KeyEvent.VK_LEFT ) || Game.keyboardInputHandler.isKeyDown( KeyEvent.VK_A ) )
-                && moveDirection != RIGHT )
-            inputDirection = LEFT;
-        else if( ( Game.keyboardInputHandler.isKeyDown( KeyEvent.VK_RIGHT ) || Game.keyboardInputHandler.isKeyDown( KeyEvent.VK_D ) )
-                && moveDirection != LEFT )
-            inputDirection = RIGHT;
+        return recorder != null ? recorder.toReplay( tick ) : null;
     }
 
-    private void nextStep()
+    private void saveRecording()
     {
-        updateBody();
-        updateHead();
+        if( recorder == null || recordingSaved )
+            return;
 
-        // now, that the snake was updated, reset the fluid motion step
-        fluidMotionStep = 0;
+        recordingSaved = true;
 
-        time = System.currentTimeMillis();
+        try
+        {
+            getRecording().save( recordFile );
+        }
+        catch( IOException e )
+        {
+            System.err.println( "could not save the replay to " + recordFile + ": " + e.getMessage() );
+        }
     }
 
-    private void updateBody()
+    /**
+     * Continues the game of the save state file if it is still running and on a board of the same size.
+     */
+    private void resume()
     {
-        // head is start element
-        int thisElement = getElement( headX, headY );
-
-        // repeat until we get the last element which hasn't a next element
-        do
+        try
         {
-            // check the value of the next element:
-            // is it 'NO_ELEMENT'? -> then 'thisElement' is the last element of the snake
-            int nextElement = getNextElement( thisElement );
-            if( isEndOfSnake( nextElement ) )
-            {
-                // remove the last tile from the snake
-                setNextElement( thisElement, NO_ELEMENT );
-            }
-
-            thisElement = nextElement;
+            saveStates = new SaveStateFile( saveStateFile, STATE_HEADER_SIZE + Simulation.getMaxStateSize( Options.tilesX, Options.tilesY )
+                    + Simulation.getMaxFreeCellOrderSize( Options.tilesX, Options.tilesY ) );
+        }
+        catch( IOException e )
+        {
+            System.err.println( "could not open the save state " + saveStateFile + ": " + e.getMessage() );
+            return;
         }
-        while( !isEndOfSnake( thisElement ) );
-    }
 
-    private boolean isEndOfSnake( int element )
-    {
-        return getNextElement( element ) == NO_ELEMENT || element == getElement( headX, headY );
-    }
+        ByteBuffer state = saveStates.read();
+        if( state == null )
+            return;
 
-    private void updateHead()
-    {
-        // coordinates for next head position
-        int newHeadX = headX;
-        int newHeadY = headY;
-
-        // evaluate move direction and change position accordingly
-        if( moveDirection == UP )
-            newHeadY--;
-        else if( moveDirection == DOWN )
-            newHeadY++;
-        else if( moveDirection == LEFT )
-            newHeadX--;
-        else if( moveDirection == RIGHT )
-            newHeadX++;
-        else
-            ;
+        long savedTick = state.getLong();
+        long savedLastStepTick = state.getLong();
+        int savedStepTicks = state.getInt();
 
-        // update move direction
-        moveDirection = inputDirection;
+        Simulation savedSimulation;
 
-        // check out of bounds x
-        if( newHeadX >= Game.TILES_X )
-            newHeadX = 0;
-        else if( newHeadX < 0 )
-            newHeadX = Game.TILES_X - 1;
-        else
-            ;
+        try
+        {
+            savedSimulation = Simulation.restoreState( state );
 
-        // check out of bounds y
-        if( newHeadY >= Game.TILES_Y )
-            newHeadY = 0;
-        else if( newHeadY < 0 )
-            newHeadY = Game.TILES_Y - 1;
-        else
-            ;
+            if( savedSimulation.isGameOver()
+                    || savedSimulation.getTilesX() != Options.tilesX || savedSimulation.getTilesY() != Options.tilesY )
+                return;
 
-        // check collision with existing tile
-        int elementInFront = getNextElement( newHeadX, newHeadY );
-        if( elementInFront != NO_ELEMENT )
+            // the food has to be picked from the free tiles in the same order to continue the same way
+            savedSimulation.restoreFreeCellOrder( state );
+        }
+        catch( IllegalArgumentException | BufferUnderflowException e )
         {
-            gameOver = true;
-            Game.setTitle( Game.TITLE + "   Score: " + bodyLength + " GAME OVER!");
+            System.err.println( "could not resume from the save state " + saveStateFile + ": " + e.getMessage() );
             return;
         }
 
-        // move head
-        setNextElement( newHeadX, newHeadY, headX, headY );
+        simulation = savedSimulation;
+        stepTicks = savedStepTicks;
+        tick = savedTick;
+        lastStepTick = savedLastStepTick;
 
-        // update stored head coordinates
-        headX = newHeadX;
-        headY = newHeadY;
+        // a replay has to start with the game, the rest of this one isn't recorded
+        recorder = null;
+        recordingSaved = true;
+    }
 
-        // if we collected food ...
-        if( headX == foodX && headY == foodY )
-        {
-            // generate new food
-            generateFood();
+    private void saveState()
+    {
+        ByteBuffer state = saveStates.beginWrite();
 
-            // increase body length
-            bodyLength++;
+        state.putLong( tick );
+        state.putLong( lastStepTick );
+        state.putInt( stepTicks );
 
-            // update score
-            Game.setTitle( Game.TITLE + "   Score: " + bodyLength );
+        simulation.saveState( state );
+        simulation.saveFreeCellOrder( state );
 
-            // update the head one more time
-            updateHead();
-        }
+        saveStates.commit();
     }
 
-    private void generateFood()
+    private void openObservations()
     {
-        // get all free elements by subtracting the body length from all available elements
-        int noElementsCount = Game.TILES_X * Game.TILES_Y - bodyLength;
-
-        // array which stores indices of free elements
-        Integer[] noElements = new Integer[ noElementsCount ];
-
-        // index of noElements
-        int i = 0;
-        // get all free indices
-        for( int element = 0; element < Game.TILES_X * Game.TILES_Y; element++ )
+        try
         {
-            if( getNextElement( element ) == NO_ELEMENT )
-            {
-                noElements[ i ] = element;
-                i++;
-            }
+            observations = new ObservationFile( observationFile, Options.tilesX, Options.tilesY );
         }
+        catch( IOException e )
+        {
+            System.err.println( "could not open the observation file " + observationFile + ": " + e.getMessage() );
+        }
+    }
 
-        // get random index
-        int randomNoElement = random.nextInt( noElementsCount );
-
-        // update food tile
-        foodX = noElements[ randomNoElement ] % Game.TILES_X;
-        foodY = noElements[ randomNoElement ] / Game.TILES_X;
+    private void publishObservation()
+    {
+        if( observations != null )
+            observations.publish( simulation );
     }
 
-    @Override
-    public void render( Graphics2D graphics2D )
+    private void publishSnapshot()
     {
-        // render food
-        graphics2D.setColor( Options.foodColor );
-        graphics2D.fillRect( foodX * Game.TILE_SIZE, foodY * Game.TILE_SIZE, Game.TILE_SIZE, Game.TILE_SIZE );
+        if( !rendered )
+            return;
 
-        // store coordinates of the previously rendered element
-        int prevX = headX;
-        int prevY = headY;
+        int viewColumns = ( Options.getViewWidth() + Options.tileSize - 1 ) / Options.tileSize;
+        int viewRows = ( Options.getViewHeight() + Options.tileSize - 1 ) / Options.tileSize;
 
-        // because there is no previous element of the head we 'virtually' create one
-        if( moveDirection == UP )
-        {
-            if( headY == 0 )
-                prevY = Game.TILES_Y - 1;
-            else
-                prevY--;
-        }
-        else if( moveDirection == DOWN )
-        {
-            if( headY == Game.TILES_Y - 1 )
-                prevY = 0;
-            else
-                prevY++;
-        }
-        else if( moveDirection == LEFT )
-        {
-            if( headX == 0 )
-                prevX = Game.TILES_X - 1;
-            else
-                prevX--;
-        }
-        else if( moveDirection == RIGHT )
-        {
-            if( headX == Game.TILES_X - 1 )
-                prevX = 0;
-            else
-                prevX++;
-        }
+        long stepDuration = stepTicks * 1000000000L / Options.TICK_RATE;
+
+        snapshots.getBack().capture( simulation, viewColumns, viewRows, System.nanoTime(), stepDuration, changes );
+        snapshots.publish();
+    }
 
-        // coordinates of the currently rendered element
-        int thisX;
-        int thisY;
+    private void updateTitle()
+    {
+        // only touch the frame if something visible has changed
+        if( simulation.getBodyLength() == shownScore && simulation.isGameOver() == shownGameOver )
+            return;
 
-        // currently rendered element
-        int thisElement = getElement( headX, headY );
+        shownScore = simulation.getBodyLength();
+        shownGameOver = simulation.isGameOver();
 
-        // element which will be rendered during the next loop
-        int nextElement = getNextElement( thisElement );
+        if( shownGameOver )
+            Game.setTitle( Game.TITLE + "   Score: " + shownScore + " GAME OVER!" );
+        else
+            Game.setTitle( Game.TITLE + "   Score: " + shownScore );
+    }
+
+    @Override
+    public void render( Renderer renderer )
+    {
+        // the first snapshot is taken by the next step
+        rendered = true;
 
-        // offsets for fluid motion
-        int offsetX;
-        int offsetY;
+        Snapshot snapshot = snapshots.acquire();
 
-        // position which the element will be rendered at
-        int xPos;
-        int yPos;
+        if( snapshot.isCaptured() )
+            painter.paint( snapshot, renderer, System.nanoTime() );
+    }
 
-        // indicates whether the current element is going out of bounds in the next step
-        int teleport;
+    @Override
+    public void dispose()
+    {
+        // a session which is quit before it's over is saved as well
+        saveRecording();
 
-        // repeat until we reaches the end of the snake
-        do
+        if( saveStates != null )
         {
-            // reset teleport value
-            teleport = -1;
-
-            // reset offset values
-            offsetX = 0;
-            offsetY = 0;
-
-            // get the coordinates of the currently rendered element
-            thisX = getElementX( thisElement );
-            thisY = getElementY( thisElement );
-
-            //
-            // now we obtain the direction how the current element moves
-            // to get the correct offset values for fluid motion
-            //
-            // move up
-            if( thisY > prevY )
-            {
-                // bottom bounds reached
-                if( thisY == Game.TILES_Y - 1 && prevY == 0 )
-                {
-                    offsetX = 0;
-                    offsetY = fluidMotionStep;
-
-                    teleport = UP;
-                }
-                else
-                {
-                    offsetX = 0;
-                    offsetY = -fluidMotionStep;
-                }
-            }
-            // move down
-            else if( thisY < prevY )
-            {
-                // top bounds reached
-                if( thisY == 0 && prevY == Game.TILES_Y - 1 )
-                {
-                    offsetX = 0;
-                    offsetY = -fluidMotionStep;
-
-                    teleport = DOWN;
-                }
-                else
-                {
-                    offsetX = 0;
-                    offsetY = fluidMotionStep;
-                }
-            }
-            // move left
-            else if( thisX > prevX )
+            saveStates.force();
+
+            try
             {
-                // right bounds reached
-                if( thisX == Game.TILES_X - 1 && prevX == 0 )
-                {
-                    offsetX = fluidMotionStep;
-                    offsetY = 0;
-
-                    teleport = LEFT;
-                }
-                else
-                {
-                    offsetX = -fluidMotionStep;
-                    offsetY = 0;
-                }
+                saveStates.close();
             }
-            // move right
-            else if( thisX < prevX )
+            catch( IOException e )
             {
-                // left bounds reached
-                if( thisX == 0 && prevX == Game.TILES_X - 1 )
-                {
-                    offsetX = -fluidMotionStep;
-                    offsetY = 0;
-
-                    teleport = RIGHT;
-                }
-                else
-                {
-                    offsetX = fluidMotionStep;
-                    offsetY = 0;
-                }
+                System.err.println( "could not close the save state " + saveStateFile + ": " + e.getMessage() );
             }
 
-            // calculate position coordinates
-            xPos = thisX * Game.TILE_SIZE + offsetX;
-            yPos = thisY * Game.TILE_SIZE + offsetY;
-
-            // do the rendering
-            graphics2D.setColor( Options.snakeColor );
-            graphics2D.fillOval( xPos, yPos, Game.TILE_SIZE, Game.TILE_SIZE );
+            saveStates = null;
+        }
 
-            // if we reached the bounds we have to render the half of the element
-            if( teleport != -1 )
+        if( observations != null )
+        {
+            try
             {
-                // calculate the positions for the other half of the element at the other end of the field
-                if( teleport == UP )
-                    yPos = offsetY - Game.TILE_SIZE;
-                else if( teleport == DOWN )
-                    yPos = ( Game.TILES_Y ) * Game.TILE_SIZE - fluidMotionStep ;
-                else if( teleport == LEFT )
-                    xPos = offsetX - Game.TILE_SIZE;
-                else if( teleport == RIGHT )
-                    xPos = ( Game.TILES_X ) * Game.TILE_SIZE - fluidMotionStep;
-                else;
-
-                // render that part of the element
-                graphics2D.fillOval( xPos, yPos, Game.TILE_SIZE, Game.TILE_SIZE );
+                observations.close();
+            }
+            catch( IOException e )
+            {
+                System.err.println( "could not close the observation file " + observationFile + ": " + e.getMessage() );
             }
 
-            // update previous coordinates
-            prevX = getElementX( thisElement );
-            prevY = getElementY( thisElement );
-
-            // update current and next element
-            thisElement = getNextElement( thisElement );
-            nextElement = getNextElement( thisElement );
+            observations = null;
         }
-        while( !isEndOfSnake( thisElement ) );
-    }
-
-    @Override
-    public void dispose()
-    {
-
     }
-}
\ No newline at end of file
+}
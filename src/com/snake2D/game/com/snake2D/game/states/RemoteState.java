@@ -0,0 +1,150 @@
+package com.snake2D.game.com.snake2D.game.states;
+
+import com.snake2D.game.basic.Game;
+import com.snake2D.game.basic.Options;
+import com.snake2D.game.input.DirectionSource;
+import com.snake2D.game.rendering.Renderer;
+import com.snake2D.game.rendering.Snapshot;
+import com.snake2D.game.rendering.SnapshotPainter;
+import com.snake2D.game.rendering.StepChanges;
+import com.snake2D.game.rendering.TripleBuffer;
+import com.snake2D.game.server.ServerConnection;
+import com.snake2D.game.simulation.Simulation;
+
+import java.io.IOException;
+
+/**
+ * Shows the game running on a server and sends the turns to it.
+ * The game logic runs on the server only, this state just follows it.
+ */
+public class RemoteState extends GameState
+{
+    private final ServerConnection connection;
+
+    // where the turns come from, null when only watching
+    private final DirectionSource directions;
+
+    private long tick;
+    private boolean connected;
+
+    // handoff of the game state from update() to render(), which run on different threads
+    private final TripleBuffer<Snapshot> snapshots = new TripleBuffer<Snapshot>( new Snapshot(), new Snapshot(), new Snapshot() );
+
+    // render side, only touched by render()
+    private final StepChanges changes = new StepChanges();
+    private final SnapshotPainter painter = new SnapshotPainter();
+
+    // last values shown in the title bar
+    private int shownScore;
+    private boolean shownGameOver;
+
+    public RemoteState( GameStateManager gameStateManager, ServerConnection connection, DirectionSource directions )
+    {
+        super( gameStateManager );
+
+        this.connection = connection;
+        this.directions = directions;
+    }
+
+    @Override
+    public void init()
+    {
+        tick = 0;
+        connected = true;
+
+        painter.setViewSize( Options.getViewWidth(), Options.getViewHeight() );
+
+        if( connection.getSimulation() != null )
+        {
+            publishSnapshot();
+            updateTitle();
+        }
+    }
+
+    @Override
+    public void update( float updateRatio )
+    {
+        if( !connected )
+            return;
+
+        try
+        {
+            Simulation simulation = connection.getSimulation();
+
+            if( directions != null && simulation != null )
+            {
+                directions.update( tick, simulation );
+
+                // the server queues the turns itself, so all of them are passed on right away
+                for( int direction = directions.nextDirection( tick ); direction != Simulation.NONE;
+                     direction = directions.nextDirection( tick ) )
+                    connection.sendTurn( direction );
+            }
+
+            if( connection.poll() > 0 )
+            {
+                publishSnapshot();
+                updateTitle();
+            }
+        }
+        catch( IOException e )
+        {
+            connected = false;
+
+            System.err.println( "lost the connection to the server: " + e.getMessage() );
+            Game.setTitle( Game.TITLE + "   DISCONNECTED" );
+        }
+
+        tick++;
+    }
+
+    private void publishSnapshot()
+    {
+        int viewColumns = ( Options.getViewWidth() + Options.tileSize - 1 ) / Options.tileSize;
+        int viewRows = ( Options.getViewHeight() + Options.tileSize - 1 ) / Options.tileSize;
+
+        long stepDuration = connection.getStepTicks() * 1000000000L / Options.TICK_RATE;
+
+        snapshots.getBack().capture( connection.getSimulation(), viewColumns, viewRows, System.nanoTime(), stepDuration, changes );
+        snapshots.publish();
+    }
+
+    private void updateTitle()
+    {
+        Simulation simulation = connection.getSimulation();
+
+        // only touch the frame if something visible has changed
+        if( simulation.getBodyLength() == shownScore && simulation.isGameOver() == shownGameOver )
+            return;
+
+        shownScore = simulation.getBodyLength();
+        shownGameOver = simulation.isGameOver();
+
+        if( shownGameOver )
+            Game.setTitle( Game.TITLE + "   Score: " + shownScore + " GAME OVER!" );
+        else
+            Game.setTitle( Game.TITLE + "   Score: " + shownScore );
+    }
+
+    @Override
+    public void render( Renderer renderer )
+    {
+        Snapshot snapshot = snapshots.acquire();
+
+        if( snapshot.isCaptured() )
+            painter.paint( snapshot, renderer, System.nanoTime() );
+    }
+
+    @Override
+    public void dispose()
+    {
+        try
+        {
+            connection.close();
+        }
+        catch( IOException e )
+        {
+            System.err.println( "could not close the connection to the server: " + e.getMessage() );
+        }
+    }
+}
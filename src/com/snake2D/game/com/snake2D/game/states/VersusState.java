@@ -0,0 +1,207 @@
+package com.snake2D.game.com.snake2D.game.states;
+
+import com.snake2D.game.basic.Game;
+import com.snake2D.game.basic.Options;
+import com.snake2D.game.input.KeyboardDirectionSource;
+import com.snake2D.game.metrics.LatencyHistogram;
+import com.snake2D.game.netplay.RollbackSession;
+import com.snake2D.game.netplay.UdpInputLink;
+import com.snake2D.game.rendering.Renderer;
+import com.snake2D.game.rendering.Snapshot;
+import com.snake2D.game.rendering.SnapshotPainter;
+import com.snake2D.game.rendering.StepChanges;
+import com.snake2D.game.rendering.TripleBuffer;
+import com.snake2D.game.simulation.VersusSimulation;
+
+import java.io.IOException;
+
+/**
+ * Plays a versus game against another peer over UDP with rollback netcode.
+ * The local snake follows the keyboard right away, the other one is
+ * predicted until its inputs arrive, and a late input that differs rolls the
+ * game back and simulates it again. Both snakes are shown, the camera
+ * follows the local one.
+ */
+public class VersusState extends GameState
+{
+    // player 0 listens on this port and player 1 on the next one, unless told otherwise
+    public static final int DEFAULT_PORT = 47800;
+
+    private final RollbackSession session;
+    private final UdpInputLink link;
+    private final KeyboardDirectionSource directions;
+
+    private final int localPlayer;
+    private final int stepTicks;
+
+    private long tick;
+    private long lastStepTick;
+    private long lastStepTime;
+    private boolean connected;
+
+    // the rollbacks so far, a new one changed what is shown
+    private long shownRollbacks;
+
+    // handoff of the game state from update() to render(), which run on different threads
+    private final TripleBuffer<Snapshot> snapshots = new TripleBuffer<Snapshot>( new Snapshot(), new Snapshot(), new Snapshot() );
+    private final StepChanges changes = new StepChanges();
+
+    // render side, only touched by render()
+    private final SnapshotPainter painter = new SnapshotPainter();
+
+    // last values shown in the title bar
+    private int shownScore = -1;
+    private int shownOpponentScore;
+    private int shownResult;
+    private boolean shownWaiting;
+
+    public VersusState( GameStateManager gameStateManager, RollbackSession session, UdpInputLink link,
+                        KeyboardDirectionSource directions )
+    {
+        super( gameStateManager );
+
+        this.session = session;
+        this.link = link;
+        this.directions = directions;
+
+        localPlayer = session.getLocalPlayer();
+        stepTicks = Options.getStepTicks();
+    }
+
+    @Override
+    public void init()
+    {
+        tick = 0;
+        connected = true;
+
+        // the first step happens right away
+        lastStepTick = -stepTicks;
+        lastStepTime = System.nanoTime();
+
+        painter.setViewSize( Options.getViewWidth(), Options.getViewHeight() );
+
+        publishSnapshot();
+        updateTitle();
+    }
+
+    @Override
+    public void update( float updateRatio )
+    {
+        if( !connected )
+            return;
+
+        try
+        {
+            link.receive( session );
+
+            long steps = session.getTick();
+
+            // a late input may have changed the present, show it even while the game doesn't step
+            session.resimulate();
+
+            VersusSimulation simulation = session.getSimulation();
+
+            directions.update( tick, simulation.getMoveDirection( localPlayer ) );
+
+            // the game waits while the other peer falls too far behind
+            if( !simulation.isOver() && tick - lastStepTick >= stepTicks && session.canAdvance() )
+            {
+                session.advance( directions.nextDirection( tick ) );
+                lastStepTick = tick;
+                lastStepTime = System.nanoTime();
+            }
+
+            link.send( session );
+
+            if( session.getTick() != steps || session.getResimulationTimes().getCount() != shownRollbacks )
+            {
+                shownRollbacks = session.getResimulationTimes().getCount();
+                publishSnapshot();
+            }
+
+            updateTitle();
+        }
+        catch( IOException e )
+        {
+            connected = false;
+
+            System.err.println( "lost the connection to the other player: " + e.getMessage() );
+            Game.setTitle( Game.TITLE + "   DISCONNECTED" );
+        }
+
+        tick++;
+    }
+
+    private void publishSnapshot()
+    {
+        int viewColumns = ( Options.getViewWidth() + Options.tileSize - 1 ) / Options.tileSize;
+        int viewRows = ( Options.getViewHeight() + Options.tileSize - 1 ) / Options.tileSize;
+
+        long stepDuration = stepTicks * 1000000000L / Options.TICK_RATE;
+
+        snapshots.getBack().capture( session.getSimulation(), localPlayer, viewColumns, viewRows, lastStepTime,
+                stepDuration, changes );
+        snapshots.publish();
+    }
+
+    private void updateTitle()
+    {
+        VersusSimulation simulation = session.getSimulation();
+
+        int score = simulation.getScore( localPlayer );
+        int opponentScore = simulation.getScore( 1 - localPlayer );
+        int result = simulation.getResult();
+        boolean waiting = !session.canAdvance();
+
+        // only touch the frame if something visible has changed
+        if( score == shownScore && opponentScore == shownOpponentScore && result == shownResult && waiting == shownWaiting )
+            return;
+
+        shownScore = score;
+        shownOpponentScore = opponentScore;
+        shownResult = result;
+        shownWaiting = waiting;
+
+        String title = Game.TITLE + "   You: " + score + "  Opponent: " + opponentScore;
+
+        if( result == VersusSimulation.DRAW )
+            title += " DRAW!";
+        else if( result == localPlayer )
+            title += " YOU WON!";
+        else if( result != VersusSimulation.RUNNING )
+            title += " YOU LOST!";
+        else if( waiting )
+            title += " WAITING FOR THE OTHER PLAYER";
+
+        Game.setTitle( title );
+    }
+
+    @Override
+    public void render( Renderer renderer )
+    {
+        Snapshot snapshot = snapshots.acquire();
+
+        if( snapshot.isCaptured() )
+            painter.paint( snapshot, renderer, System.nanoTime() );
+    }
+
+    @Override
+    public void dispose()
+    {
+        LatencyHistogram times = session.getResimulationTimes();
+        LatencyHistogram depths = session.getRollbackDepths();
+
+        System.out.println( times.getCount() + " rollbacks, ticks simulated again: p50 " + depths.getPercentile( 0.5 )
+                + ", max " + depths.getMax() + ", cost per rollback: p50 " + times.getPercentile( 0.5 ) / 1000
+                + " us, p99 " + times.getPercentile( 0.99 ) / 1000 + " us" );
+
+        try
+        {
+            link.close();
+        }
+        catch( IOException e )
+        {
+            System.err.println( "could not close the connection to the other player: " + e.getMessage() );
+        }
+    }
+}
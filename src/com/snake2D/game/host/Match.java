@@ -0,0 +1,94 @@
+package com.snake2D.game.host;
+
+import com.snake2D.game.com.snake2D.game.states.GameStateManager;
+import com.snake2D.game.com.snake2D.game.states.MainState;
+
+/**
+ * One game without a window, run by a thread of its own for as long as the clock ticks.
+ * A game which is over is followed by the next one with another seed.
+ */
+class Match implements Runnable
+{
+    // ticks a match may fall behind the clock before it skips them instead of catching up
+    private static final int MAX_CATCH_UP_TICKS = 5;
+
+    private final TickClock clock;
+
+    private final GameStateManager gameStateManager = new GameStateManager();
+    private final RandomDirectionSource directions;
+    private MainState state;
+    private long seed;
+
+    // written by the thread of the match only
+    private volatile long ticks = 0;
+    private volatile long skippedTicks = 0;
+
+    Match( TickClock clock, long seed )
+    {
+        this.clock = clock;
+        this.seed = seed;
+
+        directions = new RandomDirectionSource( seed );
+    }
+
+    long getTicks()
+    {
+        return ticks;
+    }
+
+    long getSkippedTicks()
+    {
+        return skippedTicks;
+    }
+
+    private void newGame()
+    {
+        // thousands of matches must not record, save or share through the same files as the game
+        state = new MainState( gameStateManager, directions, seed++, null, null, null );
+        gameStateManager.setGameState( state );
+    }
+
+    @Override
+    public void run()
+    {
+        newGame();
+
+        clock.register( Thread.currentThread() );
+
+        long done = clock.getTick();
+
+        try
+        {
+            while( true )
+            {
+                long now = clock.awaitTick( done );
+                if( now < 0 )
+                    break;
+
+                if( now - done > MAX_CATCH_UP_TICKS )
+                {
+                    skippedTicks += now - done - MAX_CATCH_UP_TICKS;
+                    done = now - MAX_CATCH_UP_TICKS;
+                }
+
+                for( ; done < now; done++ )
+                {
+                    if( state.isGameOver() )
+                        newGame();
+
+                    gameStateManager.update( 1 );
+                    ticks++;
+                }
+            }
+        }
+        catch( InterruptedException e )
+        {
+            // the host is shutting down
+        }
+        finally
+        {
+            clock.unregister( Thread.currentThread() );
+            gameStateManager.dispose();
+        }
+    }
+}
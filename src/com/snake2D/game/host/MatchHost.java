@@ -0,0 +1,207 @@
+package com.snake2D.game.host;
+
+import com.snake2D.game.basic.Options;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs many games without a window at once, each on a thread of its own
+ * with its own GameStateManager, all driven by one shared TickClock.
+ * The threads are virtual threads where the JVM has them (Java 21 and
+ * later), which are looked up at runtime since the game is built for
+ * older versions. Elsewhere they are platform threads with a small stack.
+ *
+ * The main method adds matches step by step and prints the ticks per second
+ * of all of them together and the heap every match takes:
+ *
+ * java -Djava.awt.headless=true -cp snake2d.jar com.snake2D.game.host.MatchHost [matches...] [-seconds n]
+ */
+public class MatchHost
+{
+    private static final long PLATFORM_STACK_SIZE = 256 * 1024;
+
+    private final TickClock clock;
+
+    private final ThreadFactory threads;
+    private final boolean virtualThreads;
+
+    private final List<Match> matches = new ArrayList<Match>();
+    private long nextSeed;
+
+    public MatchHost( int tickRate, long seed )
+    {
+        clock = new TickClock( tickRate );
+        nextSeed = seed;
+
+        ThreadFactory virtualThreadFactory = createVirtualThreadFactory();
+
+        virtualThreads = virtualThreadFactory != null;
+        threads = virtualThreads ? virtualThreadFactory : new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( Runnable runnable )
+            {
+                Thread thread = new Thread( null, runnable, "Match", PLATFORM_STACK_SIZE );
+                thread.setDaemon( true );
+
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Returns Thread.ofVirtual().factory() if this JVM has virtual threads, otherwise null.
+     */
+    private static ThreadFactory createVirtualThreadFactory()
+    {
+        try
+        {
+            Object builder = Thread.class.getMethod( "ofVirtual" ).invoke( null );
+
+            return ( ThreadFactory ) Class.forName( "java.lang.Thread$Builder" ).getMethod( "factory" ).invoke( builder );
+        }
+        catch( ReflectiveOperationException e )
+        {
+            return null;
+        }
+    }
+
+    public boolean isUsingVirtualThreads()
+    {
+        return virtualThreads;
+    }
+
+    public void start()
+    {
+        clock.start();
+    }
+
+    /**
+     * Stops the clock, which ends all matches.
+     */
+    public void stop()
+    {
+        clock.stop();
+    }
+
+    /**
+     * Starts the given number of matches, each with a seed of its own.
+     */
+    public synchronized void addMatches( int count )
+    {
+        for( int i = 0; i < count; i++ )
+        {
+            // every match takes a range of seeds for the games following each other
+            Match match = new Match( clock, nextSeed );
+            nextSeed += 1L << 32;
+
+            matches.add( match );
+            threads.newThread( match ).start();
+        }
+    }
+
+    public synchronized int getMatchCount()
+    {
+        return matches.size();
+    }
+
+    /**
+     * Returns the ticks run by all matches together.
+     */
+    public synchronized long getTicks()
+    {
+        long ticks = 0;
+        for( Match match : matches )
+            ticks += match.getTicks();
+
+        return ticks;
+    }
+
+    /**
+     * Returns the ticks the matches skipped because they fell too far behind the clock.
+     */
+    public synchronized long getSkippedTicks()
+    {
+        long skippedTicks = 0;
+        for( Match match : matches )
+            skippedTicks += match.getSkippedTicks();
+
+        return skippedTicks;
+    }
+
+    public TickClock getClock()
+    {
+        return clock;
+    }
+
+    private static long getUsedHeap()
+    {
+        Runtime runtime = Runtime.getRuntime();
+
+        for( int i = 0; i < 3; i++ )
+            System.gc();
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main( String[] args ) throws InterruptedException
+    {
+        System.setProperty( "java.awt.headless", "true" );
+
+        List<Integer> steps = new ArrayList<Integer>();
+        int seconds = 5;
+
+        for( int i = 0; i < args.length; i++ )
+        {
+            if( args[ i ].equals( "-seconds" ) )
+                seconds = Integer.parseInt( args[ ++i ] );
+            else
+                steps.add( Integer.parseInt( args[ i ] ) );
+        }
+
+        if( steps.isEmpty() )
+        {
+            steps.add( 100 );
+            steps.add( 1000 );
+            steps.add( 4000 );
+        }
+
+        MatchHost host = new MatchHost( Options.TICK_RATE, 42 );
+        host.start();
+
+        System.out.println( ( host.isUsingVirtualThreads() ? "virtual" : "platform" ) + " threads, "
+                + Options.tilesX + "x" + Options.tilesY + " tiles, " + Options.TICK_RATE + " ticks per second and match wanted" );
+        System.out.println( "matches   ticks/s   per match   skipped   clock/s   heap/match" );
+
+        for( int matchCount : steps )
+        {
+            long heapBefore = getUsedHeap();
+            int added = matchCount - host.getMatchCount();
+
+            host.addMatches( added );
+
+            long heapPerMatch = added > 0 ? ( getUsedHeap() - heapBefore ) / added : 0;
+
+            long ticks = host.getTicks();
+            long skipped = host.getSkippedTicks();
+            long clockTicks = host.getClock().getTick();
+            long start = System.nanoTime();
+
+            Thread.sleep( seconds * 1000L );
+
+            double elapsed = ( System.nanoTime() - start ) / 1e9;
+            double ticksPerSecond = ( host.getTicks() - ticks ) / elapsed;
+
+            // the clock itself falls behind when the matches leave it no time
+            double clockTicksPerSecond = ( host.getClock().getTick() - clockTicks ) / elapsed;
+
+            System.out.println( String.format( "%7d %9.0f %11.1f %9d %9.1f %10d B", host.getMatchCount(), ticksPerSecond,
+                    ticksPerSecond / host.getMatchCount(), host.getSkippedTicks() - skipped, clockTicksPerSecond,
+                    heapPerMatch ) );
+        }
+
+        host.stop();
+    }
+}
@@ -0,0 +1,35 @@
+package com.snake2D.game.host;
+
+import com.snake2D.game.input.DirectionSource;
+import com.snake2D.game.simulation.Rng;
+import com.snake2D.game.simulation.Simulation;
+
+/**
+ * Turns at random every now and then, to keep a game without a player busy.
+ */
+class RandomDirectionSource implements DirectionSource
+{
+    // one step in this many turns
+    private static final int TURN_CHANCE = 8;
+
+    private final Rng random;
+
+    RandomDirectionSource( long seed )
+    {
+        random = new Rng( seed );
+    }
+
+    @Override
+    public void update( long tick, Simulation simulation )
+    {
+    }
+
+    @Override
+    public int nextDirection( long tick )
+    {
+        if( random.nextInt( TURN_CHANCE ) != 0 )
+            return Simulation.NONE;
+
+        return random.nextInt( 4 );
+    }
+}
@@ -0,0 +1,131 @@
+package com.snake2D.game.host;
+
+import com.snake2D.game.basic.FramePacer;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One clock ticking for many games at once.
+ * A single thread counts the ticks at a fixed rate and wakes the threads
+ * waiting for them, so no game needs a timing loop of its own. Waiting
+ * threads are parked and unparked one by one, which, unlike a condition
+ * signalled for all, doesn't make thousands of them queue up for one lock,
+ * and works the same for virtual threads.
+ */
+public class TickClock implements Runnable
+{
+    private final int tickRate;
+
+    // threads waiting for ticks, copied on every change so ticking can walk it without locking
+    private volatile Thread[] waiters = new Thread[ 0 ];
+
+    private volatile long tick = 0;
+    private volatile boolean running = false;
+
+    public TickClock( int tickRate )
+    {
+        this.tickRate = tickRate;
+    }
+
+    /**
+     * Returns the number of ticks so far.
+     */
+    public long getTick()
+    {
+        return tick;
+    }
+
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    /**
+     * Starts counting on a thread of its own.
+     */
+    public void start()
+    {
+        running = true;
+
+        Thread thread = new Thread( this, "Tick clock" );
+        thread.setDaemon( true );
+        thread.start();
+    }
+
+    public void stop()
+    {
+        running = false;
+
+        wakeWaiters();
+    }
+
+    @Override
+    public void run()
+    {
+        FramePacer pacer = new FramePacer( tickRate );
+
+        while( running )
+        {
+            pacer.waitForNextFrame();
+
+            tick++;
+
+            wakeWaiters();
+        }
+    }
+
+    private void wakeWaiters()
+    {
+        for( Thread waiter : waiters )
+            LockSupport.unpark( waiter );
+    }
+
+    /**
+     * Has to be called by a thread before it waits for ticks.
+     */
+    public synchronized void register( Thread thread )
+    {
+        Thread[] registered = Arrays.copyOf( waiters, waiters.length + 1 );
+        registered[ registered.length - 1 ] = thread;
+
+        waiters = registered;
+    }
+
+    public synchronized void unregister( Thread thread )
+    {
+        Thread[] registered = waiters;
+
+        for( int i = 0; i < registered.length; i++ )
+        {
+            if( registered[ i ] == thread )
+            {
+                Thread[] remaining = new Thread[ registered.length - 1 ];
+                System.arraycopy( registered, 0, remaining, 0, i );
+                System.arraycopy( registered, i + 1, remaining, i, remaining.length - i );
+
+                waiters = remaining;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Waits until the clock is past the given tick. The calling thread has to be registered.
+     *
+     * @return the number of ticks so far, or -1 once the clock has stopped
+     */
+    public long awaitTick( long after ) throws InterruptedException
+    {
+        // a spurious or early wakeup just parks again
+        while( running && tick <= after )
+        {
+            LockSupport.park( this );
+
+            if( Thread.interrupted() )
+                throw new InterruptedException();
+        }
+
+        return running ? tick : -1;
+    }
+}
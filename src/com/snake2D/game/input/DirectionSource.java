@@ -0,0 +1,24 @@
+package com.snake2D.game.input;
+
+import com.snake2D.game.simulation.Simulation;
+
+/**
+ * Where the directions of the snake come from, e.g. the keyboard, a recording or a bot.
+ */
+public interface DirectionSource
+{
+    /**
+     * Called once every tick before the game logic runs.
+     *
+     * @param tick       the number of the tick, counting from 0
+     * @param simulation the game, which must not be changed and only be read until the next call
+     */
+    void update( long tick, Simulation simulation );
+
+    /**
+     * Called for every step of the snake.
+     *
+     * @return the direction after the coming move or Simulation.NONE to keep it
+     */
+    int nextDirection( long tick );
+}
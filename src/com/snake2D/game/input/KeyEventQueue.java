@@ -0,0 +1,107 @@
+package com.snake2D.game.input;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free queue of key events from exactly one producer thread
+ * (the AWT event thread) to exactly one consumer thread (the game thread).
+ * Events are stored in preallocated primitive arrays, so neither side allocates.
+ */
+public class KeyEventQueue
+{
+    public static final int PRESSED = 0;
+    public static final int RELEASED = 1;
+    public static final int TYPED = 2;
+
+    private final int[] types;
+    private final int[] codes;
+    private final long[] times;
+    private final int mask;
+
+    // next position to read, only advanced by the consumer
+    private final AtomicLong head = new AtomicLong();
+
+    // next position to write, only advanced by the producer
+    private final AtomicLong tail = new AtomicLong();
+
+    // only written by the producer
+    private volatile long droppedEvents = 0;
+
+    /**
+     * @param capacity number of events which can be queued, rounded up to a power of two
+     */
+    public KeyEventQueue( int capacity )
+    {
+        int powerOfTwo = 1;
+        while( powerOfTwo < capacity )
+            powerOfTwo <<= 1;
+
+        types = new int[ powerOfTwo ];
+        codes = new int[ powerOfTwo ];
+        times = new long[ powerOfTwo ];
+        mask = powerOfTwo - 1;
+    }
+
+    /**
+     * Adds an event, called by the producer only.
+     *
+     * @return false if the queue was full and the event was dropped
+     */
+    public boolean offer( int type, int code, long time )
+    {
+        long position = tail.get();
+
+        if( position - head.get() > mask )
+        {
+            droppedEvents++;
+            return false;
+        }
+
+        int slot = ( int ) position & mask;
+        types[ slot ] = type;
+        codes[ slot ] = code;
+        times[ slot ] = time;
+
+        // publishes the slot to the consumer
+        tail.lazySet( position + 1 );
+
+        return true;
+    }
+
+    /**
+     * Returns whether there is an event to read, called by the consumer only.
+     */
+    public boolean isEmpty()
+    {
+        return head.get() == tail.get();
+    }
+
+    public int peekType()
+    {
+        return types[ ( int ) head.get() & mask ];
+    }
+
+    public int peekCode()
+    {
+        return codes[ ( int ) head.get() & mask ];
+    }
+
+    public long peekTime()
+    {
+        return times[ ( int ) head.get() & mask ];
+    }
+
+    /**
+     * Discards the oldest event, called by the consumer only.
+     */
+    public void remove()
+    {
+        // hands the slot back to the producer
+        head.lazySet( head.get() + 1 );
+    }
+
+    public long getDroppedEvents()
+    {
+        return droppedEvents;
+    }
+}
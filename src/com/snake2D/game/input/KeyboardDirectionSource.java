@@ -0,0 +1,80 @@
+package com.snake2D.game.input;
+
+import com.snake2D.game.metrics.LatencyHistogram;
+import com.snake2D.game.simulation.Simulation;
+
+import java.awt.event.KeyEvent;
+
+import static com.snake2D.game.simulation.Simulation.*;
+
+/**
+ * Directions pressed with the arrow keys or WASD.
+ * Every press of a tick is queued in the order it happened, so quick turns aren't lost.
+ */
+public class KeyboardDirectionSource implements DirectionSource
+{
+    private final KeyboardInputHandler keyboard;
+
+    // turns pressed but not applied yet, one is taken per step
+    private final TurnQueue turns = new TurnQueue( TurnQueue.DEFAULT_CAPACITY );
+
+    public KeyboardDirectionSource( KeyboardInputHandler keyboard )
+    {
+        this.keyboard = keyboard;
+    }
+
+    @Override
+    public void update( long tick, Simulation simulation )
+    {
+        update( tick, simulation.getMoveDirection() );
+    }
+
+    /**
+     * Queues the presses of the tick for a snake moving in the given direction, e.g. one of a versus game.
+     */
+    public void update( long tick, int moveDirection )
+    {
+        for( int i = 0; i < keyboard.getPressCount(); i++ )
+        {
+            int direction = getDirection( keyboard.getPressedKey( i ) );
+
+            if( direction != NONE )
+                turns.offer( direction, keyboard.getPressTime( i ), moveDirection );
+        }
+    }
+
+    @Override
+    public int nextDirection( long tick )
+    {
+        return turns.poll( System.nanoTime() );
+    }
+
+    /**
+     * Returns the nanoseconds from key presses to the moves in the new directions.
+     */
+    public LatencyHistogram getLatency()
+    {
+        return turns.getLatency();
+    }
+
+    private static int getDirection( int key )
+    {
+        switch( key )
+        {
+            case KeyEvent.VK_UP:
+            case KeyEvent.VK_W:
+                return UP;
+            case KeyEvent.VK_DOWN:
+            case KeyEvent.VK_S:
+                return DOWN;
+            case KeyEvent.VK_LEFT:
+            case KeyEvent.VK_A:
+                return LEFT;
+            case KeyEvent.VK_RIGHT:
+            case KeyEvent.VK_D:
+                return RIGHT;
+            default:
+                return NONE;
+        }
+    }
+}
@@ -2,53 +2,64 @@ package com.snake2D.game.input;
 
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
+import java.util.Arrays;
 
+/**
+ * Keyboard state of the game thread.
+ * The AWT event thread only queues timestamped events, the game thread
+ * applies them in update() at the start of every tick. All state below the
+ * queue is owned by the game thread, nothing is allocated once running.
+ */
 public final class KeyboardInputHandler implements KeyListener{
-	private int[] keys = new int[256];
+	private static final int KEY_COUNT = 256;
+	private static final int QUEUE_CAPACITY = 1024;
+	private static final int KEY_CACHE_SIZE = 1024;
+	private static final long CLICK_TIME_NANO = 100000000L;
 	
-	private boolean[] key_state_up = new boolean[256];
-	private boolean[] key_state_down = new boolean[256];
-	private boolean[] key_state_prev = new boolean[256];
+	private final KeyEventQueue events = new KeyEventQueue( QUEUE_CAPACITY );
+	
+	// System.nanoTime() of the last press of every key
+	private long[] keys = new long[KEY_COUNT];
+	
+	private boolean[] key_state_up = new boolean[KEY_COUNT];
+	private boolean[] key_state_down = new boolean[KEY_COUNT];
+	private boolean[] key_state_prev = new boolean[KEY_COUNT];
+	
+	// tick in which every key was last pressed or released
+	private long[] key_tick_pressed = new long[KEY_COUNT];
+	private long[] key_tick_released = new long[KEY_COUNT];
+	private long tick = 0;
+	
+	// presses of the current tick in the order they happened
+	private int[] tick_press_keys = new int[QUEUE_CAPACITY];
+	private long[] tick_press_times = new long[QUEUE_CAPACITY];
+	private int tick_press_count = 0;
 	
 	private boolean keyPressed = false;
 	private boolean keyReleased = false;
 	
-	private String keyCache = "";
+	private char[] keyCache = new char[KEY_CACHE_SIZE];
+	private int keyCacheLength = 0;
 	
-	public KeyboardInputHandler() {}
+	public KeyboardInputHandler() {
+		Arrays.fill( key_tick_pressed, -1 );
+		Arrays.fill( key_tick_released, -1 );
+	}
 	
 	public void keyPressed(KeyEvent e)
 	{
-		if(e.getKeyCode() >= 0 && e.getKeyCode() < 256)
-		{
-			if( !key_state_down[ e.getKeyCode() ] )
-			{
-				keys[ e.getKeyCode() ] = (int) System.currentTimeMillis();
-				key_state_down[ e.getKeyCode() ] = true;
-				key_state_up[ e.getKeyCode() ] = false;
-				keyPressed = true;
-				keyReleased = false;
-			}
-		}
+		if(e.getKeyCode() >= 0 && e.getKeyCode() < KEY_COUNT)
+			events.offer( KeyEventQueue.PRESSED, e.getKeyCode(), System.nanoTime() );
 	}
 	
 	public void keyReleased(KeyEvent e) 
 	{
-		if( e.getKeyCode() >= 0 && e.getKeyCode() < 256 ) 
-		{
-			if( !key_state_up[ e.getKeyCode() ] )
-			{
-				keys[e.getKeyCode()] = 0;
-				key_state_up[e.getKeyCode()] = true;
-				key_state_down[e.getKeyCode()] = false;
-				keyPressed = false;
-				keyReleased = true;
-			}
-		}
+		if( e.getKeyCode() >= 0 && e.getKeyCode() < KEY_COUNT ) 
+			events.offer( KeyEventQueue.RELEASED, e.getKeyCode(), System.nanoTime() );
 	}
 	
 	public void keyTyped(KeyEvent e){
-		keyCache += e.getKeyChar();
+		events.offer( KeyEventQueue.TYPED, e.getKeyChar(), System.nanoTime() );
 	}
 	
 	public boolean isKeyDown(int key){
@@ -69,14 +80,14 @@ public final class KeyboardInputHandler implements KeyListener{
 	
 	public boolean isKeyClicked( int key )
 	{
-		return (int) System.currentTimeMillis() - keys[ key ] < 100
+		return System.nanoTime() - keys[ key ] < CLICK_TIME_NANO
 				&& key_state_prev[ key ] 
 				&& !key_state_down[ key ];
 	}
 	
 	public boolean isKeyPressing( int key )
 	{
-		return (int) System.currentTimeMillis() - keys[ key ] >= 100; 
+		return System.nanoTime() - keys[ key ] >= CLICK_TIME_NANO; 
 	}
 	
 	public boolean isKeyPressed( int key )
@@ -85,19 +96,125 @@ public final class KeyboardInputHandler implements KeyListener{
 				&& !key_state_down[ key ];
 	}
 	
+	/**
+	 * Returns whether the key went down during the current tick.
+	 */
+	public boolean wasPressedThisTick( int key )
+	{
+		return key_tick_pressed[ key ] == tick;
+	}
+	
+	/**
+	 * Returns whether the key went up during the current tick.
+	 */
+	public boolean wasReleasedThisTick( int key )
+	{
+		return key_tick_released[ key ] == tick;
+	}
+	
+	/**
+	 * Returns the number of key presses during the current tick.
+	 */
+	public int getPressCount()
+	{
+		return tick_press_count;
+	}
+	
+	/**
+	 * Returns the key of the n-th press during the current tick.
+	 */
+	public int getPressedKey( int index )
+	{
+		return tick_press_keys[ index ];
+	}
+	
+	/**
+	 * Returns the System.nanoTime() of the n-th press during the current tick.
+	 */
+	public long getPressTime( int index )
+	{
+		return tick_press_times[ index ];
+	}
+	
+	public long getDroppedEvents()
+	{
+		return events.getDroppedEvents();
+	}
+	
+	/**
+	 * Starts a new tick by applying all events queued since the last one.
+	 */
 	public void update()
 	{
-		key_state_up = new boolean[256];
+		tick++;
+		tick_press_count = 0;
+		
+		Arrays.fill( key_state_up, false );
 		keyReleased = false;
-		if(keyCache.length() > 1024)
+		
+		for(int k = 0; k < KEY_COUNT; k++)
 		{
-			keyCache = "";
+			key_state_prev[ k ] = key_state_down[ k ];
 		}
 		
-		for(int k = 0; k < 256; k++)
+		while( !events.isEmpty() )
 		{
-			key_state_prev[ k ] = key_state_down[ k ];
+			int type = events.peekType();
+			int code = events.peekCode();
+			long time = events.peekTime();
+			events.remove();
+			
+			if( type == KeyEventQueue.PRESSED )
+				applyPressed( code, time );
+			else if( type == KeyEventQueue.RELEASED )
+				applyReleased( code );
+			else
+				applyTyped( ( char ) code );
 		}
 	}
+	
+	private void applyPressed( int key, long time )
+	{
+		if( !key_state_down[ key ] )
+		{
+			keys[ key ] = time;
+			key_state_down[ key ] = true;
+			key_state_up[ key ] = false;
+			keyPressed = true;
+			keyReleased = false;
+			
+			key_tick_pressed[ key ] = tick;
+			
+			if( tick_press_count < tick_press_keys.length )
+			{
+				tick_press_keys[ tick_press_count ] = key;
+				tick_press_times[ tick_press_count ] = time;
+				tick_press_count++;
+			}
+		}
+	}
+	
+	private void applyReleased( int key )
+	{
+		if( !key_state_up[ key ] )
+		{
+			keys[ key ] = 0;
+			key_state_up[ key ] = true;
+			key_state_down[ key ] = false;
+			keyPressed = false;
+			keyReleased = true;
+			
+			key_tick_released[ key ] = tick;
+		}
+	}
+	
+	private void applyTyped( char keyChar )
+	{
+		if( keyCacheLength == KEY_CACHE_SIZE )
+		{
+			keyCacheLength = 0;
+		}
+		
+		keyCache[ keyCacheLength++ ] = keyChar;
+	}
 }
-
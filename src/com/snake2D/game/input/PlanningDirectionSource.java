@@ -0,0 +1,35 @@
+package com.snake2D.game.input;
+
+import com.snake2D.game.simulation.Simulation;
+
+/**
+ * A bot which plans the direction of every step from the game it was last given.
+ */
+public abstract class PlanningDirectionSource implements DirectionSource
+{
+    private Simulation simulation;
+    private long plannedTick = -1;
+
+    @Override
+    public void update( long tick, Simulation simulation )
+    {
+        this.simulation = simulation;
+    }
+
+    @Override
+    public int nextDirection( long tick )
+    {
+        // one turn per step, even if asked again within the same tick
+        if( simulation == null || simulation.isGameOver() || tick == plannedTick )
+            return Simulation.NONE;
+
+        plannedTick = tick;
+
+        return plan( simulation );
+    }
+
+    /**
+     * Returns the direction to take after the coming move, or Simulation.NONE if the snake can't be saved.
+     */
+    public abstract int plan( Simulation simulation );
+}
@@ -0,0 +1,114 @@
+package com.snake2D.game.input;
+
+import com.snake2D.game.metrics.LatencyHistogram;
+import com.snake2D.game.simulation.Simulation;
+
+/**
+ * Turns requested by the player which haven't been applied yet.
+ * Quick presses between two steps are not lost anymore: every step applies
+ * the oldest queued turn. A turn which reverses or repeats the direction
+ * before it is rejected right away. A turn taken by a step only changes the
+ * direction of the move after it, so the time from the key press to that
+ * move is recorded in a histogram, when the next step takes its turn.
+ */
+public class TurnQueue
+{
+    public static final int DEFAULT_CAPACITY = 3;
+
+    private final int[] directions;
+    private final long[] pressTimes;
+
+    private int first = 0;
+    private int size = 0;
+
+    // press time of the turn taken by the last step, whose move comes with the next one
+    private long takenPressTime;
+    private boolean taken = false;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    public TurnQueue( int capacity )
+    {
+        directions = new int[ capacity ];
+        pressTimes = new long[ capacity ];
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public void clear()
+    {
+        first = 0;
+        size = 0;
+
+        taken = false;
+    }
+
+    /**
+     * Queues a turn.
+     *
+     * @param direction     the requested direction
+     * @param pressTime     System.nanoTime() of the key press
+     * @param moveDirection the direction the snake will move in before any queued turn
+     * @return false if the turn was rejected or the queue is full
+     */
+    public boolean offer( int direction, long pressTime, int moveDirection )
+    {
+        int previousDirection = size == 0 ? moveDirection : directions[ ( first + size - 1 ) % directions.length ];
+
+        if( direction == previousDirection || Simulation.isOpposite( direction, previousDirection ) )
+            return false;
+
+        if( size == directions.length )
+            return false;
+
+        int slot = ( first + size ) % directions.length;
+        directions[ slot ] = direction;
+        pressTimes[ slot ] = pressTime;
+        size++;
+
+        return true;
+    }
+
+    /**
+     * Takes the oldest turn for the step happening now. The move of this step is the one
+     * the turn taken by the step before leads to, so the latency of that one is recorded.
+     *
+     * @return the direction or Simulation.NONE if no turn is queued
+     */
+    public int poll( long now )
+    {
+        if( taken )
+        {
+            latency.record( now - takenPressTime );
+            taken = false;
+        }
+
+        if( size == 0 )
+            return Simulation.NONE;
+
+        int direction = directions[ first ];
+        takenPressTime = pressTimes[ first ];
+        taken = true;
+
+        first = ( first + 1 ) % directions.length;
+        size--;
+
+        return direction;
+    }
+
+    /**
+     * Returns the nanoseconds from key presses to the moves in the new directions.
+     */
+    public LatencyHistogram getLatency()
+    {
+        return latency;
+    }
+}
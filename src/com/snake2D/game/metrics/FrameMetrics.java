@@ -0,0 +1,189 @@
+package com.snake2D.game.metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Timings of the simulation and render loop.
+ * The simulation thread records updates, the render thread records frames;
+ * neither allocates anything. The numbers can be read with any JMX client
+ * once the metrics are registered.
+ */
+public class FrameMetrics implements FrameMetricsMBean
+{
+    public static final String OBJECT_NAME = "com.snake2D.game:type=FrameMetrics";
+
+    // written by the simulation thread
+    private final LatencyHistogram updateTime = new LatencyHistogram();
+    private volatile long ticks = 0;
+    private volatile long lateTicks = 0;
+
+    // written by the render thread
+    private final LatencyHistogram renderTime = new LatencyHistogram();
+    private final LatencyHistogram presentTime = new LatencyHistogram();
+    private final LatencyHistogram ticksPerFrame = new LatencyHistogram();
+    private volatile long frames = 0;
+    private volatile long lateFrames = 0;
+    private long ticksAtLastFrame = 0;
+
+    /**
+     * Registers the metrics with the platform MBean server.
+     *
+     * @return false if they could not be registered, the game runs on without them
+     */
+    public boolean register()
+    {
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().registerMBean( this, new ObjectName( OBJECT_NAME ) );
+            return true;
+        }
+        catch( JMException e )
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Called by the simulation thread after every tick.
+     *
+     * @param nanos   the time the tick took
+     * @param late    the number of tick deadlines missed so far
+     */
+    public void recordTick( long nanos, long late )
+    {
+        updateTime.record( nanos );
+        lateTicks = late;
+        ticks++;
+    }
+
+    /**
+     * Called by the render thread after every frame.
+     *
+     * @param renderNanos  the time spent drawing the frame
+     * @param presentNanos the time spent showing it on screen
+     * @param late         the number of frame deadlines missed so far
+     */
+    public void recordFrame( long renderNanos, long presentNanos, long late )
+    {
+        renderTime.record( renderNanos );
+        presentTime.record( presentNanos );
+
+        long currentTicks = ticks;
+        ticksPerFrame.record( currentTicks - ticksAtLastFrame );
+        ticksAtLastFrame = currentTicks;
+
+        lateFrames = late;
+        frames++;
+    }
+
+    @Override
+    public long getTicks()
+    {
+        return ticks;
+    }
+
+    @Override
+    public long getFrames()
+    {
+        return frames;
+    }
+
+    @Override
+    public long getUpdateTimeP50()
+    {
+        return updateTime.getPercentile( 0.5 );
+    }
+
+    @Override
+    public long getUpdateTimeP99()
+    {
+        return updateTime.getPercentile( 0.99 );
+    }
+
+    @Override
+    public long getUpdateTimeMax()
+    {
+        return updateTime.getMax();
+    }
+
+    @Override
+    public long getRenderTimeP50()
+    {
+        return renderTime.getPercentile( 0.5 );
+    }
+
+    @Override
+    public long getRenderTimeP99()
+    {
+        return renderTime.getPercentile( 0.99 );
+    }
+
+    @Override
+    public long getRenderTimeMax()
+    {
+        return renderTime.getMax();
+    }
+
+    @Override
+    public long getPresentTimeP50()
+    {
+        return presentTime.getPercentile( 0.5 );
+    }
+
+    @Override
+    public long getPresentTimeP99()
+    {
+        return presentTime.getPercentile( 0.99 );
+    }
+
+    @Override
+    public long getPresentTimeMax()
+    {
+        return presentTime.getMax();
+    }
+
+    @Override
+    public long getTicksPerFrameP50()
+    {
+        return ticksPerFrame.getPercentile( 0.5 );
+    }
+
+    @Override
+    public long getTicksPerFrameP99()
+    {
+        return ticksPerFrame.getPercentile( 0.99 );
+    }
+
+    @Override
+    public long getTicksPerFrameMax()
+    {
+        return ticksPerFrame.getMax();
+    }
+
+    @Override
+    public long getLateTicks()
+    {
+        return lateTicks;
+    }
+
+    @Override
+    public long getLateFrames()
+    {
+        return lateFrames;
+    }
+
+    /**
+     * Clears the histograms. Samples recorded at the same time may get lost,
+     * which doesn't matter for statistics like these.
+     */
+    @Override
+    public void reset()
+    {
+        updateTime.reset();
+        renderTime.reset();
+        presentTime.reset();
+        ticksPerFrame.reset();
+    }
+}
@@ -0,0 +1,41 @@
+package com.snake2D.game.metrics;
+
+/**
+ * Management interface of FrameMetrics, all times are in nanoseconds.
+ */
+public interface FrameMetricsMBean
+{
+    long getTicks();
+
+    long getFrames();
+
+    long getUpdateTimeP50();
+
+    long getUpdateTimeP99();
+
+    long getUpdateTimeMax();
+
+    long getRenderTimeP50();
+
+    long getRenderTimeP99();
+
+    long getRenderTimeMax();
+
+    long getPresentTimeP50();
+
+    long getPresentTimeP99();
+
+    long getPresentTimeMax();
+
+    long getTicksPerFrameP50();
+
+    long getTicksPerFrameP99();
+
+    long getTicksPerFrameMax();
+
+    long getLateTicks();
+
+    long getLateFrames();
+
+    void reset();
+}
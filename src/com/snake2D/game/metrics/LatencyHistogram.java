@@ -0,0 +1,121 @@
+package com.snake2D.game.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies with a fixed set of buckets.
+ * Every power of two range is split into 16 buckets, so percentiles are
+ * exact to about 6 percent over the whole range of long values.
+ * Recording is meant for one thread and allocates nothing, reading is safe
+ * from any other thread.
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = ( 64 - SUB_BUCKET_BITS ) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray( BUCKETS );
+
+    private volatile long count = 0;
+    private volatile long max = 0;
+
+    /**
+     * Adds a value, negative values are counted as 0.
+     * Must only be called by one thread at a time.
+     */
+    public void record( long value )
+    {
+        if( value < 0 )
+            value = 0;
+
+        int bucket = getBucket( value );
+
+        // there is only one writer, so there is no need for an atomic increment
+        counts.lazySet( bucket, counts.get( bucket ) + 1 );
+
+        if( value > max )
+            max = value;
+
+        count++;
+    }
+
+    public long getCount()
+    {
+        return count;
+    }
+
+    public long getMax()
+    {
+        return max;
+    }
+
+    /**
+     * Returns the value below which the given fraction of all values lies,
+     * rounded up to the end of its bucket.
+     *
+     * @param fraction between 0 and 1, e.g. 0.99
+     */
+    public long getPercentile( double fraction )
+    {
+        long total = 0;
+        for( int bucket = 0; bucket < BUCKETS; bucket++ )
+            total += counts.get( bucket );
+
+        if( total == 0 )
+            return 0;
+
+        long rank = Math.max( 1, ( long ) Math.ceil( fraction * total ) );
+
+        long seen = 0;
+        for( int bucket = 0; bucket < BUCKETS; bucket++ )
+        {
+            seen += counts.get( bucket );
+
+            if( seen >= rank )
+                return Math.min( max, getBucketEnd( bucket ) );
+        }
+
+        return max;
+    }
+
+    public void reset()
+    {
+        for( int bucket = 0; bucket < BUCKETS; bucket++ )
+            counts.set( bucket, 0 );
+
+        count = 0;
+        max = 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "count=" + getCount() + " p50=" + getPercentile( 0.5 ) + " p99=" + getPercentile( 0.99 ) + " max=" + getMax();
+    }
+
+    private static int getBucket( long value )
+    {
+        if( value < SUB_BUCKETS )
+            return ( int ) value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros( value );
+        int subBucket = ( int ) ( value >>> ( exponent - SUB_BUCKET_BITS ) ) & ( SUB_BUCKETS - 1 );
+
+        return ( exponent - SUB_BUCKET_BITS + 1 ) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long getBucketEnd( int bucket )
+    {
+        if( bucket < SUB_BUCKETS )
+            return bucket;
+
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = bucket % SUB_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS;
+
+        long start = ( long ) ( SUB_BUCKETS + subBucket ) << shift;
+
+        return start + ( 1L << shift ) - 1;
+    }
+}
@@ -0,0 +1,238 @@
+package com.snake2D.game.netplay;
+
+import com.snake2D.game.metrics.LatencyHistogram;
+import com.snake2D.game.simulation.Simulation;
+import com.snake2D.game.simulation.VersusSimulation;
+
+import java.util.Arrays;
+
+/**
+ * One peer of a versus game with rollback netcode.
+ * The local input is applied at once, the remote one is predicted to stay
+ * what it was last. The state at the start of every recent tick is kept in a
+ * ring of preallocated snapshots, so when a remote input arrives which
+ * differs from the prediction, the game is restored to that tick and
+ * simulated again up to the present.
+ *
+ * The session never waits for the network by itself, but it can only roll
+ * back so far: advance() has to be held off while canAdvance() is false.
+ */
+public class RollbackSession
+{
+    public static final int DEFAULT_MAX_ROLLBACK = 8;
+
+    private final int localPlayer;
+    private final int remotePlayer;
+
+    private final int maxRollback;
+    private final int inputDelay;
+
+    // the present state, at the start of the tick about to be simulated
+    private final VersusSimulation simulation;
+
+    // the state at the start of tick t is in states[ t & stateMask ]
+    private final VersusSimulation[] states;
+    private final int stateMask;
+
+    // the input of every player for tick t is in inputs[ player ][ t & inputMask ],
+    // the remote ones after the confirmed tick are predictions
+    private final int[][] inputs;
+    private final int inputMask;
+
+    private long tick = 0;
+
+    private long lastLocalInputTick;
+    private long confirmedRemoteTick = -1;
+
+    // the earliest tick simulated with a wrong prediction, Long.MAX_VALUE if there is none
+    private long rollbackTick = Long.MAX_VALUE;
+
+    private final LatencyHistogram resimulationTimes = new LatencyHistogram();
+    private final LatencyHistogram rollbackDepths = new LatencyHistogram();
+
+    public RollbackSession( VersusSimulation simulation, int localPlayer, int maxRollback, int inputDelay )
+    {
+        if( localPlayer < 0 || localPlayer >= VersusSimulation.PLAYERS )
+            throw new IllegalArgumentException( "no such player: " + localPlayer );
+
+        if( maxRollback < 1 || inputDelay < 0 )
+            throw new IllegalArgumentException( "invalid rollback window " + maxRollback + " or input delay " + inputDelay );
+
+        this.simulation = simulation;
+        this.localPlayer = localPlayer;
+        this.maxRollback = maxRollback;
+        this.inputDelay = inputDelay;
+
+        remotePlayer = 1 - localPlayer;
+
+        states = new VersusSimulation[ powerOfTwoAbove( maxRollback ) ];
+        stateMask = states.length - 1;
+
+        for( int i = 0; i < states.length; i++ )
+            states[ i ] = new VersusSimulation( simulation );
+
+        // the peers may run apart by the window of both of them plus the delay,
+        // the inputs of that span have to stay around to be sent again
+        inputs = new int[ VersusSimulation.PLAYERS ][ powerOfTwoAbove( 4 * ( maxRollback + inputDelay + 1 ) ) ];
+        inputMask = inputs[ 0 ].length - 1;
+
+        for( int[] playerInputs : inputs )
+            Arrays.fill( playerInputs, Simulation.NONE );
+
+        // there is no input for the ticks before the delay has passed
+        lastLocalInputTick = inputDelay - 1;
+    }
+
+    private static int powerOfTwoAbove( int value )
+    {
+        int powerOfTwo = 1;
+        while( powerOfTwo <= value )
+            powerOfTwo <<= 1;
+
+        return powerOfTwo;
+    }
+
+    /**
+     * Returns the present state, including predicted remote inputs.
+     */
+    public VersusSimulation getSimulation()
+    {
+        return simulation;
+    }
+
+    public int getLocalPlayer()
+    {
+        return localPlayer;
+    }
+
+    /**
+     * Returns the number of the tick advance() simulates next.
+     */
+    public long getTick()
+    {
+        return tick;
+    }
+
+    public long getConfirmedRemoteTick()
+    {
+        return confirmedRemoteTick;
+    }
+
+    public long getLastLocalInputTick()
+    {
+        return lastLocalInputTick;
+    }
+
+    /**
+     * Returns the local input for the given tick, which has to be one of the recent ones.
+     */
+    public int getLocalInput( long tick )
+    {
+        return inputs[ localPlayer ][ ( int ) tick & inputMask ];
+    }
+
+    /**
+     * Returns the nanoseconds every rollback took to restore and simulate again.
+     */
+    public LatencyHistogram getResimulationTimes()
+    {
+        return resimulationTimes;
+    }
+
+    /**
+     * Returns the number of ticks simulated again by every rollback.
+     */
+    public LatencyHistogram getRollbackDepths()
+    {
+        return rollbackDepths;
+    }
+
+    /**
+     * Returns false while the remote inputs lag too far behind to roll back to them later.
+     */
+    public boolean canAdvance()
+    {
+        return tick - confirmedRemoteTick <= maxRollback;
+    }
+
+    /**
+     * Takes an input of the remote player. Inputs have to arrive in the order of their ticks,
+     * the ones which were confirmed already or would leave a gap are ignored.
+     *
+     * @return whether the input was taken
+     */
+    public boolean addRemoteInput( long remoteTick, int direction )
+    {
+        if( remoteTick != confirmedRemoteTick + 1 )
+            return false;
+
+        // the remote peer cannot be further ahead than this, anything else is garbage
+        if( remoteTick - tick > 2 * ( maxRollback + inputDelay + 1 ) )
+            return false;
+
+        int slot = ( int ) remoteTick & inputMask;
+
+        if( remoteTick < tick && inputs[ remotePlayer ][ slot ] != direction )
+            rollbackTick = Math.min( rollbackTick, remoteTick );
+
+        inputs[ remotePlayer ][ slot ] = direction;
+        confirmedRemoteTick = remoteTick;
+
+        return true;
+    }
+
+    /**
+     * Restores the state of the earliest tick which was simulated with a wrong prediction
+     * and simulates again from there up to the present. advance() calls this by itself.
+     */
+    public void resimulate()
+    {
+        if( rollbackTick == Long.MAX_VALUE )
+            return;
+
+        long start = System.nanoTime();
+
+        simulation.copyFrom( states[ ( int ) rollbackTick & stateMask ] );
+
+        for( long replayed = rollbackTick; replayed < tick; replayed++ )
+            simulate( replayed );
+
+        resimulationTimes.record( System.nanoTime() - start );
+        rollbackDepths.record( tick - rollbackTick );
+
+        rollbackTick = Long.MAX_VALUE;
+    }
+
+    /**
+     * Simulates the next tick with the given local direction, which takes effect after the input delay.
+     */
+    public void advance( int localDirection )
+    {
+        if( !canAdvance() )
+            throw new IllegalStateException( "tick " + tick + " is too far ahead of the remote inputs up to "
+                    + confirmedRemoteTick );
+
+        lastLocalInputTick = tick + inputDelay;
+        inputs[ localPlayer ][ ( int ) lastLocalInputTick & inputMask ] = localDirection;
+
+        resimulate();
+
+        simulate( tick );
+        tick++;
+    }
+
+    private void simulate( long simulated )
+    {
+        int slot = ( int ) simulated & inputMask;
+
+        // the remote player is expected to keep doing what it did last
+        if( simulated > confirmedRemoteTick )
+            inputs[ remotePlayer ][ slot ] = confirmedRemoteTick >= 0
+                    ? inputs[ remotePlayer ][ ( int ) confirmedRemoteTick & inputMask ]
+                    : Simulation.NONE;
+
+        states[ ( int ) simulated & stateMask ].copyFrom( simulation );
+
+        simulation.step( inputs[ 0 ][ slot ], inputs[ 1 ][ slot ] );
+    }
+}
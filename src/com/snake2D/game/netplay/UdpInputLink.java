@@ -0,0 +1,219 @@
+package com.snake2D.game.netplay;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Random;
+
+/**
+ * Exchanges the inputs of a RollbackSession with the remote peer over UDP.
+ * Every packet carries the remote tick confirmed so far and all local inputs
+ * the remote peer has not confirmed yet, so lost or reordered packets are
+ * made up for by the next one and nothing is ever sent twice on purpose.
+ *
+ * For testing over loopback, outgoing packets can be held back by a fixed
+ * delay plus a random jitter, which also reorders them, and dropped at random.
+ *
+ * A packet is: int confirmed remote tick, int tick of the first input, byte count, count direction bytes.
+ */
+public class UdpInputLink implements Closeable
+{
+    private static final int HEADER_SIZE = 9;
+    private static final int MAX_INPUTS = 255;
+    private static final int MAX_PACKET_SIZE = HEADER_SIZE + MAX_INPUTS;
+
+    // packets held back at most at the same time, any more are sent at once
+    private static final int MAX_HELD_PACKETS = 256;
+
+    private final DatagramChannel channel;
+
+    private final ByteBuffer sendBuffer = ByteBuffer.allocate( MAX_PACKET_SIZE );
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocate( MAX_PACKET_SIZE );
+
+    private final long delayNanos;
+    private final long jitterNanos;
+    private final double lossRate;
+    private final Random random;
+
+    // preallocated slots for the packets held back, a release time of 0 marks a free one
+    private final ByteBuffer[] heldPackets = new ByteBuffer[ MAX_HELD_PACKETS ];
+    private final long[] releaseTimes = new long[ MAX_HELD_PACKETS ];
+
+    // the last local tick the remote peer has confirmed
+    private long remoteAck = -1;
+
+    private long sentPackets = 0;
+    private long droppedPackets = 0;
+    private long receivedPackets = 0;
+
+    public UdpInputLink( InetSocketAddress localAddress, InetSocketAddress remoteAddress ) throws IOException
+    {
+        this( localAddress, remoteAddress, 0, 0, 0, 0 );
+    }
+
+    public UdpInputLink( InetSocketAddress localAddress, InetSocketAddress remoteAddress,
+                         long delayNanos, long jitterNanos, double lossRate, long seed ) throws IOException
+    {
+        this.delayNanos = delayNanos;
+        this.jitterNanos = jitterNanos;
+        this.lossRate = lossRate;
+
+        random = new Random( seed );
+
+        for( int i = 0; i < MAX_HELD_PACKETS; i++ )
+            heldPackets[ i ] = ByteBuffer.allocate( MAX_PACKET_SIZE );
+
+        channel = DatagramChannel.open();
+        channel.configureBlocking( false );
+        channel.bind( localAddress );
+        channel.connect( remoteAddress );
+    }
+
+    public long getSentPackets()
+    {
+        return sentPackets;
+    }
+
+    public long getDroppedPackets()
+    {
+        return droppedPackets;
+    }
+
+    public long getReceivedPackets()
+    {
+        return receivedPackets;
+    }
+
+    /**
+     * Sends the local inputs of the session which the remote peer has not confirmed yet.
+     */
+    public void send( RollbackSession session ) throws IOException
+    {
+        long firstTick = Math.max( remoteAck + 1, session.getLastLocalInputTick() - MAX_INPUTS + 1 );
+        int count = ( int ) Math.max( 0, session.getLastLocalInputTick() - firstTick + 1 );
+
+        sendBuffer.clear();
+        sendBuffer.putInt( ( int ) session.getConfirmedRemoteTick() );
+        sendBuffer.putInt( ( int ) firstTick );
+        sendBuffer.put( ( byte ) count );
+
+        for( int i = 0; i < count; i++ )
+            sendBuffer.put( ( byte ) session.getLocalInput( firstTick + i ) );
+
+        sendBuffer.flip();
+
+        sentPackets++;
+
+        if( lossRate > 0 && random.nextDouble() < lossRate )
+            droppedPackets++;
+        else if( delayNanos > 0 || jitterNanos > 0 )
+            hold( sendBuffer );
+        else
+            write( sendBuffer );
+
+        flush();
+    }
+
+    private void hold( ByteBuffer packet ) throws IOException
+    {
+        long releaseTime = System.nanoTime() + delayNanos
+                + ( jitterNanos > 0 ? ( long ) ( random.nextDouble() * jitterNanos ) : 0 );
+
+        for( int i = 0; i < MAX_HELD_PACKETS; i++ )
+        {
+            if( releaseTimes[ i ] == 0 )
+            {
+                heldPackets[ i ].clear();
+                heldPackets[ i ].put( packet );
+                heldPackets[ i ].flip();
+
+                // 0 marks a free slot, so the rare release time of 0 is taken as 1
+                releaseTimes[ i ] = releaseTime != 0 ? releaseTime : 1;
+                return;
+            }
+        }
+
+        write( packet );
+    }
+
+    /**
+     * Sends the held back packets whose time has come, in no particular order.
+     */
+    public void flush() throws IOException
+    {
+        long now = System.nanoTime();
+
+        for( int i = 0; i < MAX_HELD_PACKETS; i++ )
+        {
+            if( releaseTimes[ i ] != 0 && now - releaseTimes[ i ] >= 0 )
+            {
+                write( heldPackets[ i ] );
+                releaseTimes[ i ] = 0;
+            }
+        }
+    }
+
+    private void write( ByteBuffer packet ) throws IOException
+    {
+        // the remote peer may not be listening yet, the next packet makes up for this one
+        try
+        {
+            channel.write( packet );
+        }
+        catch( PortUnreachableException e )
+        {
+            droppedPackets++;
+        }
+    }
+
+    /**
+     * Hands all inputs which arrived since the last call to the session.
+     */
+    public void receive( RollbackSession session ) throws IOException
+    {
+        flush();
+
+        while( true )
+        {
+            receiveBuffer.clear();
+
+            // nothing arrives while the remote socket isn't bound yet
+            try
+            {
+                if( channel.receive( receiveBuffer ) == null )
+                    break;
+            }
+            catch( PortUnreachableException e )
+            {
+                break;
+            }
+
+            receiveBuffer.flip();
+
+            if( receiveBuffer.remaining() < HEADER_SIZE )
+                continue;
+
+            receivedPackets++;
+
+            remoteAck = Math.max( remoteAck, receiveBuffer.getInt() );
+
+            int firstTick = receiveBuffer.getInt();
+            int count = receiveBuffer.get() & 0xFF;
+
+            if( receiveBuffer.remaining() < count )
+                continue;
+
+            for( int i = 0; i < count; i++ )
+                session.addRemoteInput( firstTick + i, receiveBuffer.get() );
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+}
@@ -0,0 +1,218 @@
+package com.snake2D.game.netplay;
+
+import com.snake2D.game.basic.FramePacer;
+import com.snake2D.game.basic.Options;
+import com.snake2D.game.metrics.LatencyHistogram;
+import com.snake2D.game.simulation.Simulation;
+import com.snake2D.game.simulation.VersusSimulation;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Random;
+
+/**
+ * Plays a versus game between two simple bots, each on its own peer, which
+ * talk over UDP on the loopback interface with an injected delay, jitter and
+ * packet loss. It prints what rolling back cost on both peers and checks
+ * that they end up in the same state. Exits with 1 if they do not.
+ *
+ * java -cp snake2d.jar com.snake2D.game.netplay.VersusLoopback [delay ms] [jitter ms] [loss %] [ticks]
+ */
+public class VersusLoopback
+{
+    private static final int TILES = 32;
+    private static final long SEED = 42;
+
+    private static final int BASE_PORT = 47800;
+
+    private static final int COPY_ROUNDS = 10000;
+
+    private final RollbackSession[] sessions = new RollbackSession[ VersusSimulation.PLAYERS ];
+    private final UdpInputLink[] links = new UdpInputLink[ VersusSimulation.PLAYERS ];
+    private final Random[] bots = new Random[ VersusSimulation.PLAYERS ];
+
+    private final long[] stalls = new long[ VersusSimulation.PLAYERS ];
+
+    public VersusLoopback( long delayNanos, long jitterNanos, double lossRate ) throws IOException
+    {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+
+        for( int player = 0; player < VersusSimulation.PLAYERS; player++ )
+        {
+            sessions[ player ] = new RollbackSession( new VersusSimulation( TILES, TILES, SEED ), player,
+                    RollbackSession.DEFAULT_MAX_ROLLBACK, 0 );
+
+            links[ player ] = new UdpInputLink( new InetSocketAddress( loopback, BASE_PORT + player ),
+                    new InetSocketAddress( loopback, BASE_PORT + 1 - player ),
+                    delayNanos, jitterNanos, lossRate, player );
+
+            bots[ player ] = new Random( player );
+        }
+    }
+
+    /**
+     * Heads for the food on the board as the peer sees it, avoiding covered tiles
+     * and the head of the opponent. It turns at random now and then, so the
+     * predictions are wrong every so often.
+     */
+    private int chooseDirection( int player )
+    {
+        VersusSimulation simulation = sessions[ player ].getSimulation();
+        Random random = bots[ player ];
+
+        int head = simulation.getHead( player );
+        int food = simulation.getFood();
+
+        int best = Simulation.NONE;
+        int bestDistance = Integer.MAX_VALUE;
+
+        for( int direction = Simulation.UP; direction <= Simulation.RIGHT; direction++ )
+        {
+            if( Simulation.isOpposite( direction, simulation.getMoveDirection( player ) ) )
+                continue;
+
+            int next = simulation.getNeighbour( head, direction );
+            if( simulation.isOccupied( next ) || isNextToOpponent( simulation, player, next ) )
+                continue;
+
+            int distance = Math.abs( simulation.getElementX( next ) - simulation.getElementX( food ) )
+                    + Math.abs( simulation.getElementY( next ) - simulation.getElementY( food ) );
+
+            if( random.nextInt( 10 ) == 0 )
+                distance = 0;
+
+            if( distance < bestDistance )
+            {
+                best = direction;
+                bestDistance = distance;
+            }
+        }
+
+        return best;
+    }
+
+    private static boolean isNextToOpponent( VersusSimulation simulation, int player, int element )
+    {
+        int opponentHead = simulation.getHead( 1 - player );
+
+        for( int direction = Simulation.UP; direction <= Simulation.RIGHT; direction++ )
+        {
+            if( simulation.getNeighbour( element, direction ) == opponentHead )
+                return true;
+        }
+
+        return false;
+    }
+
+    private void exchange( int player ) throws IOException
+    {
+        links[ player ].receive( sessions[ player ] );
+        links[ player ].send( sessions[ player ] );
+    }
+
+    public boolean run( int ticks ) throws IOException
+    {
+        FramePacer pacer = new FramePacer( Options.TICK_RATE );
+
+        boolean running = true;
+        while( running )
+        {
+            running = false;
+
+            for( int player = 0; player < VersusSimulation.PLAYERS; player++ )
+            {
+                RollbackSession session = sessions[ player ];
+
+                links[ player ].receive( session );
+
+                if( session.getTick() < ticks )
+                {
+                    if( session.canAdvance() )
+                        session.advance( chooseDirection( player ) );
+                    else
+                        stalls[ player ]++;
+
+                    running = true;
+                }
+
+                links[ player ].send( session );
+            }
+
+            pacer.waitForNextFrame();
+        }
+
+        // let the last inputs arrive, after that both peers know everything
+        while( sessions[ 0 ].getConfirmedRemoteTick() < ticks - 1 || sessions[ 1 ].getConfirmedRemoteTick() < ticks - 1 )
+        {
+            exchange( 0 );
+            exchange( 1 );
+
+            pacer.waitForNextFrame();
+        }
+
+        for( int player = 0; player < VersusSimulation.PLAYERS; player++ )
+        {
+            sessions[ player ].resimulate();
+            links[ player ].close();
+
+            report( player );
+        }
+
+        VersusSimulation simulation = sessions[ 0 ].getSimulation();
+
+        System.out.println( "result after " + simulation.getTick() + " ticks: "
+                + ( simulation.getResult() == VersusSimulation.RUNNING ? "running"
+                : simulation.getResult() == VersusSimulation.DRAW ? "draw" : "player " + simulation.getResult() + " won" )
+                + ", scores " + simulation.getScore( 0 ) + ":" + simulation.getScore( 1 ) );
+
+        System.out.println( "copying a snapshot: " + measureCopy() + " ns" );
+
+        boolean inSync = simulation.getChecksum() == sessions[ 1 ].getSimulation().getChecksum();
+        System.out.println( inSync ? "peers in sync" : "peers out of sync" );
+
+        return inSync;
+    }
+
+    private void report( int player )
+    {
+        LatencyHistogram times = sessions[ player ].getResimulationTimes();
+        LatencyHistogram depths = sessions[ player ].getRollbackDepths();
+
+        System.out.println( "player " + player + ": " + times.getCount() + " rollbacks, "
+                + stalls[ player ] + " stalled ticks, "
+                + links[ player ].getSentPackets() + " packets sent, " + links[ player ].getDroppedPackets() + " dropped" );
+        System.out.println( "  ticks simulated again: p50 " + depths.getPercentile( 0.5 )
+                + ", p99 " + depths.getPercentile( 0.99 ) + ", max " + depths.getMax() );
+        System.out.println( "  cost per rollback: p50 " + times.getPercentile( 0.5 ) / 1000 + " us, p99 "
+                + times.getPercentile( 0.99 ) / 1000 + " us, max " + times.getMax() / 1000 + " us" );
+    }
+
+    /**
+     * Returns the average nanoseconds of cloning the state into a preallocated snapshot.
+     */
+    private long measureCopy()
+    {
+        VersusSimulation simulation = sessions[ 0 ].getSimulation();
+        VersusSimulation snapshot = new VersusSimulation( simulation );
+
+        long start = System.nanoTime();
+
+        for( int i = 0; i < COPY_ROUNDS; i++ )
+            snapshot.copyFrom( simulation );
+
+        return ( System.nanoTime() - start ) / COPY_ROUNDS;
+    }
+
+    public static void main( String[] args ) throws IOException
+    {
+        long delay = args.length > 0 ? Long.parseLong( args[ 0 ] ) : 40;
+        long jitter = args.length > 1 ? Long.parseLong( args[ 1 ] ) : 30;
+        double loss = args.length > 2 ? Double.parseDouble( args[ 2 ] ) / 100 : 0.05;
+        int ticks = args.length > 3 ? Integer.parseInt( args[ 3 ] ) : 600;
+
+        VersusLoopback loopback = new VersusLoopback( delay * 1000000L, jitter * 1000000L, loss );
+
+        System.exit( loopback.run( ticks ) ? 0 : 1 );
+    }
+}
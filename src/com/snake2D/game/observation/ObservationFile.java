@@ -0,0 +1,208 @@
+package com.snake2D.game.observation;
+
+import com.snake2D.game.simulation.Observation;
+import com.snake2D.game.simulation.Simulation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Shares the latest observation of a game through a memory-mapped file, so
+ * another process on the same machine can look at the board without any
+ * socket or serialization. The game writes the observation right into the
+ * mapped memory, a reader copies it out.
+ *
+ * The file starts with a magic number, the size of an observation (ints) and
+ * a sequence number (long), followed by the observation, all little endian.
+ * The sequence number is odd while an observation is written and even once it
+ * is complete, so a reader retries if it changed during its copy (a seqlock).
+ * Java 7 has no fences of its own, the order of the writes relies on the ones
+ * HotSpot puts around volatile accesses.
+ *
+ * The main method follows a game started with "-observe file" and prints what it sees:
+ *
+ * java -cp snake2d.jar com.snake2D.game.observation.ObservationFile game.observation
+ */
+public class ObservationFile implements Closeable
+{
+    private static final int MAGIC = 0x534E4B4F;
+
+    private static final int SIZE_OFFSET = 4;
+    private static final int SEQUENCE_OFFSET = 8;
+
+    // the observation starts aligned, so its words can be read as longs
+    public static final int OBSERVATION_OFFSET = 16;
+
+    // copies retried before a reader gives up on a writer which keeps overwriting it
+    private static final int MAX_READ_ATTEMPTS = 100;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer map;
+
+    private final int observationSize;
+
+    // the observation part of the map, for copying it out
+    private final ByteBuffer observation;
+
+    private long sequence;
+
+    // only accessed for the fences around it
+    private volatile int fence;
+
+    /**
+     * Creates the file for writing observations of a board of the given size, replacing what was in it.
+     */
+    public ObservationFile( String path, int tilesX, int tilesY ) throws IOException
+    {
+        observationSize = Observation.getSize( tilesX, tilesY );
+
+        file = new RandomAccessFile( path, "rw" );
+        file.setLength( OBSERVATION_OFFSET + observationSize );
+
+        map = file.getChannel().map( FileChannel.MapMode.READ_WRITE, 0, OBSERVATION_OFFSET + observationSize );
+        map.order( ByteOrder.LITTLE_ENDIAN );
+
+        sequence = 0;
+
+        map.putLong( SEQUENCE_OFFSET, sequence );
+        map.putInt( SIZE_OFFSET, observationSize );
+        map.putInt( 0, MAGIC );
+
+        observation = slice();
+    }
+
+    /**
+     * Opens a file written by another process for reading.
+     */
+    public ObservationFile( String path ) throws IOException
+    {
+        file = new RandomAccessFile( path, "r" );
+
+        if( file.length() < OBSERVATION_OFFSET )
+            throw new IOException( "not an observation file: " + path );
+
+        map = file.getChannel().map( FileChannel.MapMode.READ_ONLY, 0, file.length() );
+        map.order( ByteOrder.LITTLE_ENDIAN );
+
+        observationSize = map.getInt( SIZE_OFFSET );
+
+        if( map.getInt( 0 ) != MAGIC || observationSize < 0 || OBSERVATION_OFFSET + observationSize > file.length() )
+            throw new IOException( "not an observation file: " + path );
+
+        observation = slice();
+    }
+
+    private ByteBuffer slice()
+    {
+        ByteBuffer buffer = map.duplicate();
+        buffer.position( OBSERVATION_OFFSET );
+        buffer.limit( OBSERVATION_OFFSET + observationSize );
+
+        return buffer.slice().order( ByteOrder.LITTLE_ENDIAN );
+    }
+
+    public int getObservationSize()
+    {
+        return observationSize;
+    }
+
+    /**
+     * Writes the current state of the simulation as the latest observation.
+     */
+    public void publish( Simulation simulation )
+    {
+        // odd while the observation is incomplete
+        map.putLong( SEQUENCE_OFFSET, ++sequence );
+        fence = 0;
+
+        Observation.write( simulation, map, OBSERVATION_OFFSET );
+
+        fence = 0;
+        map.putLong( SEQUENCE_OFFSET, ++sequence );
+    }
+
+    /**
+     * Returns the number of observations published up to now.
+     */
+    public long getPublished()
+    {
+        return map.getLong( SEQUENCE_OFFSET ) >>> 1;
+    }
+
+    /**
+     * Copies the latest complete observation to the buffer, starting at its position, without moving it.
+     * The buffer should be little endian to be read with Observation.isSet().
+     *
+     * @return the number of the observation, counted from 1, 0 if nothing has been published yet
+     * and -1 if the writer kept overwriting it
+     */
+    public long read( ByteBuffer target )
+    {
+        int position = target.position();
+
+        for( int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++ )
+        {
+            long before = map.getLong( SEQUENCE_OFFSET );
+            int ignored = fence;
+
+            if( before == 0 )
+                return 0;
+
+            if( ( before & 1 ) != 0 )
+            {
+                Thread.yield();
+                continue;
+            }
+
+            observation.clear();
+            target.put( observation );
+            target.position( position );
+
+            fence = 0;
+            ignored = fence;
+
+            if( map.getLong( SEQUENCE_OFFSET ) == before )
+                return before >>> 1;
+        }
+
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        file.close();
+    }
+
+    public static void main( String[] args ) throws IOException, InterruptedException
+    {
+        ObservationFile file = new ObservationFile( args.length > 0 ? args[ 0 ] : "game.observation" );
+        ByteBuffer observation = ByteBuffer.allocateDirect( file.getObservationSize() ).order( ByteOrder.LITTLE_ENDIAN );
+
+        long last = 0;
+        while( true )
+        {
+            long number = file.read( observation );
+
+            if( number > last )
+            {
+                int tilesX = observation.getInt( 0 );
+                int head = observation.getInt( 8 );
+                int food = observation.getInt( 12 );
+
+                System.out.println( "observation " + number + ( number > last + 1 ? " (" + ( number - last - 1 ) + " missed)" : "" )
+                        + ": head " + head % tilesX + "," + head / tilesX + ", food " + food % tilesX + "," + food / tilesX
+                        + ", score " + observation.getInt( 16 ) + ( observation.get( 21 ) != 0 ? ", game over" : "" ) );
+
+                last = number;
+            }
+
+            Thread.sleep( 10 );
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.snake2D.game.rendering;
+
+/**
+ * Visible rectangle of the board in pixels.
+ * Boards which fit into the view stay fixed at the origin, larger boards are
+ * scrolled so that the followed position stays in the center.
+ * Coordinates wrap around like the board does.
+ */
+public class Camera
+{
+    private int worldWidth;
+    private int worldHeight;
+
+    private int viewWidth;
+    private int viewHeight;
+
+    private int x;
+    private int y;
+
+    public void setWorldSize( int worldWidth, int worldHeight )
+    {
+        this.worldWidth = worldWidth;
+        this.worldHeight = worldHeight;
+    }
+
+    public void setViewSize( int viewWidth, int viewHeight )
+    {
+        this.viewWidth = viewWidth;
+        this.viewHeight = viewHeight;
+    }
+
+    /**
+     * Centers the view on the given world pixel.
+     */
+    public void follow( int targetX, int targetY )
+    {
+        x = worldWidth <= viewWidth ? 0 : wrap( targetX - viewWidth / 2, worldWidth );
+        y = worldHeight <= viewHeight ? 0 : wrap( targetY - viewHeight / 2, worldHeight );
+    }
+
+    public int getX()
+    {
+        return x;
+    }
+
+    public int getY()
+    {
+        return y;
+    }
+
+    public int getViewWidth()
+    {
+        return viewWidth;
+    }
+
+    public int getViewHeight()
+    {
+        return viewHeight;
+    }
+
+    public int getWorldWidth()
+    {
+        return worldWidth;
+    }
+
+    public int getWorldHeight()
+    {
+        return worldHeight;
+    }
+
+    /**
+     * Converts a world x coordinate into a view coordinate in [0, worldWidth).
+     */
+    public int toViewX( int worldX )
+    {
+        return wrap( worldX - x, worldWidth );
+    }
+
+    /**
+     * Converts a world y coordinate into a view coordinate in [0, worldHeight).
+     */
+    public int toViewY( int worldY )
+    {
+        return wrap( worldY - y, worldHeight );
+    }
+
+    public static int wrap( int value, int size )
+    {
+        value %= size;
+        return value < 0 ? value + size : value;
+    }
+}
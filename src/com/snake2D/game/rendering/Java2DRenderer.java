@@ -0,0 +1,65 @@
+package com.snake2D.game.rendering;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Draws frames through Graphics2D by copying sprites, so the pipeline of the
+ * screen can accelerate it.
+ */
+public class Java2DRenderer extends RetainedRenderer
+{
+    private final SpriteAtlas sprites = new SpriteAtlas();
+
+    private Graphics2D graphics;
+
+    @Override
+    protected BufferedImage createImage( int width, int height )
+    {
+        if( graphics != null )
+            graphics.dispose();
+
+        BufferedImage image = SpriteAtlas.createImage( width, height, Transparency.OPAQUE );
+        graphics = image.createGraphics();
+
+        return image;
+    }
+
+    @Override
+    protected boolean validateSprites( int tileSize )
+    {
+        return sprites.validate( tileSize );
+    }
+
+    @Override
+    protected void shift( int deltaX, int deltaY )
+    {
+        BufferedImage image = getImage();
+
+        graphics.copyArea( Math.max( 0, deltaX ), Math.max( 0, deltaY ),
+                image.getWidth() - Math.abs( deltaX ), image.getHeight() - Math.abs( deltaY ), -deltaX, -deltaY );
+    }
+
+    @Override
+    protected void repaint( int[] tiles, int count )
+    {
+        for( int i = 0; i < count; i++ )
+        {
+            int tile = tiles[ i ];
+            int tileX = ( tile % columns ) * tileSize;
+            int tileY = ( tile / columns ) * tileSize;
+
+            graphics.setColor( backgroundColor );
+            graphics.fillRect( tileX, tileY, tileSize, tileSize );
+
+            for( int entry = bucketFirst[ tile ]; entry != NONE; entry = entryNext[ entry ] )
+            {
+                int primitive = entryPrimitives[ entry ];
+
+                // only the part inside of this tile, the neighbours may not have changed
+                sprites.draw( graphics, primitiveTypes[ primitive ], primitiveXs[ primitive ], primitiveYs[ primitive ],
+                        tileX, tileY, tileX + tileSize, tileY + tileSize );
+            }
+        }
+    }
+}
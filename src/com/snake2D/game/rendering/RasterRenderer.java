@@ -0,0 +1,262 @@
+package com.snake2D.game.rendering;
+
+import com.snake2D.game.basic.Options;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Draws frames by writing pixels straight into the int array of the image,
+ * without going through Graphics2D. Meant for off-screen use like recordings
+ * and thumbnails on machines without graphics acceleration.
+ * Large frames are split into horizontal bands of tiles which are drawn in
+ * parallel, every tile only writes its own pixels. The tasks doing so are
+ * reused, so drawing a frame allocates nothing.
+ */
+public class RasterRenderer extends RetainedRenderer
+{
+    // frames with fewer changed tiles are drawn on the calling thread
+    private static final int PARALLEL_THRESHOLD = 256;
+
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+
+    private final FrameTask frameTask = new FrameTask();
+
+    private int[] pixels;
+    private int width;
+    private int height;
+
+    // ARGB pixels of all sprites side by side
+    private int[] sprites;
+    private int spritesWidth;
+
+    private int spriteTileSize;
+    private Color snakeColor;
+    private Color foodColor;
+
+    @Override
+    protected BufferedImage createImage( int width, int height )
+    {
+        BufferedImage image = new BufferedImage( width, height, BufferedImage.TYPE_INT_RGB );
+
+        this.width = width;
+        this.height = height;
+        pixels = ( ( DataBufferInt ) image.getRaster().getDataBuffer() ).getData();
+
+        return image;
+    }
+
+    @Override
+    protected boolean validateSprites( int tileSize )
+    {
+        if( sprites != null && spriteTileSize == tileSize
+                && Options.snakeColor.equals( snakeColor ) && Options.foodColor.equals( foodColor ) )
+            return false;
+
+        spriteTileSize = tileSize;
+        snakeColor = Options.snakeColor;
+        foodColor = Options.foodColor;
+
+        // rasterize the sprites once with Java2D, so they look exactly the same
+        BufferedImage spriteImage = new BufferedImage( SpriteAtlas.SPRITE_COUNT * tileSize, tileSize, BufferedImage.TYPE_INT_ARGB );
+
+        Graphics2D graphics = spriteImage.createGraphics();
+        SpriteAtlas.paintSprites( graphics, tileSize );
+        graphics.dispose();
+
+        sprites = ( ( DataBufferInt ) spriteImage.getRaster().getDataBuffer() ).getData();
+        spritesWidth = spriteImage.getWidth();
+
+        return true;
+    }
+
+    @Override
+    protected void shift( int deltaX, int deltaY )
+    {
+        int rowLength = width - Math.abs( deltaX );
+        int fromX = Math.max( 0, deltaX );
+        int toX = Math.max( 0, -deltaX );
+
+        // rows are copied in the order which never overwrites one still to be copied
+        if( deltaY >= 0 )
+        {
+            for( int y = 0; y < height - deltaY; y++ )
+                System.arraycopy( pixels, ( y + deltaY ) * width + fromX, pixels, y * width + toX, rowLength );
+        }
+        else
+        {
+            for( int y = height - 1; y >= -deltaY; y-- )
+                System.arraycopy( pixels, ( y + deltaY ) * width + fromX, pixels, y * width + toX, rowLength );
+        }
+    }
+
+    @Override
+    protected void repaint( int[] tiles, int count )
+    {
+        if( count < PARALLEL_THRESHOLD )
+            repaintTiles( tiles, 0, count );
+        else
+        {
+            frameTask.reinitialize();
+            frameTask.setTiles( tiles, count );
+
+            POOL.invoke( frameTask );
+        }
+    }
+
+    private void repaintTiles( int[] tiles, int from, int to )
+    {
+        for( int i = from; i < to; i++ )
+            repaintTile( tiles[ i ] );
+    }
+
+    private void repaintTile( int tile )
+    {
+        int tileX = ( tile % columns ) * tileSize;
+        int tileY = ( tile / columns ) * tileSize;
+
+        // the last column and row of tiles may be cut off by the image
+        int tileRight = Math.min( width, tileX + tileSize );
+        int tileBottom = Math.min( height, tileY + tileSize );
+
+        int background = backgroundColor.getRGB();
+
+        for( int y = tileY; y < tileBottom; y++ )
+        {
+            int offset = y * width;
+
+            for( int x = tileX; x < tileRight; x++ )
+                pixels[ offset + x ] = background;
+        }
+
+        for( int entry = bucketFirst[ tile ]; entry != NONE; entry = entryNext[ entry ] )
+        {
+            int primitive = entryPrimitives[ entry ];
+
+            int spriteX = primitiveXs[ primitive ];
+            int spriteY = primitiveYs[ primitive ];
+
+            // part of the sprite inside of this tile
+            int left = Math.max( tileX, spriteX );
+            int right = Math.min( tileRight, spriteX + tileSize );
+            int top = Math.max( tileY, spriteY );
+            int bottom = Math.min( tileBottom, spriteY + tileSize );
+
+            int spriteOffset = primitiveTypes[ primitive ] * tileSize - spriteX;
+
+            for( int y = top; y < bottom; y++ )
+            {
+                int offset = y * width;
+                int spriteRow = ( y - spriteY ) * spritesWidth + spriteOffset;
+
+                for( int x = left; x < right; x++ )
+                {
+                    int color = sprites[ spriteRow + x ];
+
+                    // the sprites are either fully opaque or fully transparent
+                    if( color >>> 24 != 0 )
+                        pixels[ offset + x ] = color;
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws all changed tiles, split into bands of whole tile rows.
+     */
+    private class FrameTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final BandTask[] bands;
+
+        private int[] tiles;
+        private int count;
+
+        FrameTask()
+        {
+            bands = new BandTask[ POOL.getParallelism() ];
+            for( int i = 0; i < bands.length; i++ )
+                bands[ i ] = new BandTask();
+        }
+
+        void setTiles( int[] tiles, int count )
+        {
+            this.tiles = tiles;
+            this.count = count;
+        }
+
+        @Override
+        protected void compute()
+        {
+            int bandCount = Math.max( 1, Math.min( bands.length, count / PARALLEL_THRESHOLD ) );
+
+            int from = 0;
+            int used = 0;
+
+            for( int band = 0; band < bandCount && from < count; band++ )
+            {
+                int to = band == bandCount - 1 ? count : getRowStart( tiles, from, ( int ) ( ( long ) count * ( band + 1 ) / bandCount ), count );
+
+                bands[ used ].reinitialize();
+                bands[ used ].setRange( tiles, from, to );
+                used++;
+
+                from = to;
+            }
+
+            // draw the first band on this thread while the others are stolen
+            for( int band = used - 1; band > 0; band-- )
+                bands[ band ].fork();
+
+            bands[ 0 ].compute();
+
+            for( int band = 1; band < used; band++ )
+                bands[ band ].join();
+        }
+
+        /**
+         * Moves the given index forward to the start of a row where the tiles are sorted by row, as when all are repainted.
+         * The tiles are never repeated, so bands split anywhere else don't draw the same pixels either.
+         */
+        private int getRowStart( int[] tiles, int from, int index, int to )
+        {
+            if( index <= from )
+                return from;
+
+            int row = tiles[ index - 1 ] / columns;
+            while( index < to && tiles[ index ] / columns == row )
+                index++;
+
+            return index;
+        }
+    }
+
+    /**
+     * Draws a range of the changed tiles.
+     */
+    private class BandTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private int[] tiles;
+        private int from;
+        private int to;
+
+        void setRange( int[] tiles, int from, int to )
+        {
+            this.tiles = tiles;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            repaintTiles( tiles, from, to );
+        }
+    }
+}
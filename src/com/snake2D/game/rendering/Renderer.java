@@ -0,0 +1,47 @@
+package com.snake2D.game.rendering;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Backend the game states draw their frames with.
+ * A frame is described by the food and segment tiles it contains, all in
+ * view coordinates. The frame before is kept and only the invalidated parts
+ * of it are drawn again, so every tile overlapping them has to be added.
+ * The finished frame is available as an image afterwards.
+ */
+public interface Renderer
+{
+    /**
+     * Starts a new frame of the given size in pixels.
+     *
+     * @return true if the whole frame is drawn again anyway, e.g. since its size changed
+     */
+    boolean beginFrame( int width, int height, int tileSize );
+
+    /**
+     * Marks the given rectangle to be drawn again, parts outside of the frame are ignored.
+     */
+    void invalidate( int x, int y, int width, int height );
+
+    /**
+     * Marks the whole frame to be drawn again.
+     */
+    void invalidateAll();
+
+    /**
+     * Moves the frame before by the given pixels in the opposite direction, as it looks after the camera
+     * moved by them. What comes into view has to be invalidated, before anything else is.
+     */
+    void scroll( int deltaX, int deltaY );
+
+    void addFood( int x, int y );
+
+    void addSegment( int x, int y );
+
+    /**
+     * Draws the frame into the image.
+     */
+    void endFrame();
+
+    BufferedImage getImage();
+}
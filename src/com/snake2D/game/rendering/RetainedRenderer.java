@@ -0,0 +1,285 @@
+package com.snake2D.game.rendering;
+
+import com.snake2D.game.basic.Options;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Keeps the last frame in an image and only repaints the tiles of it which
+ * have been invalidated since then.
+ * The caller invalidates what changed and adds the food and segments
+ * overlapping it, not the whole board. Each invalidated screen tile is
+ * cleared and the primitives overlapping it are drawn again, clipped to the
+ * tile, so a frame costs as much as the changes. Subclasses do the actual
+ * drawing.
+ */
+public abstract class RetainedRenderer implements Renderer
+{
+    protected static final int NONE = -1;
+
+    private BufferedImage image;
+
+    protected int tileSize;
+
+    // grid of screen tiles
+    protected int columns;
+    protected int rows;
+
+    // primitives of the current frame in drawing order
+    protected int[] primitiveTypes = new int[ 64 ];
+    protected int[] primitiveXs = new int[ 64 ];
+    protected int[] primitiveYs = new int[ 64 ];
+    private int primitiveCount;
+
+    // primitives overlapping each screen tile as linked lists
+    protected int[] bucketFirst = new int[ 0 ];
+    private int[] bucketLast = new int[ 0 ];
+    protected int[] entryNext = new int[ 256 ];
+    protected int[] entryPrimitives = new int[ 256 ];
+    private int entryCount;
+
+    // screen tiles with a list, which is emptied again after the frame
+    private int[] bucketTiles = new int[ 0 ];
+    private int bucketCount;
+
+    // background color the image was drawn with
+    protected Color backgroundColor;
+
+    private boolean repaintAll = true;
+
+    // tiles to repaint in the current frame, marked with the number of the frame
+    private int[] dirtyFrames = new int[ 0 ];
+    private int frame;
+    private int[] dirtyTiles = new int[ 0 ];
+    private int repaintedTiles;
+
+    @Override
+    public boolean beginFrame( int width, int height, int tileSize )
+    {
+        if( image == null || image.getWidth() != width || image.getHeight() != height || this.tileSize != tileSize )
+            createImage( width, height, tileSize );
+
+        if( validateSprites( tileSize ) )
+            repaintAll = true;
+
+        if( !Options.backgroundColor.equals( backgroundColor ) )
+        {
+            backgroundColor = Options.backgroundColor;
+            repaintAll = true;
+        }
+
+        primitiveCount = 0;
+        entryCount = 0;
+
+        // a new number leaves the marks of the frames before behind, 0 is never used
+        frame++;
+        if( frame == 0 )
+        {
+            Arrays.fill( dirtyFrames, 0 );
+            frame = 1;
+        }
+
+        repaintedTiles = 0;
+
+        return repaintAll;
+    }
+
+    @Override
+    public void invalidate( int x, int y, int width, int height )
+    {
+        if( repaintAll )
+            return;
+
+        int firstColumn = Math.max( 0, floorDiv( x ) );
+        int lastColumn = Math.min( columns - 1, floorDiv( x + width - 1 ) );
+        int firstRow = Math.max( 0, floorDiv( y ) );
+        int lastRow = Math.min( rows - 1, floorDiv( y + height - 1 ) );
+
+        for( int row = firstRow; row <= lastRow; row++ )
+        {
+            for( int column = firstColumn; column <= lastColumn; column++ )
+            {
+                int tile = row * columns + column;
+
+                if( dirtyFrames[ tile ] != frame )
+                {
+                    dirtyFrames[ tile ] = frame;
+                    dirtyTiles[ repaintedTiles++ ] = tile;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void invalidateAll()
+    {
+        repaintAll = true;
+    }
+
+    @Override
+    public void scroll( int deltaX, int deltaY )
+    {
+        if( !repaintAll )
+            shift( deltaX, deltaY );
+    }
+
+    @Override
+    public void addFood( int x, int y )
+    {
+        addPrimitive( SpriteAtlas.FOOD, x, y );
+    }
+
+    @Override
+    public void addSegment( int x, int y )
+    {
+        addPrimitive( SpriteAtlas.SEGMENT, x, y );
+    }
+
+    @Override
+    public void endFrame()
+    {
+        if( repaintAll )
+        {
+            repaintedTiles = dirtyTiles.length;
+            for( int tile = 0; tile < repaintedTiles; tile++ )
+                dirtyTiles[ tile ] = tile;
+        }
+
+        repaint( dirtyTiles, repaintedTiles );
+
+        for( int i = 0; i < bucketCount; i++ )
+            bucketFirst[ bucketTiles[ i ] ] = NONE;
+
+        bucketCount = 0;
+
+        repaintAll = false;
+    }
+
+    @Override
+    public BufferedImage getImage()
+    {
+        return image;
+    }
+
+    /**
+     * Returns the number of screen tiles repainted in the last frame.
+     */
+    public int getRepaintedTiles()
+    {
+        return repaintedTiles;
+    }
+
+    /**
+     * Creates the image frames are drawn into.
+     */
+    protected abstract BufferedImage createImage( int width, int height );
+
+    /**
+     * Renders the sprites again if they are out of date.
+     *
+     * @return true if the sprites have changed
+     */
+    protected abstract boolean validateSprites( int tileSize );
+
+    /**
+     * Moves the pixels of the image by the given amount in the opposite direction,
+     * the ones moved in from outside are drawn again later.
+     */
+    protected abstract void shift( int deltaX, int deltaY );
+
+    /**
+     * Clears the given screen tiles and draws the primitives overlapping them.
+     * The primitives of a tile are linked from bucketFirst through entryNext.
+     */
+    protected abstract void repaint( int[] tiles, int count );
+
+    private void createImage( int width, int height, int tileSize )
+    {
+        this.tileSize = tileSize;
+
+        image = createImage( width, height );
+
+        columns = ( width + tileSize - 1 ) / tileSize;
+        rows = ( height + tileSize - 1 ) / tileSize;
+
+        bucketFirst = new int[ columns * rows ];
+        bucketLast = new int[ columns * rows ];
+        bucketTiles = new int[ columns * rows ];
+        bucketCount = 0;
+
+        dirtyFrames = new int[ columns * rows ];
+        dirtyTiles = new int[ columns * rows ];
+        for( int tile = 0; tile < bucketFirst.length; tile++ )
+            bucketFirst[ tile ] = NONE;
+
+        repaintAll = true;
+    }
+
+    private void addPrimitive( int type, int x, int y )
+    {
+        if( primitiveCount == primitiveTypes.length )
+        {
+            primitiveTypes = grow( primitiveTypes );
+            primitiveXs = grow( primitiveXs );
+            primitiveYs = grow( primitiveYs );
+        }
+
+        int primitive = primitiveCount++;
+        primitiveTypes[ primitive ] = type;
+        primitiveXs[ primitive ] = x;
+        primitiveYs[ primitive ] = y;
+
+        // a primitive is as large as a tile, so it overlaps at most 2x2 screen tiles
+        int firstColumn = Math.max( 0, floorDiv( x ) );
+        int lastColumn = Math.min( columns - 1, floorDiv( x + tileSize - 1 ) );
+        int firstRow = Math.max( 0, floorDiv( y ) );
+        int lastRow = Math.min( rows - 1, floorDiv( y + tileSize - 1 ) );
+
+        for( int row = firstRow; row <= lastRow; row++ )
+        {
+            for( int column = firstColumn; column <= lastColumn; column++ )
+            {
+                addEntry( row * columns + column, primitive );
+            }
+        }
+    }
+
+    private void addEntry( int tile, int primitive )
+    {
+        if( entryCount == entryNext.length )
+        {
+            entryNext = grow( entryNext );
+            entryPrimitives = grow( entryPrimitives );
+        }
+
+        int entry = entryCount++;
+        entryNext[ entry ] = NONE;
+        entryPrimitives[ entry ] = primitive;
+
+        // append, so the tile is drawn in the same order as the frame
+        if( bucketFirst[ tile ] == NONE )
+        {
+            bucketFirst[ tile ] = entry;
+            bucketTiles[ bucketCount++ ] = tile;
+        }
+        else
+            entryNext[ bucketLast[ tile ] ] = entry;
+
+        bucketLast[ tile ] = entry;
+    }
+
+    private int floorDiv( int value )
+    {
+        // rounded down, parts reaching over the end of the board have negative view coordinates
+        return value >= 0 ? value / tileSize : -( ( tileSize - 1 - value ) / tileSize );
+    }
+
+    private static int[] grow( int[] array )
+    {
+        int[] grown = new int[ array.length * 2 ];
+        System.arraycopy( array, 0, grown, 0, array.length );
+        return grown;
+    }
+}
@@ -0,0 +1,365 @@
+package com.snake2D.game.rendering;
+
+import com.snake2D.game.simulation.Simulation;
+import com.snake2D.game.simulation.VersusSimulation;
+
+import java.util.Arrays;
+
+/**
+ * Copy of everything needed to draw one step of the game.
+ * Only the tiles in a window around the head are copied, so taking a
+ * snapshot costs as much as the view and not as much as the board.
+ * Snapshots are reused: the simulation thread fills one, publishes it
+ * through a TripleBuffer and the render thread only reads it afterwards.
+ * Besides the tiles a snapshot carries the tiles the last captures changed,
+ * so a renderer can repaint just those.
+ */
+public class Snapshot
+{
+    public static final byte EMPTY = 0;
+
+    // a segment is stored as SEGMENT + the direction it moves in next
+    public static final byte SEGMENT = 1;
+
+    // tiles copied around the view for sliding segments and the moving camera
+    private static final int MARGIN = 3;
+
+    private int tilesX;
+    private int tilesY;
+
+    // window of copied tiles, the first column and row are already wrapped
+    private int firstX;
+    private int firstY;
+    private int columns;
+    private int rows;
+
+    private byte[] tiles = new byte[ 0 ];
+
+    // positions in the window of the tiles covered by the snake
+    private int[] segments = new int[ 0 ];
+    private int segmentCount;
+
+    // the tiles the last captures changed, see StepChanges
+    private long capture;
+    private long firstKnown;
+    private final int[] changedTiles = new int[ StepChanges.CAPTURES * StepChanges.MAX_TILES ];
+    private final int[] changeCounts = new int[ StepChanges.CAPTURES ];
+
+    private int headX;
+    private int headY;
+    private int headDirection;
+
+    private int foodX;
+    private int foodY;
+
+    private int score;
+    private boolean gameOver;
+
+    private long stepTime;
+    private long stepDuration;
+
+    /**
+     * Copies the state of the simulation.
+     *
+     * @param viewColumns  number of columns visible at once
+     * @param viewRows     number of rows visible at once
+     * @param stepTime     System.nanoTime() of the last step
+     * @param stepDuration nanoseconds until the next step
+     * @param changes      tracks the changes of the simulation, has to be passed on every capture
+     */
+    public void capture( Simulation simulation, int viewColumns, int viewRows, long stepTime, long stepDuration,
+                         StepChanges changes )
+    {
+        changes.record( simulation );
+
+        capture = changes.getCapture();
+        firstKnown = changes.getFirstKnown();
+        System.arraycopy( changes.getTiles(), 0, changedTiles, 0, changedTiles.length );
+        System.arraycopy( changes.getCounts(), 0, changeCounts, 0, changeCounts.length );
+
+        tilesX = simulation.getTilesX();
+        tilesY = simulation.getTilesY();
+
+        headX = simulation.getHeadX();
+        headY = simulation.getHeadY();
+        headDirection = simulation.getMoveDirection();
+
+        foodX = simulation.getFoodX();
+        foodY = simulation.getFoodY();
+
+        score = simulation.getBodyLength();
+        gameOver = simulation.isGameOver();
+
+        this.stepTime = stepTime;
+        this.stepDuration = stepDuration;
+
+        setWindow( viewColumns, viewRows );
+
+        segmentCount = 0;
+
+        for( int row = 0; row < rows; row++ )
+        {
+            int y = Camera.wrap( firstY + row, tilesY );
+
+            for( int column = 0; column < columns; column++ )
+            {
+                int element = simulation.getElement( Camera.wrap( firstX + column, tilesX ), y );
+
+                if( simulation.isOccupied( element ) )
+                {
+                    tiles[ row * columns + column ] = ( byte ) ( SEGMENT + simulation.getSegmentDirection( element ) );
+                    segments[ segmentCount++ ] = row * columns + column;
+                }
+                else
+                    tiles[ row * columns + column ] = EMPTY;
+            }
+        }
+    }
+
+    /**
+     * Copies the state of a versus game as the given player sees it, with both snakes.
+     * A rollback may change any tile, so every capture is drawn completely.
+     */
+    public void capture( VersusSimulation simulation, int player, int viewColumns, int viewRows, long stepTime,
+                         long stepDuration, StepChanges changes )
+    {
+        changes.recordAll();
+
+        capture = changes.getCapture();
+        firstKnown = changes.getFirstKnown();
+
+        tilesX = simulation.getTilesX();
+        tilesY = simulation.getTilesY();
+
+        headX = simulation.getElementX( simulation.getHead( player ) );
+        headY = simulation.getElementY( simulation.getHead( player ) );
+        headDirection = simulation.getMoveDirection( player );
+
+        foodX = simulation.getElementX( simulation.getFood() );
+        foodY = simulation.getElementY( simulation.getFood() );
+
+        score = simulation.getScore( player );
+        gameOver = simulation.isOver();
+
+        this.stepTime = stepTime;
+        this.stepDuration = stepDuration;
+
+        setWindow( viewColumns, viewRows );
+
+        Arrays.fill( tiles, 0, columns * rows, EMPTY );
+        segmentCount = 0;
+
+        for( int snake = 0; snake < VersusSimulation.PLAYERS; snake++ )
+        {
+            for( int i = 0; i < simulation.getSegmentCount( snake ); i++ )
+            {
+                int element = simulation.getSegment( snake, i );
+
+                int column = Camera.wrap( simulation.getElementX( element ) - firstX, tilesX );
+                int row = Camera.wrap( simulation.getElementY( element ) - firstY, tilesY );
+
+                if( column >= columns || row >= rows )
+                    continue;
+
+                // every segment but the head moves towards the one in front of it
+                int direction = i == 0 ? simulation.getMoveDirection( snake )
+                        : getDirection( simulation, element, simulation.getSegment( snake, i - 1 ) );
+
+                tiles[ row * columns + column ] = ( byte ) ( SEGMENT + direction );
+                segments[ segmentCount++ ] = row * columns + column;
+            }
+        }
+    }
+
+    private static int getDirection( VersusSimulation simulation, int element, int otherElement )
+    {
+        for( int direction = Simulation.UP; direction < Simulation.RIGHT; direction++ )
+        {
+            if( simulation.getNeighbour( element, direction ) == otherElement )
+                return direction;
+        }
+
+        return Simulation.RIGHT;
+    }
+
+    /**
+     * Places the window of copied tiles around the head and makes room for it.
+     */
+    private void setWindow( int viewColumns, int viewRows )
+    {
+        columns = viewColumns + 2 * MARGIN;
+        firstX = Camera.wrap( headX - columns / 2, tilesX );
+        if( columns >= tilesX )
+        {
+            columns = tilesX;
+            firstX = 0;
+        }
+
+        rows = viewRows + 2 * MARGIN;
+        firstY = Camera.wrap( headY - rows / 2, tilesY );
+        if( rows >= tilesY )
+        {
+            rows = tilesY;
+            firstY = 0;
+        }
+
+        if( tiles.length < columns * rows )
+        {
+            tiles = new byte[ columns * rows ];
+            segments = new int[ columns * rows ];
+        }
+    }
+
+    /**
+     * Returns whether this snapshot was ever filled.
+     */
+    public boolean isCaptured()
+    {
+        return tilesX > 0;
+    }
+
+    public int getTilesX()
+    {
+        return tilesX;
+    }
+
+    public int getTilesY()
+    {
+        return tilesY;
+    }
+
+    public int getFirstX()
+    {
+        return firstX;
+    }
+
+    public int getFirstY()
+    {
+        return firstY;
+    }
+
+    public int getColumns()
+    {
+        return columns;
+    }
+
+    public int getRows()
+    {
+        return rows;
+    }
+
+    /**
+     * Returns the tile at the given position inside the window.
+     */
+    public byte getTile( int column, int row )
+    {
+        return tiles[ row * columns + column ];
+    }
+
+    /**
+     * Returns the tile at the given position on the board, EMPTY outside of the window.
+     */
+    public byte getBoardTile( int x, int y )
+    {
+        int column = Camera.wrap( x - firstX, tilesX );
+        int row = Camera.wrap( y - firstY, tilesY );
+
+        if( column >= columns || row >= rows )
+            return EMPTY;
+
+        return tiles[ row * columns + column ];
+    }
+
+    /**
+     * Returns the number of tiles in the window covered by the snake.
+     */
+    public int getSegmentCount()
+    {
+        return segmentCount;
+    }
+
+    /**
+     * Returns the position in the window of a covered tile, as row * columns + column.
+     */
+    public int getSegment( int index )
+    {
+        return segments[ index ];
+    }
+
+    /**
+     * Returns the number of the capture this snapshot was taken with, counting from 1.
+     */
+    public long getCapture()
+    {
+        return capture;
+    }
+
+    /**
+     * Returns whether the tiles changed since the given capture are all known.
+     */
+    public boolean isChangeKnown( long sinceCapture )
+    {
+        return sinceCapture + 1 >= firstKnown && capture - sinceCapture <= StepChanges.CAPTURES;
+    }
+
+    /**
+     * Returns the number of board tiles the given capture changed, which has to be known.
+     */
+    public int getChangeCount( long capture )
+    {
+        return changeCounts[ ( int ) ( capture % StepChanges.CAPTURES ) ];
+    }
+
+    /**
+     * Returns a board tile the given capture changed, as y * tilesX + x.
+     */
+    public int getChange( long capture, int index )
+    {
+        return changedTiles[ ( int ) ( capture % StepChanges.CAPTURES ) * StepChanges.MAX_TILES + index ];
+    }
+
+    public int getHeadX()
+    {
+        return headX;
+    }
+
+    public int getHeadY()
+    {
+        return headY;
+    }
+
+    public int getHeadDirection()
+    {
+        return headDirection;
+    }
+
+    public int getFoodX()
+    {
+        return foodX;
+    }
+
+    public int getFoodY()
+    {
+        return foodY;
+    }
+
+    public int getScore()
+    {
+        return score;
+    }
+
+    public boolean isGameOver()
+    {
+        return gameOver;
+    }
+
+    public long getStepTime()
+    {
+        return stepTime;
+    }
+
+    public long getStepDuration()
+    {
+        return stepDuration;
+    }
+}
@@ -0,0 +1,360 @@
+package com.snake2D.game.rendering;
+
+import com.snake2D.game.basic.Options;
+
+import java.util.Arrays;
+
+import static com.snake2D.game.simulation.Simulation.*;
+
+/**
+ * Turns a snapshot into the food and segment tiles of a frame.
+ * The camera follows the head and only the tiles of the snapshot window are
+ * visited, the segments slide towards their next tile while time passes.
+ *
+ * The renderer keeps the frame before, so only what changed is invalidated
+ * and only the tiles overlapping it are added: after a step the tiles the
+ * snapshot lists as changed, while the segments slide every visible segment.
+ * When the camera scrolls the frame is moved along and only what comes into
+ * view is drawn. Everything is drawn again only when the renderer asks for it
+ * or it fell too far behind the snapshots.
+ */
+public class SnapshotPainter
+{
+    private final Camera camera = new Camera();
+
+    private int fluidMotionStep = 0;
+
+    // what the frame before showed
+    private long paintedCapture = -1;
+    private int paintedMotionStep = -1;
+    private int paintedCameraX;
+    private int paintedCameraY;
+
+    // board tiles already added to the current frame, marked with its number
+    private int[] addedFrames = new int[ 0 ];
+    private int frame;
+
+    public void setViewSize( int viewWidth, int viewHeight )
+    {
+        camera.setViewSize( viewWidth, viewHeight );
+    }
+
+    /**
+     * Draws the snapshot as it looks at the given System.nanoTime().
+     */
+    public void paint( Snapshot snapshot, Renderer renderer, long now )
+    {
+        int tileSize = Options.tileSize;
+        int tilesX = snapshot.getTilesX();
+        int tilesY = snapshot.getTilesY();
+
+        camera.setWorldSize( tilesX * tileSize, tilesY * tileSize );
+
+        // the segments slide towards their next tile until the simulation takes the next step
+        fluidMotionStep = 0;
+        if( Options.fluid && !snapshot.isGameOver() )
+        {
+            long fluidMotionStepTime = Math.max( 1, snapshot.getStepDuration() / tileSize );
+            fluidMotionStep = ( int ) Math.min( tileSize, ( now - snapshot.getStepTime() ) / fluidMotionStepTime );
+        }
+
+        // keep the head in the center of the view
+        camera.follow( getPixelX( snapshot.getHeadX(), snapshot.getHeadDirection() ) + tileSize / 2,
+                getPixelY( snapshot.getHeadY(), snapshot.getHeadDirection() ) + tileSize / 2 );
+
+        boolean repaintAll = renderer.beginFrame( camera.getViewWidth(), camera.getViewHeight(), tileSize );
+
+        if( !repaintAll && !snapshot.isChangeKnown( paintedCapture ) )
+        {
+            renderer.invalidateAll();
+            repaintAll = true;
+        }
+
+        beginAdding( snapshot );
+
+        // the food lies below the segments, so it comes first
+        drawTile( renderer, snapshot.getFoodX() * tileSize, snapshot.getFoodY() * tileSize, false );
+
+        boolean sliding = fluidMotionStep != 0 || paintedMotionStep > 0;
+
+        if( !repaintAll && ( camera.getX() != paintedCameraX || camera.getY() != paintedCameraY ) )
+            repaintAll = !scroll( snapshot, renderer, sliding );
+
+        if( repaintAll )
+            addSegments( snapshot, renderer, false );
+        else if( fluidMotionStep != paintedMotionStep )
+        {
+            // every segment moves, between its tile and the next one
+            addSegments( snapshot, renderer, true );
+            invalidateChanges( snapshot, renderer, sliding, false );
+        }
+        else if( snapshot.getCapture() != paintedCapture )
+            invalidateChanges( snapshot, renderer, sliding, true );
+
+        renderer.endFrame();
+
+        paintedCapture = snapshot.getCapture();
+        paintedMotionStep = fluidMotionStep;
+        paintedCameraX = camera.getX();
+        paintedCameraY = camera.getY();
+    }
+
+    /**
+     * Moves the frame before along with the camera and invalidates what comes into view.
+     *
+     * @return false if the camera moved by a whole view or more, then the whole frame has to be drawn again
+     */
+    private boolean scroll( Snapshot snapshot, Renderer renderer, boolean sliding )
+    {
+        int viewWidth = camera.getViewWidth();
+        int viewHeight = camera.getViewHeight();
+
+        // the shorter way around the board
+        int deltaX = Camera.wrap( camera.getX() - paintedCameraX + camera.getWorldWidth() / 2, camera.getWorldWidth() )
+                - camera.getWorldWidth() / 2;
+        int deltaY = Camera.wrap( camera.getY() - paintedCameraY + camera.getWorldHeight() / 2, camera.getWorldHeight() )
+                - camera.getWorldHeight() / 2;
+
+        if( Math.abs( deltaX ) >= viewWidth || Math.abs( deltaY ) >= viewHeight )
+        {
+            renderer.invalidateAll();
+            return false;
+        }
+
+        renderer.scroll( deltaX, deltaY );
+
+        if( deltaX > 0 )
+            invalidateView( snapshot, renderer, viewWidth - deltaX, 0, deltaX, viewHeight, sliding );
+        else if( deltaX < 0 )
+            invalidateView( snapshot, renderer, 0, 0, -deltaX, viewHeight, sliding );
+
+        if( deltaY > 0 )
+            invalidateView( snapshot, renderer, 0, viewHeight - deltaY, viewWidth, deltaY, sliding );
+        else if( deltaY < 0 )
+            invalidateView( snapshot, renderer, 0, 0, viewWidth, -deltaY, sliding );
+
+        return true;
+    }
+
+    /**
+     * Invalidates a rectangle of the view and adds the segments overlapping it.
+     */
+    private void invalidateView( Snapshot snapshot, Renderer renderer, int x, int y, int width, int height, boolean sliding )
+    {
+        int tileSize = Options.tileSize;
+
+        renderer.invalidate( x, y, width, height );
+
+        int worldX = camera.getX() + x;
+        int worldY = camera.getY() + y;
+
+        addTiles( snapshot, renderer, worldX / tileSize, worldY / tileSize,
+                ( worldX + width - 1 ) / tileSize, ( worldY + height - 1 ) / tileSize, sliding );
+    }
+
+    /**
+     * Adds every segment of the window, invalidating the tiles the segments slide across if asked to.
+     */
+    private void addSegments( Snapshot snapshot, Renderer renderer, boolean invalidate )
+    {
+        int tileSize = Options.tileSize;
+        int tilesX = snapshot.getTilesX();
+        int tilesY = snapshot.getTilesY();
+
+        // only visit the segments around the view, not the whole snake
+        for( int i = 0; i < snapshot.getSegmentCount(); i++ )
+        {
+            int position = snapshot.getSegment( i );
+            int column = position % snapshot.getColumns();
+            int row = position / snapshot.getColumns();
+
+            int x = Camera.wrap( snapshot.getFirstX() + column, tilesX );
+            int y = Camera.wrap( snapshot.getFirstY() + row, tilesY );
+            int direction = snapshot.getTile( column, row ) - Snapshot.SEGMENT;
+
+            // some may have been added with what came into view already
+            if( addedFrames[ position ] != frame )
+            {
+                addedFrames[ position ] = frame;
+
+                drawTile( renderer, getPixelX( x, direction ), getPixelY( y, direction ), true );
+            }
+
+            if( invalidate )
+            {
+                // the segment and the tile it slides into
+                int left = direction == LEFT ? x - 1 : x;
+                int top = direction == UP ? y - 1 : y;
+                boolean horizontal = direction == LEFT || direction == RIGHT;
+
+                invalidate( renderer, left * tileSize, top * tileSize,
+                        horizontal ? 2 * tileSize : tileSize, horizontal ? tileSize : 2 * tileSize );
+            }
+        }
+    }
+
+    /**
+     * Invalidates the board tiles the captures since the frame before changed, and adds what overlaps them if asked to.
+     * A sliding segment may reach into the next tile, so then the tiles around a change are invalidated as well.
+     */
+    private void invalidateChanges( Snapshot snapshot, Renderer renderer, boolean sliding, boolean addOverlapping )
+    {
+        int tileSize = Options.tileSize;
+        int margin = sliding ? tileSize : 0;
+
+        for( long capture = Math.max( paintedCapture + 1, snapshot.getCapture() - StepChanges.CAPTURES + 1 );
+             capture <= snapshot.getCapture(); capture++ )
+        {
+            for( int i = 0; i < snapshot.getChangeCount( capture ); i++ )
+            {
+                int element = snapshot.getChange( capture, i );
+                int x = element % snapshot.getTilesX();
+                int y = element / snapshot.getTilesX();
+
+                invalidate( renderer, x * tileSize - margin, y * tileSize - margin, tileSize + 2 * margin, tileSize + 2 * margin );
+
+                if( addOverlapping )
+                    addTiles( snapshot, renderer, x, y, x, y, sliding );
+            }
+        }
+    }
+
+    /**
+     * Adds the segments which may overlap the screen tiles invalidated for the given board tiles.
+     * Those screen tiles reach into the board tiles next to them, where a sliding segment may come
+     * from up to two tiles further away.
+     */
+    private void addTiles( Snapshot snapshot, Renderer renderer, int firstX, int firstY, int lastX, int lastY, boolean sliding )
+    {
+        int radius = sliding ? 3 : 1;
+
+        for( int y = firstY - radius; y <= lastY + radius; y++ )
+        {
+            for( int x = firstX - radius; x <= lastX + radius; x++ )
+                addTile( snapshot, renderer, Camera.wrap( x, snapshot.getTilesX() ), Camera.wrap( y, snapshot.getTilesY() ) );
+        }
+    }
+
+    private void beginAdding( Snapshot snapshot )
+    {
+        int size = snapshot.getColumns() * snapshot.getRows();
+
+        if( addedFrames.length < size )
+            addedFrames = new int[ size ];
+
+        // a new number leaves the marks of the frames before behind, 0 is never used
+        frame++;
+        if( frame == 0 )
+        {
+            Arrays.fill( addedFrames, 0 );
+            frame = 1;
+        }
+    }
+
+    /**
+     * Adds the segment on the given board tile, once per frame.
+     */
+    private void addTile( Snapshot snapshot, Renderer renderer, int x, int y )
+    {
+        int column = Camera.wrap( x - snapshot.getFirstX(), snapshot.getTilesX() );
+        int row = Camera.wrap( y - snapshot.getFirstY(), snapshot.getTilesY() );
+
+        // outside of the window nothing is visible
+        if( column >= snapshot.getColumns() || row >= snapshot.getRows() )
+            return;
+
+        int position = row * snapshot.getColumns() + column;
+        if( addedFrames[ position ] == frame )
+            return;
+
+        addedFrames[ position ] = frame;
+
+        byte tile = snapshot.getTile( column, row );
+        if( tile != Snapshot.EMPTY )
+            drawTile( renderer, getPixelX( x, tile - Snapshot.SEGMENT ), getPixelY( y, tile - Snapshot.SEGMENT ), true );
+    }
+
+    /**
+     * Returns the x coordinate of a segment in the world including its fluid motion offset.
+     */
+    private int getPixelX( int x, int direction )
+    {
+        int pixelX = x * Options.tileSize;
+
+        if( direction == LEFT )
+            pixelX -= fluidMotionStep;
+        else if( direction == RIGHT )
+            pixelX += fluidMotionStep;
+
+        return pixelX;
+    }
+
+    /**
+     * Returns the y coordinate of a segment in the world including its fluid motion offset.
+     */
+    private int getPixelY( int y, int direction )
+    {
+        int pixelY = y * Options.tileSize;
+
+        if( direction == UP )
+            pixelY -= fluidMotionStep;
+        else if( direction == DOWN )
+            pixelY += fluidMotionStep;
+
+        return pixelY;
+    }
+
+    private void drawTile( Renderer renderer, int pixelX, int pixelY, boolean oval )
+    {
+        int tileSize = Options.tileSize;
+
+        int viewX = camera.toViewX( pixelX );
+        int viewY = camera.toViewY( pixelY );
+
+        // a tile reaching over the end of the board is 'teleported' and continues at the other end
+        boolean teleportX = viewX + tileSize > camera.getWorldWidth();
+        boolean teleportY = viewY + tileSize > camera.getWorldHeight();
+
+        fillTile( renderer, viewX, viewY, oval );
+
+        if( teleportX )
+            fillTile( renderer, viewX - camera.getWorldWidth(), viewY, oval );
+        if( teleportY )
+            fillTile( renderer, viewX, viewY - camera.getWorldHeight(), oval );
+        if( teleportX && teleportY )
+            fillTile( renderer, viewX - camera.getWorldWidth(), viewY - camera.getWorldHeight(), oval );
+    }
+
+    /**
+     * Invalidates a rectangle of the world, at the other end as well where it reaches over the end of the board.
+     */
+    private void invalidate( Renderer renderer, int pixelX, int pixelY, int width, int height )
+    {
+        int viewX = camera.toViewX( pixelX );
+        int viewY = camera.toViewY( pixelY );
+
+        boolean teleportX = viewX + width > camera.getWorldWidth();
+        boolean teleportY = viewY + height > camera.getWorldHeight();
+
+        renderer.invalidate( viewX, viewY, width, height );
+
+        if( teleportX )
+            renderer.invalidate( viewX - camera.getWorldWidth(), viewY, width, height );
+        if( teleportY )
+            renderer.invalidate( viewX, viewY - camera.getWorldHeight(), width, height );
+        if( teleportX && teleportY )
+            renderer.invalidate( viewX - camera.getWorldWidth(), viewY - camera.getWorldHeight(), width, height );
+    }
+
+    private void fillTile( Renderer renderer, int viewX, int viewY, boolean oval )
+    {
+        // skip everything outside of the view
+        if( viewX >= camera.getViewWidth() || viewY >= camera.getViewHeight() )
+            return;
+
+        if( oval )
+            renderer.addSegment( viewX, viewY );
+        else
+            renderer.addFood( viewX, viewY );
+    }
+}
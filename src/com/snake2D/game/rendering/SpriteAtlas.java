@@ -0,0 +1,100 @@
+package com.snake2D.game.rendering;
+
+import com.snake2D.game.basic.Options;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Pre-rendered images of the food and the snake segments, side by side in one image.
+ * Drawing a tile becomes a plain image copy instead of rasterizing a shape.
+ * The sprites are created in the format of the screen and are rendered again
+ * whenever the colors in Options or the tile size change.
+ */
+public class SpriteAtlas
+{
+    public static final int FOOD = 0;
+    public static final int SEGMENT = 1;
+
+    public static final int SPRITE_COUNT = 2;
+
+    private BufferedImage atlas;
+
+    private int tileSize;
+    private Color snakeColor;
+    private Color foodColor;
+
+    /**
+     * Renders the sprites again if they are out of date.
+     *
+     * @return true if the sprites have changed
+     */
+    public boolean validate( int tileSize )
+    {
+        if( atlas != null && this.tileSize == tileSize
+                && Options.snakeColor.equals( snakeColor ) && Options.foodColor.equals( foodColor ) )
+            return false;
+
+        this.tileSize = tileSize;
+        snakeColor = Options.snakeColor;
+        foodColor = Options.foodColor;
+
+        atlas = createImage( SPRITE_COUNT * tileSize, tileSize, Transparency.BITMASK );
+
+        Graphics2D graphics = atlas.createGraphics();
+        paintSprites( graphics, tileSize );
+        graphics.dispose();
+
+        return true;
+    }
+
+    /**
+     * Paints all sprites side by side with the current colors of Options.
+     */
+    public static void paintSprites( Graphics2D graphics, int tileSize )
+    {
+        graphics.setColor( Options.foodColor );
+        graphics.fillRect( FOOD * tileSize, 0, tileSize, tileSize );
+
+        graphics.setColor( Options.snakeColor );
+        graphics.fillOval( SEGMENT * tileSize, 0, tileSize, tileSize );
+    }
+
+    /**
+     * Copies the part of a sprite at the given position which lies inside of the given rectangle.
+     * Cheaper than setting a clip, which allocates a new shape every time.
+     */
+    public void draw( Graphics2D graphics, int sprite, int x, int y, int left, int top, int right, int bottom )
+    {
+        int fromX = Math.max( x, left );
+        int toX = Math.min( x + tileSize, right );
+        int fromY = Math.max( y, top );
+        int toY = Math.min( y + tileSize, bottom );
+
+        if( fromX >= toX || fromY >= toY )
+            return;
+
+        int spriteX = sprite * tileSize - x;
+
+        graphics.drawImage( atlas, fromX, fromY, toX, toY, spriteX + fromX, fromY - y, spriteX + toX, toY - y, null );
+    }
+
+    /**
+     * Creates an image in the format of the screen, which can be copied without conversion.
+     */
+    public static BufferedImage createImage( int width, int height, int transparency )
+    {
+        if( !GraphicsEnvironment.isHeadless() )
+        {
+            GraphicsConfiguration configuration = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                    .getDefaultScreenDevice().getDefaultConfiguration();
+
+            return configuration.createCompatibleImage( width, height, transparency );
+        }
+
+        if( transparency == Transparency.OPAQUE )
+            return new BufferedImage( width, height, BufferedImage.TYPE_INT_RGB );
+
+        return new BufferedImage( width, height, BufferedImage.TYPE_INT_ARGB );
+    }
+}
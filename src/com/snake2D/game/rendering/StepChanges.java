@@ -0,0 +1,132 @@
+package com.snake2D.game.rendering;
+
+import com.snake2D.game.simulation.Simulation;
+
+/**
+ * Remembers which tiles of the board the last captures of a simulation
+ * changed: the heads added, the tail vacated and the food before and after.
+ * Snapshots carry them to the render thread, which then only repaints those
+ * tiles. The render thread may skip snapshots, so the changes of the last few
+ * captures are kept. Owned by the thread capturing the snapshots.
+ */
+public class StepChanges
+{
+    // captures kept, a renderer further behind repaints everything
+    public static final int CAPTURES = 4;
+
+    // up to three heads when eating twice in a row, the tail, the old and the new food
+    public static final int MAX_TILES = 6;
+
+    // the simulation and its state at the last capture
+    private Simulation simulation;
+    private int head;
+    private int tail;
+    private int segmentCount;
+    private int food;
+
+    // number of captures so far and the first one whose changes are known
+    private long capture = 0;
+    private long firstKnown = 1;
+
+    private final int[] tiles = new int[ CAPTURES * MAX_TILES ];
+    private final int[] counts = new int[ CAPTURES ];
+
+    /**
+     * Records what changed since the last call, which has to be made on every capture.
+     */
+    public void record( Simulation simulation )
+    {
+        capture++;
+
+        int slot = ( int ) ( capture % CAPTURES );
+        int offset = slot * MAX_TILES;
+        int count = 0;
+
+        if( simulation != this.simulation )
+            firstKnown = capture + 1;
+        else
+        {
+            // the old head is at most two segments behind the new one, one step moves twice when eating
+            int headsAdded = -1;
+            for( int i = 0; i <= 2 && i < simulation.getSegmentCount(); i++ )
+            {
+                if( simulation.getSegment( i ) == head )
+                {
+                    headsAdded = i;
+                    break;
+                }
+            }
+
+            // a snake of a single tile moved its old head away as the tail
+            if( headsAdded < 0 && !simulation.isOccupied( head ) && simulation.getSegmentCount() <= 3 )
+                headsAdded = simulation.getSegmentCount();
+
+            int tailsRemoved = segmentCount + headsAdded - simulation.getSegmentCount();
+
+            // more than a step, e.g. several deltas of a server applied at once
+            if( headsAdded < 0 || tailsRemoved < 0 || tailsRemoved > 1 )
+                firstKnown = capture + 1;
+            else
+            {
+                for( int i = 0; i < headsAdded; i++ )
+                    tiles[ offset + count++ ] = simulation.getSegment( i );
+
+                if( tailsRemoved == 1 )
+                    tiles[ offset + count++ ] = tail;
+
+                int newFood = simulation.getElement( simulation.getFoodX(), simulation.getFoodY() );
+                if( newFood != food )
+                {
+                    tiles[ offset + count++ ] = food;
+                    tiles[ offset + count++ ] = newFood;
+                }
+            }
+        }
+
+        counts[ slot ] = count;
+
+        this.simulation = simulation;
+        head = simulation.getSegment( 0 );
+        tail = simulation.getSegment( simulation.getSegmentCount() - 1 );
+        segmentCount = simulation.getSegmentCount();
+        food = simulation.getElement( simulation.getFoodX(), simulation.getFoodY() );
+    }
+
+    /**
+     * Records a capture whose changes aren't known, e.g. of a game rolled back to an earlier tick.
+     * It is drawn completely, and so is the capture of a simulation after it.
+     */
+    public void recordAll()
+    {
+        capture++;
+        firstKnown = capture + 1;
+
+        simulation = null;
+    }
+
+    /**
+     * Returns the number of captures recorded so far.
+     */
+    public long getCapture()
+    {
+        return capture;
+    }
+
+    /**
+     * Returns the first capture whose changes are known, the ones before changed everything.
+     */
+    public long getFirstKnown()
+    {
+        return firstKnown;
+    }
+
+    int[] getTiles()
+    {
+        return tiles;
+    }
+
+    int[] getCounts()
+    {
+        return counts;
+    }
+}
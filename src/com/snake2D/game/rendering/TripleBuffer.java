@@ -0,0 +1,61 @@
+package com.snake2D.game.rendering;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free handoff of buffers from one writer thread to one reader thread.
+ * The writer fills the back buffer and publishes it, the reader always gets
+ * the latest published buffer. Neither side ever waits for the other and
+ * never sees a buffer the other side is working on.
+ */
+public class TripleBuffer<T>
+{
+    // set in 'middle' when it holds a buffer the reader hasn't seen yet
+    private static final int FRESH = 4;
+    private static final int INDEX = 3;
+
+    private final Object[] buffers;
+
+    // owned by the writer
+    private int back = 0;
+
+    // exchanged between writer and reader
+    private final AtomicInteger middle = new AtomicInteger( 1 );
+
+    // owned by the reader
+    private int front = 2;
+
+    public TripleBuffer( T first, T second, T third )
+    {
+        buffers = new Object[] { first, second, third };
+    }
+
+    /**
+     * Returns the buffer the writer may fill.
+     */
+    @SuppressWarnings( "unchecked" )
+    public T getBack()
+    {
+        return ( T ) buffers[ back ];
+    }
+
+    /**
+     * Hands the filled back buffer over to the reader.
+     */
+    public void publish()
+    {
+        back = middle.getAndSet( back | FRESH ) & INDEX;
+    }
+
+    /**
+     * Returns the most recently published buffer, which stays valid until the next call.
+     */
+    @SuppressWarnings( "unchecked" )
+    public T acquire()
+    {
+        if( ( middle.get() & FRESH ) != 0 )
+            front = middle.getAndSet( front ) & INDEX;
+
+        return ( T ) buffers[ front ];
+    }
+}
@@ -0,0 +1,199 @@
+package com.snake2D.game.replay;
+
+import com.snake2D.game.basic.Options;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * A recorded session: everything needed to play it again exactly the same.
+ * Since the simulation only depends on its seed and the directions passed to
+ * it, the board, the seed, the ticks per step and the turns are enough.
+ *
+ * The file starts with a header, "SNKR", a version byte, the seed and then
+ * the tiles, ticks per step, the last tick and the length of the turns as
+ * varints. Every turn follows as one varint of the ticks since the turn
+ * before, shifted left by two, with the direction in the lowest two bits.
+ */
+public class Replay
+{
+    private static final int MAGIC = 0x534E4B52;
+    private static final int VERSION = 1;
+
+    private final long seed;
+    private final int tilesX;
+    private final int tilesY;
+    private final int stepTicks;
+
+    // the tick the recording ended at
+    private final long endTick;
+
+    // encoded turns
+    private final byte[] turns;
+
+    public Replay( long seed, int tilesX, int tilesY, int stepTicks, long endTick, byte[] turns )
+    {
+        this.seed = seed;
+        this.tilesX = tilesX;
+        this.tilesY = tilesY;
+        this.stepTicks = stepTicks;
+        this.endTick = endTick;
+        this.turns = turns;
+    }
+
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    public int getTilesX()
+    {
+        return tilesX;
+    }
+
+    public int getTilesY()
+    {
+        return tilesY;
+    }
+
+    public int getStepTicks()
+    {
+        return stepTicks;
+    }
+
+    public long getEndTick()
+    {
+        return endTick;
+    }
+
+    byte[] getTurns()
+    {
+        return turns;
+    }
+
+    /**
+     * Sets the options to the ones the session was recorded with.
+     */
+    public void apply()
+    {
+        Options.seed = seed;
+        Options.tilesX = tilesX;
+        Options.tilesY = tilesY;
+        Options.stepTicks = stepTicks;
+    }
+
+    public void write( OutputStream out ) throws IOException
+    {
+        DataOutputStream data = new DataOutputStream( out );
+
+        data.writeInt( MAGIC );
+        data.writeByte( VERSION );
+        data.writeLong( seed );
+
+        VarInts.write( data, tilesX );
+        VarInts.write( data, tilesY );
+        VarInts.write( data, stepTicks );
+        VarInts.write( data, endTick );
+        VarInts.write( data, turns.length );
+
+        data.write( turns );
+        data.flush();
+    }
+
+    public static Replay read( InputStream in ) throws IOException
+    {
+        DataInputStream data = new DataInputStream( in );
+
+        if( data.readInt() != MAGIC )
+            throw new IOException( "not a replay" );
+
+        int version = data.readUnsignedByte();
+        if( version != VERSION )
+            throw new IOException( "unknown replay version: " + version );
+
+        long seed = data.readLong();
+
+        // the same limits as for the options, tiles are numbered with an int
+        int tilesX = readInt( data, "tiles", 2 );
+        int tilesY = readInt( data, "tiles", 2 );
+        if( ( long ) tilesX * tilesY > Integer.MAX_VALUE )
+            throw new IOException( "too many tiles in replay: " + tilesX + "x" + tilesY );
+
+        int stepTicks = readInt( data, "ticks per step", 1 );
+
+        long endTick = VarInts.read( data );
+        if( endTick < 0 )
+            throw new IOException( "invalid end tick in replay: " + endTick );
+
+        byte[] turns = readTurns( data, readInt( data, "length of the turns", 0 ) );
+        checkTurns( turns, endTick );
+
+        return new Replay( seed, tilesX, tilesY, stepTicks, endTick, turns );
+    }
+
+    /**
+     * Reads a varint which has to fit into an int and be at least the minimum.
+     */
+    private static int readInt( InputStream in, String name, int min ) throws IOException
+    {
+        long value = VarInts.read( in );
+
+        if( value < min || value > Integer.MAX_VALUE )
+            throw new IOException( "invalid " + name + " in replay: " + value );
+
+        return ( int ) value;
+    }
+
+    /**
+     * Reads the encoded turns in pieces, so a broken length doesn't take all the memory before the file ends.
+     */
+    private static byte[] readTurns( DataInputStream in, int length ) throws IOException
+    {
+        byte[] turns = new byte[ Math.min( length, 1 << 16 ) ];
+        int read = 0;
+
+        while( read < length )
+        {
+            if( read == turns.length )
+                turns = Arrays.copyOf( turns, ( int ) Math.min( length, 2L * turns.length ) );
+
+            in.readFully( turns, read, turns.length - read );
+            read = turns.length;
+        }
+
+        return turns;
+    }
+
+    /**
+     * Checks that every turn is a complete number and is made before the recording ended.
+     */
+    private static void checkTurns( byte[] turns, long endTick ) throws IOException
+    {
+        long tick = 0;
+
+        for( int position = 0; position < turns.length; position = VarInts.skip( turns, position ) )
+        {
+            tick += VarInts.read( turns, position ) >>> 2;
+
+            // the ticks between turns are at most 62 bits, so the sum of two can't overflow
+            if( tick > endTick )
+                throw new IOException( "turn in replay after its end: " + tick );
+        }
+    }
+
+    public void save( String file ) throws IOException
+    {
+        try( OutputStream out = new BufferedOutputStream( new FileOutputStream( file ) ) )
+        {
+            write( out );
+        }
+    }
+
+    public static Replay load( String file ) throws IOException
+    {
+        try( InputStream in = new BufferedInputStream( new FileInputStream( file ) ) )
+        {
+            return read( in );
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.snake2D.game.replay;
+
+import com.snake2D.game.input.DirectionSource;
+import com.snake2D.game.simulation.Simulation;
+
+import java.io.IOException;
+
+/**
+ * Plays back the turns of a recorded session at the ticks they were made.
+ */
+public class ReplayDirectionSource implements DirectionSource
+{
+    private final byte[] turns;
+    private int position = 0;
+
+    private boolean hasNext;
+    private long nextTick = 0;
+    private int nextDirection;
+
+    public ReplayDirectionSource( Replay replay )
+    {
+        turns = replay.getTurns();
+
+        readNext();
+    }
+
+    @Override
+    public void update( long tick, Simulation simulation )
+    {
+    }
+
+    @Override
+    public int nextDirection( long tick )
+    {
+        if( !hasNext || tick != nextTick )
+            return Simulation.NONE;
+
+        int direction = nextDirection;
+        readNext();
+
+        return direction;
+    }
+
+    /**
+     * Returns whether all turns have been played back.
+     */
+    public boolean isFinished()
+    {
+        return !hasNext;
+    }
+
+    private void readNext()
+    {
+        hasNext = position < turns.length;
+        if( !hasNext )
+            return;
+
+        long value;
+
+        try
+        {
+            value = VarInts.read( turns, position );
+        }
+        catch( IOException e )
+        {
+            // replays are checked when they are read, so only one made up in memory can get here
+            throw new IllegalArgumentException( "invalid turns in replay", e );
+        }
+
+        position = VarInts.skip( turns, position );
+
+        nextTick += value >>> 2;
+        nextDirection = ( int ) ( value & 3 );
+    }
+}
@@ -0,0 +1,55 @@
+package com.snake2D.game.replay;
+
+import com.snake2D.game.basic.Options;
+import com.snake2D.game.com.snake2D.game.states.GameStateManager;
+import com.snake2D.game.com.snake2D.game.states.MainState;
+
+import java.io.IOException;
+
+/**
+ * Plays back recorded sessions without a window, as fast as the game logic
+ * runs, and prints their scores.
+ *
+ * java -cp snake2d.jar com.snake2D.game.replay.ReplayPlayer game.replay...
+ */
+public class ReplayPlayer
+{
+    private ReplayPlayer()
+    {
+    }
+
+    /**
+     * Plays the replay through the game logic tick by tick until it has ended.
+     * Changes the options to the ones of the replay.
+     *
+     * @return the game state at the end of the replay
+     */
+    public static MainState play( Replay replay )
+    {
+        replay.apply();
+
+        GameStateManager gameStateManager = new GameStateManager();
+        MainState state = new MainState( gameStateManager, new ReplayDirectionSource( replay ) );
+
+        gameStateManager.setGameState( state );
+
+        while( !state.isGameOver() && state.getTick() < replay.getEndTick() )
+            gameStateManager.update( 1 );
+
+        return state;
+    }
+
+    public static void main( String[] args ) throws IOException
+    {
+        // playing back must never overwrite a recording
+        Options.recordFile = null;
+
+        for( String file : args )
+        {
+            MainState state = play( Replay.load( file ) );
+
+            System.out.println( file + ": score " + state.getScore() + ( state.isGameOver() ? ", game over" : "" )
+                    + " after " + state.getTick() + " ticks" );
+        }
+    }
+}
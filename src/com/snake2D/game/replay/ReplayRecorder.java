@@ -0,0 +1,52 @@
+package com.snake2D.game.replay;
+
+import com.snake2D.game.simulation.Simulation;
+
+import java.util.Arrays;
+
+/**
+ * Records the turns of a session in memory.
+ */
+public class ReplayRecorder
+{
+    private final long seed;
+    private final int tilesX;
+    private final int tilesY;
+    private final int stepTicks;
+
+    private byte[] turns = new byte[ 256 ];
+    private int length = 0;
+
+    private long lastTick = 0;
+
+    public ReplayRecorder( long seed, int tilesX, int tilesY, int stepTicks )
+    {
+        this.seed = seed;
+        this.tilesX = tilesX;
+        this.tilesY = tilesY;
+        this.stepTicks = stepTicks;
+    }
+
+    /**
+     * Records the direction passed to the step at the given tick.
+     */
+    public void record( long tick, int direction )
+    {
+        if( direction == Simulation.NONE )
+            return;
+
+        if( length + VarInts.MAX_LENGTH > turns.length )
+            turns = Arrays.copyOf( turns, turns.length * 2 );
+
+        length = VarInts.put( turns, length, ( ( tick - lastTick ) << 2 ) | direction );
+        lastTick = tick;
+    }
+
+    /**
+     * Returns the session recorded so far, which ended at the given tick.
+     */
+    public Replay toReplay( long endTick )
+    {
+        return new Replay( seed, tilesX, tilesY, stepTicks, endTick, Arrays.copyOf( turns, length ) );
+    }
+}
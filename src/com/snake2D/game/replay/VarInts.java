@@ -0,0 +1,103 @@
+package com.snake2D.game.replay;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Variable length encoding of non-negative numbers, 7 bits per byte with the
+ * highest bit set on all but the last byte. Small numbers take a single byte.
+ */
+class VarInts
+{
+    // a long never takes more bytes than this
+    static final int MAX_LENGTH = 10;
+
+    private VarInts()
+    {
+    }
+
+    /**
+     * Writes the value into the buffer, which needs MAX_LENGTH bytes of room.
+     *
+     * @return the offset behind the value
+     */
+    static int put( byte[] buffer, int offset, long value )
+    {
+        while( ( value & ~0x7FL ) != 0 )
+        {
+            buffer[ offset++ ] = ( byte ) ( ( value & 0x7F ) | 0x80 );
+            value >>>= 7;
+        }
+
+        buffer[ offset++ ] = ( byte ) value;
+
+        return offset;
+    }
+
+    static void write( OutputStream out, long value ) throws IOException
+    {
+        while( ( value & ~0x7FL ) != 0 )
+        {
+            out.write( ( int ) ( ( value & 0x7F ) | 0x80 ) );
+            value >>>= 7;
+        }
+
+        out.write( ( int ) value );
+    }
+
+    /**
+     * Reads the value starting at the position of the buffer.
+     * Use skip() to get the position behind it.
+     */
+    static long read( byte[] buffer, int position ) throws IOException
+    {
+        long value = 0;
+
+        for( int shift = 0; shift < 64; shift += 7 )
+        {
+            if( position == buffer.length )
+                throw new EOFException( "replay ends inside of a number" );
+
+            int b = buffer[ position++ ];
+
+            value |= ( long ) ( b & 0x7F ) << shift;
+
+            if( ( b & 0x80 ) == 0 )
+                return value;
+        }
+
+        throw new IOException( "number in replay is too long" );
+    }
+
+    /**
+     * Returns the position behind the value starting at the given one, which has to be read successfully before.
+     */
+    static int skip( byte[] buffer, int position )
+    {
+        while( buffer[ position ] < 0 )
+            position++;
+
+        return position + 1;
+    }
+
+    static long read( InputStream in ) throws IOException
+    {
+        long value = 0;
+
+        for( int shift = 0; shift < 64; shift += 7 )
+        {
+            int b = in.read();
+            if( b == -1 )
+                throw new EOFException( "replay ends inside of a number" );
+
+            value |= ( long ) ( b & 0x7F ) << shift;
+
+            if( ( b & 0x80 ) == 0 )
+                return value;
+        }
+
+        throw new IOException( "number in replay is too long" );
+    }
+}
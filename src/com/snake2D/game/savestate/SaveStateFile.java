@@ -0,0 +1,161 @@
+package com.snake2D.game.savestate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the latest state of a game in a memory-mapped file, so it survives a crash of the process.
+ * Writing a state is a copy into mapped memory without any system call, cheap
+ * enough to be done every tick. The file has two slots which are written in
+ * turns; every slot carries a sequence number and a checksum, so a state
+ * which was only partly written when the process died is never read back.
+ */
+public class SaveStateFile implements Closeable
+{
+    private static final int MAGIC = 0x534E4B53;
+
+    // magic, sequence number, length and checksum of the state
+    private static final int SLOT_HEADER_SIZE = 20;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer map;
+
+    private final int maxStateSize;
+    private final int slotSize;
+
+    // states are put together here, so the checksum can be computed before they are copied
+    private final byte[] stagingArray;
+    private final ByteBuffer staging;
+
+    private final CRC32 checksum = new CRC32();
+
+    // sequence number of the latest state in the file
+    private long sequence;
+
+    /**
+     * Opens or creates the file.
+     *
+     * @param maxStateSize the most bytes a state can take
+     */
+    public SaveStateFile( String path, int maxStateSize ) throws IOException
+    {
+        this.maxStateSize = maxStateSize;
+        slotSize = SLOT_HEADER_SIZE + maxStateSize;
+
+        file = new RandomAccessFile( path, "rw" );
+        map = file.getChannel().map( FileChannel.MapMode.READ_WRITE, 0, 2L * slotSize );
+
+        stagingArray = new byte[ maxStateSize ];
+        staging = ByteBuffer.wrap( stagingArray );
+
+        int slot = findLatestSlot();
+        sequence = slot == -1 ? 0 : map.getLong( slot + 4 );
+    }
+
+    /**
+     * Returns a buffer to write the next state into, it is stored by commit().
+     */
+    public ByteBuffer beginWrite()
+    {
+        staging.clear();
+
+        return staging;
+    }
+
+    /**
+     * Stores the state written into the buffer of beginWrite() as the latest one.
+     */
+    public void commit()
+    {
+        int length = staging.position();
+
+        checksum.reset();
+        checksum.update( stagingArray, 0, length );
+
+        sequence++;
+        int slot = ( int ) ( sequence & 1 ) * slotSize;
+
+        // the older slot is overwritten, the latest state stays intact meanwhile
+        map.putInt( slot, 0 );
+        map.putLong( slot + 4, sequence );
+        map.putInt( slot + 12, length );
+        map.putInt( slot + 16, ( int ) checksum.getValue() );
+
+        map.position( slot + SLOT_HEADER_SIZE );
+        map.put( stagingArray, 0, length );
+
+        map.putInt( slot, MAGIC );
+    }
+
+    /**
+     * Returns the latest complete state, or null if there is none.
+     * The buffer is only valid until the next call of beginWrite().
+     */
+    public ByteBuffer read()
+    {
+        int slot = findLatestSlot();
+        if( slot == -1 )
+            return null;
+
+        staging.clear();
+        staging.limit( map.getInt( slot + 12 ) );
+
+        map.position( slot + SLOT_HEADER_SIZE );
+        map.get( stagingArray, 0, staging.limit() );
+
+        return staging;
+    }
+
+    /**
+     * Writes the mapped memory through to the disk, which protects against more than a crash of the process.
+     */
+    public void force()
+    {
+        map.force();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        file.close();
+    }
+
+    /**
+     * Returns the offset of the slot with the latest complete state, or -1.
+     */
+    private int findLatestSlot()
+    {
+        int latest = -1;
+
+        for( int slot = 0; slot < 2 * slotSize; slot += slotSize )
+        {
+            if( isComplete( slot ) && ( latest == -1 || map.getLong( slot + 4 ) > map.getLong( latest + 4 ) ) )
+                latest = slot;
+        }
+
+        return latest;
+    }
+
+    private boolean isComplete( int slot )
+    {
+        if( map.getInt( slot ) != MAGIC )
+            return false;
+
+        int length = map.getInt( slot + 12 );
+        if( length < 0 || length > maxStateSize )
+            return false;
+
+        map.position( slot + SLOT_HEADER_SIZE );
+        map.get( stagingArray, 0, length );
+
+        checksum.reset();
+        checksum.update( stagingArray, 0, length );
+
+        return ( int ) checksum.getValue() == map.getInt( slot + 16 );
+    }
+}
@@ -0,0 +1,490 @@
+package com.snake2D.game.server;
+
+import com.snake2D.game.basic.Options;
+import com.snake2D.game.com.snake2D.game.states.GameStateManager;
+import com.snake2D.game.com.snake2D.game.states.MainState;
+import com.snake2D.game.metrics.FrameMetrics;
+import com.snake2D.game.metrics.LatencyHistogram;
+import com.snake2D.game.simulation.Simulation;
+import com.snake2D.game.simulation.SimulationDelta;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Runs the game logic of MainState without a window and sends it to any
+ * number of clients over TCP. Everything happens on one thread: a selector
+ * accepts and serves the clients between the ticks, which keep a fixed rate.
+ * Clients get the whole state once and then only the deltas of every step,
+ * which are encoded once and copied to the buffer of every client.
+ * The first client saying hello as a player controls the snake, all others
+ * watch. A new game starts a while after the last one is over.
+ *
+ * java -Djava.awt.headless=true -cp snake2d.jar com.snake2D.game.server.GameServer -port 4711 -tiles 64x64
+ */
+public class GameServer implements Runnable, Closeable
+{
+    public static final int DEFAULT_PORT = 4711;
+
+    private static final long TICK_TIME_NANO = 1000000000L / Options.TICK_RATE;
+
+    // ticks after a game over before the next game starts
+    private static final int RESTART_TICKS = 2 * Options.TICK_RATE;
+
+    // ticks the server may fall behind before it skips them instead of catching up
+    private static final int MAX_CATCH_UP_TICKS = 5;
+
+    private static final int MIN_CLIENT_BUFFER_SIZE = 64 * 1024;
+
+    // time given to the clients on stopping to take what is still queued for them
+    private static final long SHUTDOWN_TIME_MILLIS = 1000;
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+
+    private final GameStateManager gameStateManager = new GameStateManager();
+    private final RemoteDirectionSource directions = new RemoteDirectionSource();
+    private MainState state;
+    private long ticksSinceGameOver;
+
+    private final SimulationDelta delta = new SimulationDelta();
+
+    // the message of this tick, encoded once for all clients
+    private final ByteBuffer message;
+    private final int clientBufferSize;
+
+    private final List<Client> clients = new ArrayList<Client>();
+    private Client player;
+
+    private final FrameMetrics metrics = new FrameMetrics();
+    private final LatencyHistogram tickLateness = new LatencyHistogram();
+    private long lateTicks = 0;
+
+    private volatile boolean running = false;
+
+    private volatile long bytesSent = 0;
+    private volatile long droppedClients = 0;
+
+    private static class Client
+    {
+        final SocketChannel channel;
+        final SelectionKey key;
+
+        final ByteBuffer in = ByteBuffer.allocate( 64 );
+        final ByteBuffer out;
+
+        boolean joined = false;
+        boolean writing = false;
+
+        Client( SocketChannel channel, SelectionKey key, int bufferSize )
+        {
+            this.channel = channel;
+            this.key = key;
+
+            out = ByteBuffer.allocate( bufferSize );
+        }
+    }
+
+    /**
+     * Opens the server socket, port 0 takes any free one.
+     */
+    public GameServer( int port ) throws IOException
+    {
+        int stateSize = ServerProtocol.FULL_STATE_HEADER_SIZE + 4 + Simulation.getMaxStateSize( Options.tilesX, Options.tilesY );
+
+        message = ByteBuffer.allocate( Math.max( stateSize, 1 + SimulationDelta.MAX_SIZE ) );
+
+        // a client may fall a few full states behind before it is dropped
+        clientBufferSize = Math.max( MIN_CLIENT_BUFFER_SIZE, 4 * stateSize );
+
+        selector = Selector.open();
+
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking( false );
+        serverChannel.bind( new InetSocketAddress( port ) );
+        serverChannel.register( selector, SelectionKey.OP_ACCEPT );
+
+        newGame();
+    }
+
+    public int getPort()
+    {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Returns the game, which must only be read while the server isn't running.
+     */
+    public MainState getState()
+    {
+        return state;
+    }
+
+    public FrameMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Returns the nanoseconds every tick started after its deadline.
+     */
+    public LatencyHistogram getTickLateness()
+    {
+        return tickLateness;
+    }
+
+    public long getLateTicks()
+    {
+        return lateTicks;
+    }
+
+    public long getBytesSent()
+    {
+        return bytesSent;
+    }
+
+    public long getDroppedClients()
+    {
+        return droppedClients;
+    }
+
+    /**
+     * Ticks and serves the clients until stop() is called.
+     */
+    @Override
+    public void run()
+    {
+        running = true;
+
+        long nextTick = System.nanoTime();
+
+        try
+        {
+            while( running )
+            {
+                long now = System.nanoTime();
+
+                if( now - nextTick >= 0 )
+                {
+                    tickLateness.record( now - nextTick );
+
+                    tick();
+
+                    nextTick += TICK_TIME_NANO;
+
+                    // rather drop ticks than run many of them in a row when the server can't keep up
+                    if( System.nanoTime() - nextTick > MAX_CATCH_UP_TICKS * TICK_TIME_NANO )
+                    {
+                        lateTicks += ( System.nanoTime() - nextTick ) / TICK_TIME_NANO;
+                        nextTick = System.nanoTime();
+                    }
+
+                    metrics.recordTick( System.nanoTime() - now, lateTicks );
+                }
+
+                // serve the clients until the next tick, the last part of the wait is polled
+                long waitMillis = ( nextTick - System.nanoTime() ) / 1000000L;
+
+                if( waitMillis > 0 )
+                    selector.select( waitMillis );
+                else
+                    selector.selectNow();
+
+                handleSelectedKeys();
+            }
+
+            // hand out what is still queued, so the clients end on the last state
+            long shutdownStart = System.currentTimeMillis();
+            while( isWriting() && System.currentTimeMillis() - shutdownStart < SHUTDOWN_TIME_MILLIS )
+            {
+                selector.select( 10 );
+                handleSelectedKeys();
+            }
+        }
+        catch( IOException e )
+        {
+            System.err.println( "game server stopped: " + e.getMessage() );
+        }
+    }
+
+    public void stop()
+    {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void tick() throws IOException
+    {
+        if( state.isGameOver() )
+        {
+            if( ++ticksSinceGameOver >= RESTART_TICKS )
+                newGame();
+
+            return;
+        }
+
+        gameStateManager.update( 1 );
+
+        // only a step changes anything the clients see
+        if( state.getLastStepTick() == state.getTick() - 1 )
+        {
+            message.clear();
+            message.put( ServerProtocol.STEP );
+
+            if( delta.write( state.getSimulation(), message ) )
+            {
+                message.flip();
+                broadcast();
+            }
+            else
+                broadcastFullState();
+        }
+    }
+
+    private void newGame() throws IOException
+    {
+        // every game is a different one
+        Options.seed++;
+
+        state = new MainState( gameStateManager, directions );
+        gameStateManager.setGameState( state );
+
+        directions.clear();
+        ticksSinceGameOver = 0;
+
+        broadcastFullState();
+    }
+
+    private void encodeFullState()
+    {
+        message.clear();
+        message.put( ServerProtocol.FULL_STATE );
+        message.putInt( 0 );
+        message.putInt( state.getStepTicks() );
+
+        state.getSimulation().saveState( message );
+
+        message.putInt( 1, message.position() - ServerProtocol.FULL_STATE_HEADER_SIZE );
+        message.flip();
+
+        delta.reset( state.getSimulation() );
+    }
+
+    private void broadcastFullState() throws IOException
+    {
+        encodeFullState();
+        broadcast();
+    }
+
+    private void broadcast() throws IOException
+    {
+        // sending may drop clients, so walk the list backwards
+        for( int i = clients.size() - 1; i >= 0; i-- )
+        {
+            Client client = clients.get( i );
+
+            if( client.joined )
+                send( client );
+        }
+    }
+
+    /**
+     * Queues the message for the client and writes as much as the socket takes right now.
+     */
+    private void send( Client client ) throws IOException
+    {
+        if( client.out.remaining() < message.remaining() )
+        {
+            // the client doesn't keep up, a gap in the deltas would break its copy of the game
+            droppedClients++;
+            disconnect( client );
+            return;
+        }
+
+        client.out.put( message );
+        message.rewind();
+
+        flush( client );
+    }
+
+    private void flush( Client client ) throws IOException
+    {
+        client.out.flip();
+
+        try
+        {
+            bytesSent += client.channel.write( client.out );
+        }
+        catch( IOException e )
+        {
+            disconnect( client );
+            return;
+        }
+
+        client.out.compact();
+
+        // only wait until the socket can be written again if something is left
+        boolean writing = client.out.position() > 0;
+        if( writing != client.writing )
+        {
+            client.writing = writing;
+            client.key.interestOps( writing ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ );
+        }
+    }
+
+    private boolean isWriting()
+    {
+        for( Client client : clients )
+        {
+            if( client.writing )
+                return true;
+        }
+
+        return false;
+    }
+
+    private void handleSelectedKeys() throws IOException
+    {
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+        while( keys.hasNext() )
+        {
+            SelectionKey key = keys.next();
+            keys.remove();
+
+            if( !key.isValid() )
+                continue;
+
+            if( key.isAcceptable() )
+            {
+                accept();
+                continue;
+            }
+
+            Client client = ( Client ) key.attachment();
+
+            if( key.isReadable() )
+                read( client );
+
+            if( key.isValid() && key.isWritable() )
+                flush( client );
+        }
+    }
+
+    private void accept() throws IOException
+    {
+        SocketChannel channel;
+        while( ( channel = serverChannel.accept() ) != null )
+        {
+            channel.configureBlocking( false );
+            channel.socket().setTcpNoDelay( true );
+
+            SelectionKey key = channel.register( selector, SelectionKey.OP_READ );
+
+            Client client = new Client( channel, key, clientBufferSize );
+            key.attach( client );
+
+            clients.add( client );
+        }
+    }
+
+    private void read( Client client ) throws IOException
+    {
+        int read;
+        try
+        {
+            read = client.channel.read( client.in );
+        }
+        catch( IOException e )
+        {
+            read = -1;
+        }
+
+        if( read < 0 )
+        {
+            disconnect( client );
+            return;
+        }
+
+        client.in.flip();
+
+        while( client.in.remaining() >= ServerProtocol.CLIENT_MESSAGE_SIZE )
+        {
+            byte type = client.in.get();
+            byte value = client.in.get();
+
+            if( type == ServerProtocol.HELLO && !client.joined )
+                join( client, value == ServerProtocol.PLAY );
+            else if( type == ServerProtocol.TURN && client == player
+                    && value >= Simulation.UP && value <= Simulation.RIGHT )
+                directions.receive( value );
+        }
+
+        client.in.compact();
+    }
+
+    private void join( Client client, boolean play ) throws IOException
+    {
+        client.joined = true;
+
+        if( play && player == null )
+            player = client;
+
+        // the deltas of the others continue from the current state as well
+        encodeFullState();
+        send( client );
+    }
+
+    private void disconnect( Client client )
+    {
+        clients.remove( client );
+
+        if( client == player )
+            player = null;
+
+        client.key.cancel();
+
+        try
+        {
+            client.channel.close();
+        }
+        catch( IOException e )
+        {
+            // it's gone either way
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        for( int i = clients.size() - 1; i >= 0; i-- )
+            disconnect( clients.get( i ) );
+
+        serverChannel.close();
+        selector.close();
+    }
+
+    public static void main( String[] args ) throws IOException
+    {
+        // the game logic pulls in AWT classes, but there is no window to show
+        System.setProperty( "java.awt.headless", "true" );
+
+        Options.parseArguments( args );
+
+        GameServer server = new GameServer( Options.serverPort > 0 ? Options.serverPort : DEFAULT_PORT );
+        server.getMetrics().register();
+
+        System.out.println( "serving " + Options.tilesX + "x" + Options.tilesY + " tiles on port " + server.getPort() );
+
+        server.run();
+    }
+}
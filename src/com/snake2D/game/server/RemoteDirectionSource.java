@@ -0,0 +1,56 @@
+package com.snake2D.game.server;
+
+import com.snake2D.game.input.DirectionSource;
+import com.snake2D.game.input.TurnQueue;
+import com.snake2D.game.simulation.Simulation;
+
+/**
+ * Turns of the player connected to the server.
+ * They are queued like key presses, with the time they were received.
+ */
+class RemoteDirectionSource implements DirectionSource
+{
+    // turns received since the last tick
+    private final int[] received = new int[ 2 * TurnQueue.DEFAULT_CAPACITY ];
+    private final long[] receiveTimes = new long[ received.length ];
+    private int receivedCount = 0;
+
+    private final TurnQueue turns = new TurnQueue( TurnQueue.DEFAULT_CAPACITY );
+
+    /**
+     * Takes a turn from the network, extra ones within a tick are dropped.
+     */
+    void receive( int direction )
+    {
+        if( receivedCount == received.length )
+            return;
+
+        received[ receivedCount ] = direction;
+        receiveTimes[ receivedCount ] = System.nanoTime();
+        receivedCount++;
+    }
+
+    /**
+     * Forgets all turns, e.g. for a new game.
+     */
+    void clear()
+    {
+        receivedCount = 0;
+        turns.clear();
+    }
+
+    @Override
+    public void update( long tick, Simulation simulation )
+    {
+        for( int i = 0; i < receivedCount; i++ )
+            turns.offer( received[ i ], receiveTimes[ i ], simulation.getMoveDirection() );
+
+        receivedCount = 0;
+    }
+
+    @Override
+    public int nextDirection( long tick )
+    {
+        return turns.poll( System.nanoTime() );
+    }
+}
@@ -0,0 +1,195 @@
+package com.snake2D.game.server;
+
+import com.snake2D.game.simulation.Simulation;
+import com.snake2D.game.simulation.SimulationDelta;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Client side of the game server: keeps a copy of the game on the server
+ * up to date from the states and deltas it sends, and sends turns to it.
+ * Reading never blocks once the first state has arrived.
+ */
+public class ServerConnection implements Closeable
+{
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final SocketChannel channel;
+
+    private ByteBuffer in = ByteBuffer.allocate( INITIAL_BUFFER_SIZE );
+    private final ByteBuffer out = ByteBuffer.allocate( ServerProtocol.CLIENT_MESSAGE_SIZE );
+
+    // copy of the game on the server, null until the first state has arrived
+    private Simulation simulation;
+    private int stepTicks;
+
+    /**
+     * Connects to a server given as host:port and joins as a player or a spectator.
+     */
+    public ServerConnection( String address, boolean play ) throws IOException
+    {
+        this( new InetSocketAddress( address.substring( 0, address.lastIndexOf( ':' ) ),
+                Integer.parseInt( address.substring( address.lastIndexOf( ':' ) + 1 ) ) ), play );
+    }
+
+    public ServerConnection( InetSocketAddress address, boolean play ) throws IOException
+    {
+        channel = SocketChannel.open( address );
+        channel.socket().setTcpNoDelay( true );
+
+        send( ServerProtocol.HELLO, play ? ServerProtocol.PLAY : ServerProtocol.SPECTATE );
+
+        channel.configureBlocking( false );
+    }
+
+    public SocketChannel getChannel()
+    {
+        return channel;
+    }
+
+    /**
+     * Returns the copy of the game on the server, null until the first state has arrived.
+     */
+    public Simulation getSimulation()
+    {
+        return simulation;
+    }
+
+    public int getStepTicks()
+    {
+        return stepTicks;
+    }
+
+    /**
+     * Blocks until the first state has arrived, e.g. to size the window to the board.
+     */
+    public void awaitState() throws IOException
+    {
+        channel.configureBlocking( true );
+
+        try
+        {
+            while( simulation == null )
+                receive();
+        }
+        finally
+        {
+            channel.configureBlocking( false );
+        }
+    }
+
+    /**
+     * Applies everything which arrived since the last call.
+     *
+     * @return the number of states and steps applied
+     */
+    public int poll() throws IOException
+    {
+        int applied = 0;
+        int received;
+
+        do
+        {
+            received = receive();
+            applied += received;
+        }
+        while( received > 0 );
+
+        return applied;
+    }
+
+    /**
+     * Reads once and applies the complete messages read so far.
+     */
+    private int receive() throws IOException
+    {
+        if( channel.read( in ) < 0 )
+            throw new EOFException( "the server closed the connection" );
+
+        in.flip();
+
+        int applied = 0;
+        int needed = 0;
+
+        while( in.hasRemaining() )
+        {
+            int start = in.position();
+            byte type = in.get( start );
+
+            if( type == ServerProtocol.STEP )
+            {
+                if( in.remaining() < 2 || in.remaining() < 1 + SimulationDelta.getSize( in.get( start + 1 ) ) )
+                    break;
+
+                in.get();
+                SimulationDelta.apply( in, simulation );
+            }
+            else if( type == ServerProtocol.FULL_STATE )
+            {
+                if( in.remaining() < ServerProtocol.FULL_STATE_HEADER_SIZE )
+                    break;
+
+                int length = in.getInt( start + 1 );
+                needed = ServerProtocol.FULL_STATE_HEADER_SIZE + length;
+
+                if( in.remaining() < needed )
+                    break;
+
+                in.position( start + ServerProtocol.FULL_STATE_HEADER_SIZE );
+
+                stepTicks = in.getInt();
+                simulation = Simulation.restoreState( in );
+
+                in.position( start + needed );
+            }
+            else
+                throw new IOException( "unknown message from the server: " + type );
+
+            applied++;
+        }
+
+        in.compact();
+
+        // a full state of a large board may not fit yet
+        if( needed > in.capacity() )
+        {
+            ByteBuffer larger = ByteBuffer.allocate( needed );
+            in.flip();
+            larger.put( in );
+            in = larger;
+        }
+
+        return applied;
+    }
+
+    /**
+     * Asks the server to turn the snake, which it only does for the player controlling it.
+     */
+    public void sendTurn( int direction ) throws IOException
+    {
+        send( ServerProtocol.TURN, ( byte ) direction );
+    }
+
+    private void send( byte type, byte value ) throws IOException
+    {
+        out.clear();
+        out.put( type );
+        out.put( value );
+        out.flip();
+
+        // two bytes always fit into the socket buffer unless the server stopped reading
+        while( out.hasRemaining() )
+            channel.write( out );
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+}
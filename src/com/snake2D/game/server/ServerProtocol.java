@@ -0,0 +1,35 @@
+package com.snake2D.game.server;
+
+/**
+ * Messages between the game server and its clients, each starting with its type byte.
+ *
+ * Server to client:
+ * FULL_STATE, int length, int ticks per step, the state saved by Simulation.saveState(),
+ * sent on joining and for every new game;
+ * STEP, a SimulationDelta, sent for every step.
+ *
+ * Client to server:
+ * HELLO, byte PLAY or SPECTATE, sent once after connecting;
+ * TURN, byte direction, only taken from the player controlling the snake.
+ */
+final class ServerProtocol
+{
+    static final byte FULL_STATE = 1;
+    static final byte STEP = 2;
+
+    static final byte HELLO = 3;
+    static final byte TURN = 4;
+
+    static final byte SPECTATE = 0;
+    static final byte PLAY = 1;
+
+    // size of the messages sent by clients
+    static final int CLIENT_MESSAGE_SIZE = 2;
+
+    // type and length in front of a full state
+    static final int FULL_STATE_HEADER_SIZE = 5;
+
+    private ServerProtocol()
+    {
+    }
+}
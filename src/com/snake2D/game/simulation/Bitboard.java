@@ -0,0 +1,57 @@
+package com.snake2D.game.simulation;
+
+/**
+ * One bit per tile, packed into longs in row-major order.
+ */
+public class Bitboard
+{
+    private final long[] words;
+
+    public Bitboard( int cellCount )
+    {
+        words = new long[ ( cellCount + 63 ) >>> 6 ];
+    }
+
+    public int getWordCount()
+    {
+        return words.length;
+    }
+
+    /**
+     * Returns the bits of the tiles 64 * index to 64 * index + 63, the first one in the lowest bit.
+     */
+    public long getWord( int index )
+    {
+        return words[ index ];
+    }
+
+    public boolean get( int cell )
+    {
+        // the shift distance of a long is taken modulo 64 anyway
+        return ( words[ cell >>> 6 ] & ( 1L << cell ) ) != 0;
+    }
+
+    public void set( int cell )
+    {
+        words[ cell >>> 6 ] |= 1L << cell;
+    }
+
+    public void clear( int cell )
+    {
+        words[ cell >>> 6 ] &= ~( 1L << cell );
+    }
+
+    public void clear()
+    {
+        for( int i = 0; i < words.length; i++ )
+            words[ i ] = 0;
+    }
+
+    /**
+     * Makes this board equal to the other one, which has to be of the same size.
+     */
+    public void copyFrom( Bitboard other )
+    {
+        System.arraycopy( other.words, 0, words, 0, words.length );
+    }
+}
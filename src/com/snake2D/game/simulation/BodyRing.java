@@ -0,0 +1,118 @@
+package com.snake2D.game.simulation;
+
+/**
+ * Ring buffer of the tiles covered by the snake, ordered from head to tail.
+ * Adding a new head, removing the tail and indexed access are constant time.
+ */
+public class BodyRing
+{
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] elements;
+    private int mask;
+
+    // slot of the head element
+    private int head = 0;
+
+    private int size = 0;
+
+    public BodyRing()
+    {
+        this( INITIAL_CAPACITY );
+    }
+
+    public BodyRing( int capacity )
+    {
+        // the capacity is kept at a power of two so that wrapping is a simple mask
+        int powerOfTwo = INITIAL_CAPACITY;
+        while( powerOfTwo < capacity )
+            powerOfTwo <<= 1;
+
+        elements = new int[ powerOfTwo ];
+        mask = powerOfTwo - 1;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public void clear()
+    {
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Returns the element at the given position, 0 is the head.
+     */
+    public int get( int index )
+    {
+        return elements[ ( head + index ) & mask ];
+    }
+
+    public int getFirst()
+    {
+        return elements[ head ];
+    }
+
+    public int getLast()
+    {
+        return elements[ ( head + size - 1 ) & mask ];
+    }
+
+    public void addFirst( int element )
+    {
+        if( size == elements.length )
+            grow();
+
+        head = ( head - 1 ) & mask;
+        elements[ head ] = element;
+        size++;
+    }
+
+    public int removeLast()
+    {
+        size--;
+        return elements[ ( head + size ) & mask ];
+    }
+
+    /**
+     * Makes this ring equal to the other one.
+     * Only the covered slots are copied, it allocates only if the other ring has grown larger.
+     */
+    public void copyFrom( BodyRing other )
+    {
+        if( elements.length != other.elements.length )
+        {
+            elements = new int[ other.elements.length ];
+            mask = elements.length - 1;
+        }
+
+        head = other.head;
+        size = other.size;
+
+        // the covered slots wrap around the end of the array at most once
+        int firstPart = Math.min( size, elements.length - head );
+        System.arraycopy( other.elements, head, elements, head, firstPart );
+        System.arraycopy( other.elements, 0, elements, 0, size - firstPart );
+    }
+
+    private void grow()
+    {
+        int[] grown = new int[ elements.length << 1 ];
+
+        // unroll the ring so that the head starts at slot 0 again
+        for( int i = 0; i < size; i++ )
+            grown[ i ] = get( i );
+
+        elements = grown;
+        mask = grown.length - 1;
+        head = 0;
+    }
+}
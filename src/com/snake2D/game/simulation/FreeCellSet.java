@@ -0,0 +1,152 @@
+package com.snake2D.game.simulation;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Set of the tiles which are not covered by the snake.
+ * The tiles are kept densely packed in one array and a second array remembers
+ * the position of every tile, so adding, removing (by swapping with the last
+ * entry) and picking the n-th free tile are constant time and allocation free.
+ *
+ * The order of the tiles depends on the order they were added and removed in,
+ * so it has to be saved along with the board for the same tiles to be picked
+ * after restoring it.
+ */
+public class FreeCellSet
+{
+    private static final int NOT_CONTAINED = -1;
+
+    private final int[] cells;
+    private final int[] positions;
+
+    private int size;
+
+    /**
+     * Creates a set which initially contains every tile of the board.
+     */
+    public FreeCellSet( int cellCount )
+    {
+        cells = new int[ cellCount ];
+        positions = new int[ cellCount ];
+
+        for( int cell = 0; cell < cellCount; cell++ )
+        {
+            cells[ cell ] = cell;
+            positions[ cell ] = cell;
+        }
+
+        size = cellCount;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean contains( int cell )
+    {
+        return positions[ cell ] != NOT_CONTAINED;
+    }
+
+    /**
+     * Returns the n-th free tile, n has to be smaller than size().
+     */
+    public int get( int index )
+    {
+        return cells[ index ];
+    }
+
+    public void add( int cell )
+    {
+        if( positions[ cell ] != NOT_CONTAINED )
+            return;
+
+        cells[ size ] = cell;
+        positions[ cell ] = size;
+        size++;
+    }
+
+    public void remove( int cell )
+    {
+        int position = positions[ cell ];
+        if( position == NOT_CONTAINED )
+            return;
+
+        // move the last entry into the gap
+        size--;
+        int last = cells[ size ];
+        cells[ position ] = last;
+        positions[ last ] = position;
+
+        positions[ cell ] = NOT_CONTAINED;
+    }
+
+    /**
+     * Takes over the tiles and their order from the other set, which has to be of the same size.
+     */
+    public void copyFrom( FreeCellSet other )
+    {
+        System.arraycopy( other.cells, 0, cells, 0, other.size );
+        System.arraycopy( other.positions, 0, positions, 0, positions.length );
+        size = other.size;
+    }
+
+    /**
+     * Contains exactly the clear tiles of the board afterwards, in ascending order.
+     */
+    public void reset( Bitboard occupied )
+    {
+        size = 0;
+
+        for( int cell = 0; cell < positions.length; cell++ )
+        {
+            if( occupied.get( cell ) )
+                positions[ cell ] = NOT_CONTAINED;
+            else
+            {
+                cells[ size ] = cell;
+                positions[ cell ] = size;
+                size++;
+            }
+        }
+    }
+
+    /**
+     * Returns the most bytes save() writes for a board with the given number of tiles.
+     */
+    public static int getMaxSaveSize( int cellCount )
+    {
+        return 4 * cellCount;
+    }
+
+    /**
+     * Writes the tiles in their order to the buffer, starting at its position.
+     */
+    public void save( ByteBuffer buffer )
+    {
+        for( int i = 0; i < size; i++ )
+            buffer.putInt( cells[ i ] );
+    }
+
+    /**
+     * Reads the order written by save(), which has to hold exactly the clear tiles of the board.
+     */
+    public void restore( ByteBuffer buffer, Bitboard occupied, int count )
+    {
+        for( int cell = 0; cell < positions.length; cell++ )
+            positions[ cell ] = NOT_CONTAINED;
+
+        for( int i = 0; i < count; i++ )
+        {
+            int cell = buffer.getInt();
+
+            if( cell < 0 || cell >= positions.length || occupied.get( cell ) || positions[ cell ] != NOT_CONTAINED )
+                throw new IllegalArgumentException( "invalid free tile: " + cell );
+
+            cells[ i ] = cell;
+            positions[ cell ] = i;
+        }
+
+        size = count;
+    }
+}
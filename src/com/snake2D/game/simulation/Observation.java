@@ -0,0 +1,126 @@
+package com.snake2D.game.simulation;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes the board as bit planes, for bots and other programs looking at
+ * the game. A plane has one bit per tile, packed into longs in row-major
+ * order with the first tile in the lowest bit, so a little endian buffer
+ * holds the tiles bit by bit from the first byte on. The planes are taken
+ * straight from the bitboards of the simulation, word by word.
+ *
+ * An observation starts with a header of HEADER_SIZE bytes: tiles x and y,
+ * head tile, food tile, body length (ints), move direction and game over (bytes).
+ * The planes follow in the order OCCUPIED, HEAD, FOOD, DIRECTION_LOW and
+ * DIRECTION_HIGH. The two direction planes give the direction every segment
+ * moves in next, the head the one it moves in, and are 0 on free tiles.
+ */
+public class Observation
+{
+    public static final int HEADER_SIZE = 24;
+
+    public static final int OCCUPIED = 0;
+    public static final int HEAD = 1;
+    public static final int FOOD = 2;
+    public static final int DIRECTION_LOW = 3;
+    public static final int DIRECTION_HIGH = 4;
+
+    public static final int PLANE_COUNT = 5;
+
+    /**
+     * Returns the bytes of a plane of a board with the given number of tiles.
+     */
+    public static int getPlaneSize( int cellCount )
+    {
+        return ( ( cellCount + 63 ) >>> 6 ) * 8;
+    }
+
+    /**
+     * Returns the bytes of an observation of a board of the given size.
+     */
+    public static int getSize( int tilesX, int tilesY )
+    {
+        return HEADER_SIZE + PLANE_COUNT * getPlaneSize( tilesX * tilesY );
+    }
+
+    /**
+     * Returns the offset of the given plane from the start of an observation.
+     */
+    public static int getPlaneOffset( int plane, int tilesX, int tilesY )
+    {
+        return HEADER_SIZE + plane * getPlaneSize( tilesX * tilesY );
+    }
+
+    /**
+     * Writes the observation at the given offset of the buffer, in the byte order of the buffer,
+     * without touching its position. A direct buffer is written without any copy in between.
+     */
+    public static void write( Simulation simulation, ByteBuffer buffer, int offset )
+    {
+        int tilesX = simulation.getTilesX();
+        int tilesY = simulation.getTilesY();
+
+        int head = simulation.getElement( simulation.getHeadX(), simulation.getHeadY() );
+        int food = simulation.getElement( simulation.getFoodX(), simulation.getFoodY() );
+        int moveDirection = simulation.getMoveDirection();
+
+        buffer.putInt( offset, tilesX );
+        buffer.putInt( offset + 4, tilesY );
+        buffer.putInt( offset + 8, head );
+        buffer.putInt( offset + 12, food );
+        buffer.putInt( offset + 16, simulation.getBodyLength() );
+        buffer.put( offset + 20, ( byte ) moveDirection );
+        buffer.put( offset + 21, ( byte ) ( simulation.isGameOver() ? 1 : 0 ) );
+        buffer.putShort( offset + 22, ( short ) 0 );
+
+        Bitboard occupied = simulation.getOccupied();
+        Bitboard directionLow = simulation.getDirectionLow();
+        Bitboard directionHigh = simulation.getDirectionHigh();
+
+        int planeSize = getPlaneSize( tilesX * tilesY );
+
+        // head and food are a single bit each, and their words the only ones not 0
+        int headWord = head >>> 6;
+        int foodWord = food >>> 6;
+
+        // the directions of the head are the ones it moves in, not what its tile held before
+        long headLow = ( moveDirection & 1 ) != 0 ? 1L << head : 0;
+        long headHigh = ( moveDirection & 2 ) != 0 ? 1L << head : 0;
+
+        int position = offset + HEADER_SIZE;
+
+        for( int word = 0; word < occupied.getWordCount(); word++, position += 8 )
+        {
+            long occupiedWord = occupied.getWord( word );
+
+            // the directions are left behind on the tiles the tail has vacated
+            long low = directionLow.getWord( word ) & occupiedWord;
+            long high = directionHigh.getWord( word ) & occupiedWord;
+
+            if( word == headWord )
+            {
+                low = ( low & ~( 1L << head ) ) | headLow;
+                high = ( high & ~( 1L << head ) ) | headHigh;
+            }
+
+            buffer.putLong( position + OCCUPIED * planeSize, occupiedWord );
+            buffer.putLong( position + HEAD * planeSize, word == headWord ? 1L << head : 0 );
+            buffer.putLong( position + FOOD * planeSize, word == foodWord ? 1L << food : 0 );
+            buffer.putLong( position + DIRECTION_LOW * planeSize, low );
+            buffer.putLong( position + DIRECTION_HIGH * planeSize, high );
+        }
+    }
+
+    /**
+     * Returns whether the tile is set in the given plane of an observation written at the given offset.
+     */
+    public static boolean isSet( ByteBuffer buffer, int offset, int plane, int element )
+    {
+        int tilesX = buffer.getInt( offset );
+        int tilesY = buffer.getInt( offset + 4 );
+
+        long word = buffer.getLong( offset + getPlaneOffset( plane, tilesX, tilesY ) + ( element >>> 6 ) * 8 );
+
+        return ( word & ( 1L << element ) ) != 0;
+    }
+}
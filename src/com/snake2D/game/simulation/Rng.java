@@ -0,0 +1,71 @@
+package com.snake2D.game.simulation;
+
+/**
+ * The linear congruential generator of java.util.Random, producing exactly
+ * the same numbers for the same seed. Its state can be read and set again,
+ * so a saved game continues with the same food, and it isn't synchronized.
+ */
+public class Rng
+{
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = ( 1L << 48 ) - 1;
+
+    private long state;
+
+    public Rng( long seed )
+    {
+        setSeed( seed );
+    }
+
+    /**
+     * Starts over as if just created with the given seed.
+     */
+    public void setSeed( long seed )
+    {
+        state = ( seed ^ MULTIPLIER ) & MASK;
+    }
+
+    public long getState()
+    {
+        return state;
+    }
+
+    public void setState( long state )
+    {
+        this.state = state & MASK;
+    }
+
+    private int next( int bits )
+    {
+        state = ( state * MULTIPLIER + ADDEND ) & MASK;
+
+        return ( int ) ( state >>> ( 48 - bits ) );
+    }
+
+    /**
+     * Returns a number from 0 to bound - 1 like java.util.Random.nextInt(bound).
+     */
+    public int nextInt( int bound )
+    {
+        if( bound <= 0 )
+            throw new IllegalArgumentException( "bound has to be positive: " + bound );
+
+        int bits = next( 31 );
+        int mask = bound - 1;
+
+        // powers of two take the highest bits
+        if( ( bound & mask ) == 0 )
+            return ( int ) ( ( bound * ( long ) bits ) >> 31 );
+
+        // skip the values which would make the lower numbers more likely
+        int value = bits % bound;
+        while( bits - value + mask < 0 )
+        {
+            bits = next( 31 );
+            value = bits % bound;
+        }
+
+        return value;
+    }
+}
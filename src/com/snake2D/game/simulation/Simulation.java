@@ -0,0 +1,627 @@
+package com.snake2D.game.simulation;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Headless game rules of Snake.
+ * The simulation knows nothing about windows, keyboards or clocks:
+ * every call of step() moves the snake exactly one tile.
+ */
+public class Simulation
+{
+    public static final int NONE = -1;
+    public static final int UP = 0;
+    public static final int DOWN = 1;
+    public static final int LEFT = 2;
+    public static final int RIGHT = 3;
+
+    // bytes of a saved state in front of the directions of the segments
+    private static final int STATE_HEADER_SIZE = 35;
+
+    private final int tilesX;
+    private final int tilesY;
+    private final int cellCount;
+
+    // tiles covered by the snake
+    private final Bitboard occupied;
+
+    // two bit planes with the direction every segment moves in next
+    private final Bitboard directionLow;
+    private final Bitboard directionHigh;
+
+    // tiles of the snake from head to tail
+    private final BodyRing body = new BodyRing();
+
+    // tiles which are not covered by the snake
+    private final FreeCellSet freeCells;
+
+    private int inputDirection = DOWN;
+    private int moveDirection = DOWN;
+
+    private int headX;
+    private int headY;
+
+    private int foodX;
+    private int foodY;
+
+    private int bodyLength = 1;
+
+    private boolean gameOver = false;
+
+    private final Rng random;
+
+    public Simulation( int tilesX, int tilesY, long seed )
+    {
+        this( tilesX, tilesY, new Rng( seed ) );
+
+        headX = random.nextInt( tilesX - 1 ) + 1;
+        headY = random.nextInt( tilesY - 1 ) + 1;
+
+        occupy( getElement( headX, headY ) );
+
+        generateFood();
+    }
+
+    /**
+     * Creates an empty board.
+     */
+    private Simulation( int tilesX, int tilesY, Rng random )
+    {
+        if( tilesX < 2 || tilesY < 2 )
+            throw new IllegalArgumentException( "board has to be at least 2x2 tiles: " + tilesX + "x" + tilesY );
+
+        this.tilesX = tilesX;
+        this.tilesY = tilesY;
+
+        cellCount = tilesX * tilesY;
+
+        occupied = new Bitboard( cellCount );
+        directionLow = new Bitboard( cellCount );
+        directionHigh = new Bitboard( cellCount );
+
+        freeCells = new FreeCellSet( cellCount );
+
+        this.random = random;
+    }
+
+    /**
+     * Returns the most bytes saveState() writes for a board of the given size.
+     */
+    public static int getMaxStateSize( int tilesX, int tilesY )
+    {
+        return STATE_HEADER_SIZE + ( tilesX * tilesY + 3 ) / 4;
+    }
+
+    /**
+     * Writes the whole state to the buffer, starting at its position.
+     * The snake is saved as its tail and the direction of every segment,
+     * two bits each, so the state stays small even on large boards.
+     */
+    public void saveState( ByteBuffer buffer )
+    {
+        buffer.putInt( tilesX );
+        buffer.putInt( tilesY );
+        buffer.putLong( random.getState() );
+        buffer.putInt( getElement( foodX, foodY ) );
+        buffer.put( ( byte ) inputDirection );
+        buffer.put( ( byte ) moveDirection );
+        buffer.put( ( byte ) ( gameOver ? 1 : 0 ) );
+        buffer.putInt( bodyLength );
+        buffer.putInt( body.size() );
+        buffer.putInt( body.getLast() );
+
+        // from the tail towards the head, four segments per byte
+        int packed = 0;
+        int bits = 0;
+
+        for( int i = body.size() - 1; i > 0; i-- )
+        {
+            packed |= getSegmentDirection( body.get( i ) ) << bits;
+            bits += 2;
+
+            if( bits == 8 )
+            {
+                buffer.put( ( byte ) packed );
+                packed = 0;
+                bits = 0;
+            }
+        }
+
+        if( bits > 0 )
+            buffer.put( ( byte ) packed );
+    }
+
+    /**
+     * Returns the most bytes saveFreeCellOrder() writes for a board of the given size.
+     */
+    public static int getMaxFreeCellOrderSize( int tilesX, int tilesY )
+    {
+        return FreeCellSet.getMaxSaveSize( tilesX * tilesY );
+    }
+
+    /**
+     * Writes the order the free tiles are picked from for the food, starting at the position of the buffer.
+     * saveState() leaves it out to stay small, it is only needed to continue with the same food after restoring.
+     */
+    public void saveFreeCellOrder( ByteBuffer buffer )
+    {
+        freeCells.save( buffer );
+    }
+
+    /**
+     * Reads the order written by saveFreeCellOrder() of the simulation this one was restored from.
+     */
+    public void restoreFreeCellOrder( ByteBuffer buffer )
+    {
+        freeCells.restore( buffer, occupied, cellCount - body.size() );
+    }
+
+    /**
+     * Rebuilds a simulation from a state written by saveState(), starting at the position of the buffer.
+     * The free tiles are put in the order of the board, so restoring a state always continues the
+     * same way. It continues exactly like the saved one would have once restoreFreeCellOrder() is
+     * given the order of the saved one as well.
+     */
+    public static Simulation restoreState( ByteBuffer buffer )
+    {
+        int tilesX = buffer.getInt();
+        int tilesY = buffer.getInt();
+
+        Simulation simulation = new Simulation( tilesX, tilesY, new Rng( 0 ) );
+
+        simulation.random.setState( buffer.getLong() );
+
+        int food = buffer.getInt();
+        simulation.inputDirection = buffer.get();
+        simulation.moveDirection = buffer.get();
+        simulation.gameOver = buffer.get() != 0;
+        simulation.bodyLength = buffer.getInt();
+
+        int segmentCount = buffer.getInt();
+        if( segmentCount < 1 || segmentCount > simulation.cellCount )
+            throw new IllegalArgumentException( "invalid number of segments: " + segmentCount );
+
+        // walk from the tail to the head
+        int element = buffer.getInt();
+        simulation.occupy( element );
+
+        int packed = 0;
+        for( int i = 1; i < segmentCount; i++ )
+        {
+            if( ( ( i - 1 ) & 3 ) == 0 )
+                packed = buffer.get() & 0xFF;
+
+            int direction = packed & 3;
+            packed >>>= 2;
+
+            simulation.setSegmentDirection( element, direction );
+
+            element = simulation.getNeighbour( element, direction );
+            simulation.occupy( element );
+        }
+
+        simulation.headX = simulation.getElementX( element );
+        simulation.headY = simulation.getElementY( element );
+
+        simulation.freeCells.reset( simulation.occupied );
+
+        simulation.setFood( food );
+
+        return simulation;
+    }
+
+    /**
+     * Makes this simulation equal to the other one, which has to be of the same board size.
+     * Unlike saveState() it copies the arrays as they are, so it takes microseconds
+     * and allocates nothing, e.g. to keep snapshots in memory.
+     */
+    public void copyFrom( Simulation other )
+    {
+        if( other.tilesX != tilesX || other.tilesY != tilesY )
+            throw new IllegalArgumentException( "board size differs: " + other.tilesX + "x" + other.tilesY
+                    + " instead of " + tilesX + "x" + tilesY );
+
+        occupied.copyFrom( other.occupied );
+        directionLow.copyFrom( other.directionLow );
+        directionHigh.copyFrom( other.directionHigh );
+        body.copyFrom( other.body );
+        freeCells.copyFrom( other.freeCells );
+
+        inputDirection = other.inputDirection;
+        moveDirection = other.moveDirection;
+        headX = other.headX;
+        headY = other.headY;
+        foodX = other.foodX;
+        foodY = other.foodY;
+        bodyLength = other.bodyLength;
+        gameOver = other.gameOver;
+
+        random.setState( other.random.getState() );
+    }
+
+    /**
+     * Places the following food with another seed, e.g. for a bot trying out futures without knowing where the food will be.
+     */
+    public void setSeed( long seed )
+    {
+        random.setSeed( seed );
+    }
+
+    public int getTilesX()
+    {
+        return tilesX;
+    }
+
+    public int getTilesY()
+    {
+        return tilesY;
+    }
+
+    public int getHeadX()
+    {
+        return headX;
+    }
+
+    public int getHeadY()
+    {
+        return headY;
+    }
+
+    public int getFoodX()
+    {
+        return foodX;
+    }
+
+    public int getFoodY()
+    {
+        return foodY;
+    }
+
+    public int getBodyLength()
+    {
+        return bodyLength;
+    }
+
+    /**
+     * Returns the number of tiles currently covered by the snake.
+     */
+    public int getSegmentCount()
+    {
+        return body.size();
+    }
+
+    /**
+     * Returns the tile of the given segment, 0 is the head.
+     */
+    public int getSegment( int index )
+    {
+        return body.get( index );
+    }
+
+    public int getMoveDirection()
+    {
+        return moveDirection;
+    }
+
+    public boolean isGameOver()
+    {
+        return gameOver;
+    }
+
+    public static boolean isOpposite( int direction, int otherDirection )
+    {
+        return ( direction == UP && otherDirection == DOWN )
+                || ( direction == DOWN && otherDirection == UP )
+                || ( direction == LEFT && otherDirection == RIGHT )
+                || ( direction == RIGHT && otherDirection == LEFT );
+    }
+
+    public int getElement( int elementX, int elementY )
+    {
+        return elementY * tilesX + elementX;
+    }
+
+    public int getElementX( int element )
+    {
+        return element % tilesX;
+    }
+
+    public int getElementY( int element )
+    {
+        return element / tilesX;
+    }
+
+    public boolean isOccupied( int element )
+    {
+        return occupied.get( element );
+    }
+
+    /**
+     * Returns the direction the segment on the given tile moves in next,
+     * which is the direction towards the segment in front of it.
+     */
+    public int getSegmentDirection( int element )
+    {
+        if( element == getElement( headX, headY ) )
+            return moveDirection;
+
+        return ( directionHigh.get( element ) ? 2 : 0 ) | ( directionLow.get( element ) ? 1 : 0 );
+    }
+
+    Bitboard getOccupied()
+    {
+        return occupied;
+    }
+
+    /**
+     * Returns the lower bits of the segment directions, only valid on occupied tiles but the head.
+     */
+    Bitboard getDirectionLow()
+    {
+        return directionLow;
+    }
+
+    Bitboard getDirectionHigh()
+    {
+        return directionHigh;
+    }
+
+    private void setSegmentDirection( int element, int direction )
+    {
+        if( ( direction & 1 ) != 0 )
+            directionLow.set( element );
+        else
+            directionLow.clear( element );
+
+        if( ( direction & 2 ) != 0 )
+            directionHigh.set( element );
+        else
+            directionHigh.clear( element );
+    }
+
+    private void occupy( int element )
+    {
+        occupied.set( element );
+        body.addFirst( element );
+
+        freeCells.remove( element );
+    }
+
+    private void vacate( int element )
+    {
+        occupied.clear( element );
+
+        freeCells.add( element );
+    }
+
+    /**
+     * Returns the tile next to the given one in the given direction, across the border if need be.
+     */
+    public int getNeighbour( int element, int direction )
+    {
+        return getNeighbour( element, direction, tilesX, tilesY );
+    }
+
+    /**
+     * Returns the tile next to the given one on a board of the given size, for code without a simulation at hand.
+     */
+    public static int getNeighbour( int element, int direction, int tilesX, int tilesY )
+    {
+        int x = element % tilesX;
+        int y = element / tilesX;
+
+        if( direction == UP )
+            y = y == 0 ? tilesY - 1 : y - 1;
+        else if( direction == DOWN )
+            y = y == tilesY - 1 ? 0 : y + 1;
+        else if( direction == LEFT )
+            x = x == 0 ? tilesX - 1 : x - 1;
+        else
+            x = x == tilesX - 1 ? 0 : x + 1;
+
+        return y * tilesX + x;
+    }
+
+    /**
+     * Moves the snake one tile.
+     * The given direction becomes the direction of the following move,
+     * reversing into the own body and NONE keep the current one.
+     */
+    public void step( int direction )
+    {
+        if( gameOver )
+            return;
+
+        if( direction >= UP && direction <= RIGHT && !isOpposite( direction, moveDirection ) )
+            inputDirection = direction;
+
+        updateBody();
+        updateHead();
+    }
+
+    /**
+     * Replaces the snake, e.g. to set up a board of a certain fill ratio.
+     * The segments are given from head to tail and have to be adjacent.
+     */
+    void setSnake( int[] segments, int count, int direction )
+    {
+        while( !body.isEmpty() )
+            vacate( body.removeLast() );
+
+        for( int i = count - 1; i >= 0; i-- )
+        {
+            occupy( segments[ i ] );
+
+            // every segment but the head moves towards the one in front of it
+            if( i > 0 )
+                setSegmentDirection( segments[ i ], getDirection( segments[ i ], segments[ i - 1 ] ) );
+        }
+
+        headX = getElementX( segments[ 0 ] );
+        headY = getElementY( segments[ 0 ] );
+
+        inputDirection = direction;
+        moveDirection = direction;
+
+        bodyLength = count;
+        gameOver = false;
+
+        generateFood();
+    }
+
+    /**
+     * Moves the food to the given tile, which has to be free.
+     */
+    void setFood( int element )
+    {
+        foodX = getElementX( element );
+        foodY = getElementY( element );
+    }
+
+    /**
+     * Removes the last segment, for a copy following the steps of another simulation.
+     */
+    void removeTail()
+    {
+        vacate( body.removeLast() );
+    }
+
+    /**
+     * Moves the head onto the given adjacent tile without growing or checking anything,
+     * for a copy following the steps of another simulation.
+     */
+    void addHead( int element )
+    {
+        int head = getElement( headX, headY );
+
+        setSegmentDirection( head, getDirection( head, element ) );
+        occupy( element );
+
+        headX = getElementX( element );
+        headY = getElementY( element );
+    }
+
+    /**
+     * Takes over the state besides the tiles, for a copy following the steps of another simulation.
+     */
+    void setStatus( int moveDirection, int bodyLength, boolean gameOver )
+    {
+        this.inputDirection = moveDirection;
+        this.moveDirection = moveDirection;
+        this.bodyLength = bodyLength;
+        this.gameOver = gameOver;
+    }
+
+    /**
+     * Returns the direction leading from one tile to the adjacent other one.
+     */
+    int getDirection( int element, int otherElement )
+    {
+        int deltaX = getElementX( otherElement ) - getElementX( element );
+        int deltaY = getElementY( otherElement ) - getElementY( element );
+
+        // a step across the border looks like a jump to the other side
+        if( deltaX == 1 || deltaX == 1 - tilesX )
+            return RIGHT;
+        else if( deltaX == -1 || deltaX == tilesX - 1 )
+            return LEFT;
+        else if( deltaY == 1 || deltaY == 1 - tilesY )
+            return DOWN;
+        else
+            return UP;
+    }
+
+    private void updateBody()
+    {
+        // remove the last tile from the snake
+        vacate( body.removeLast() );
+    }
+
+    private void updateHead()
+    {
+        // coordinates for next head position
+        int newHeadX = headX;
+        int newHeadY = headY;
+
+        // the direction of this move
+        int direction = moveDirection;
+
+        // evaluate move direction and change position accordingly
+        if( moveDirection == UP )
+            newHeadY--;
+        else if( moveDirection == DOWN )
+            newHeadY++;
+        else if( moveDirection == LEFT )
+            newHeadX--;
+        else if( moveDirection == RIGHT )
+            newHeadX++;
+        else
+            ;
+
+        // update move direction
+        moveDirection = inputDirection;
+
+        // check out of bounds x
+        if( newHeadX >= tilesX )
+            newHeadX = 0;
+        else if( newHeadX < 0 )
+            newHeadX = tilesX - 1;
+        else
+            ;
+
+        // check out of bounds y
+        if( newHeadY >= tilesY )
+            newHeadY = 0;
+        else if( newHeadY < 0 )
+            newHeadY = tilesY - 1;
+        else
+            ;
+
+        int newHead = getElement( newHeadX, newHeadY );
+
+        // check collision with existing tile
+        if( occupied.get( newHead ) )
+        {
+            gameOver = true;
+            return;
+        }
+
+        // move head, the old head now follows it
+        setSegmentDirection( getElement( headX, headY ), direction );
+        occupy( newHead );
+
+        // update stored head coordinates
+        headX = newHeadX;
+        headY = newHeadY;
+
+        // if we collected food ...
+        if( headX == foodX && headY == foodY )
+        {
+            // the board is full, nothing left to win
+            if( body.size() == cellCount )
+            {
+                gameOver = true;
+                return;
+            }
+
+            // generate new food
+            generateFood();
+
+            // increase body length
+            bodyLength++;
+
+            // update the head one more time
+            updateHead();
+        }
+    }
+
+    void generateFood()
+    {
+        // pick a random tile which is not covered by the snake
+        int element = freeCells.get( random.nextInt( freeCells.size() ) );
+
+        // update food tile
+        foodX = getElementX( element );
+        foodY = getElementY( element );
+    }
+}
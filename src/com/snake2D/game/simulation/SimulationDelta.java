@@ -0,0 +1,137 @@
+package com.snake2D.game.simulation;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes what a step changed instead of the whole board, so a copy of the
+ * simulation elsewhere can follow it: the heads added, the tails removed,
+ * where the food moved to, the move direction, the score and game over.
+ *
+ * A delta is two bytes, six if the food moved:
+ * header (heads added, tails removed, scored, food moved, game over),
+ * directions (move direction, then the direction of every new head) and the food tile.
+ */
+public class SimulationDelta
+{
+    public static final int MAX_SIZE = 6;
+
+    private static final int HEADS_MASK = 0x03;
+    private static final int TAILS_SHIFT = 2;
+    private static final int TAILS_MASK = 0x03;
+    private static final int SCORED = 0x10;
+    private static final int FOOD_MOVED = 0x20;
+    private static final int GAME_OVER = 0x40;
+
+    // the state written last
+    private int head;
+    private int segmentCount;
+    private int bodyLength;
+    private int food;
+
+    /**
+     * Takes the current state of the simulation as the one the next delta starts from,
+     * e.g. after the whole state was sent.
+     */
+    public void reset( Simulation simulation )
+    {
+        head = simulation.getElement( simulation.getHeadX(), simulation.getHeadY() );
+        segmentCount = simulation.getSegmentCount();
+        bodyLength = simulation.getBodyLength();
+        food = simulation.getElement( simulation.getFoodX(), simulation.getFoodY() );
+    }
+
+    /**
+     * Writes what changed since the last delta or reset().
+     *
+     * @return false if the change is more than a step, then nothing is written and the whole state has to be sent
+     */
+    public boolean write( Simulation simulation, ByteBuffer buffer )
+    {
+        // the old head is at most two segments behind the new one, one step moves twice when eating
+        int headsAdded = -1;
+        for( int i = 0; i <= 2 && i < simulation.getSegmentCount(); i++ )
+        {
+            if( simulation.getSegment( i ) == head )
+            {
+                headsAdded = i;
+                break;
+            }
+        }
+
+        // a snake of a single tile moved its old head away as the tail
+        if( headsAdded < 0 && segmentCount == 1 && simulation.getSegmentCount() <= 2 && simulation.getSegment( 0 ) != head )
+            headsAdded = simulation.getSegmentCount();
+
+        int tailsRemoved = segmentCount + headsAdded - simulation.getSegmentCount();
+
+        if( headsAdded < 0 || tailsRemoved < 0 || tailsRemoved > TAILS_MASK
+                || simulation.getBodyLength() - bodyLength > 1 || simulation.getBodyLength() < bodyLength )
+        {
+            reset( simulation );
+            return false;
+        }
+
+        int directions = simulation.getMoveDirection();
+
+        int from = head;
+        for( int i = headsAdded - 1, shift = 2; i >= 0; i--, shift += 2 )
+        {
+            int to = simulation.getSegment( i );
+            directions |= simulation.getDirection( from, to ) << shift;
+            from = to;
+        }
+
+        int newFood = simulation.getElement( simulation.getFoodX(), simulation.getFoodY() );
+
+        int header = headsAdded | tailsRemoved << TAILS_SHIFT;
+        if( simulation.getBodyLength() > bodyLength )
+            header |= SCORED;
+        if( newFood != food )
+            header |= FOOD_MOVED;
+        if( simulation.isGameOver() )
+            header |= GAME_OVER;
+
+        buffer.put( ( byte ) header );
+        buffer.put( ( byte ) directions );
+
+        if( newFood != food )
+            buffer.putInt( newFood );
+
+        reset( simulation );
+        return true;
+    }
+
+    /**
+     * Returns the size of the delta starting with the given header byte.
+     */
+    public static int getSize( byte header )
+    {
+        return ( header & FOOD_MOVED ) != 0 ? 6 : 2;
+    }
+
+    /**
+     * Applies a delta written by write() to a copy of the simulation it was written for.
+     */
+    public static void apply( ByteBuffer buffer, Simulation simulation )
+    {
+        int header = buffer.get();
+        int directions = buffer.get();
+
+        for( int i = ( header >> TAILS_SHIFT ) & TAILS_MASK; i > 0; i-- )
+            simulation.removeTail();
+
+        int head = simulation.getElement( simulation.getHeadX(), simulation.getHeadY() );
+
+        for( int i = 0, shift = 2; i < ( header & HEADS_MASK ); i++, shift += 2 )
+        {
+            head = simulation.getNeighbour( head, ( directions >> shift ) & 3 );
+            simulation.addHead( head );
+        }
+
+        if( ( header & FOOD_MOVED ) != 0 )
+            simulation.setFood( buffer.getInt() );
+
+        simulation.setStatus( directions & 3, simulation.getBodyLength() + ( ( header & SCORED ) != 0 ? 1 : 0 ),
+                ( header & GAME_OVER ) != 0 );
+    }
+}
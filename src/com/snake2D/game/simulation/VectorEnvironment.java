@@ -0,0 +1,364 @@
+package com.snake2D.game.simulation;
+
+/**
+ * Many boards of the same size stepped together, for training agents.
+ * The rules are exactly the ones of Simulation, a board started with the
+ * same seed and given the same directions plays out the same. Instead of an
+ * object per board every field is one flat array indexed by the board, so
+ * stepping all boards is a single loop over primitive arrays.
+ *
+ * A board which ends is started again right away with the next seed, its
+ * done flag tells that the episode ended with the step just taken.
+ */
+public class VectorEnvironment
+{
+    public static final float FOOD_REWARD = 1;
+    public static final float DEATH_REWARD = -1;
+
+    private final int boardCount;
+
+    private final int tilesX;
+    private final int tilesY;
+    private final int cellCount;
+
+    // occupied tiles, wordsPerBoard longs per board
+    private final int wordsPerBoard;
+    private final long[] occupied;
+
+    // tiles of the snakes, ringSize slots per board from the head slot on
+    private final int ringSize;
+    private final int ringMask;
+    private final int[] rings;
+    private final int[] ringHeads;
+    private final int[] segmentCounts;
+
+    // free tiles of every board, packed and in the same order as in FreeCellSet, cellCount slots per board
+    private final int[] freeCells;
+    private final int[] freePositions;
+    private final int[] freeCounts;
+
+    private final int[] headXs;
+    private final int[] headYs;
+    private final int[] foods;
+    private final int[] inputDirections;
+    private final int[] moveDirections;
+    private final int[] bodyLengths;
+
+    // state of the random generator of every board, run through one shared Rng
+    private final long[] randomStates;
+    private final Rng random = new Rng( 0 );
+
+    private long nextSeed;
+
+    // results of the last step
+    private final float[] rewards;
+    private final boolean[] dones;
+    private final int[] finalLengths;
+
+    /**
+     * Creates the boards, the first one seeded with the given seed, the others and all later episodes with the following ones.
+     */
+    public VectorEnvironment( int boardCount, int tilesX, int tilesY, long seed )
+    {
+        if( tilesX < 2 || tilesY < 2 )
+            throw new IllegalArgumentException( "board has to be at least 2x2 tiles: " + tilesX + "x" + tilesY );
+
+        this.boardCount = boardCount;
+        this.tilesX = tilesX;
+        this.tilesY = tilesY;
+
+        cellCount = tilesX * tilesY;
+
+        wordsPerBoard = ( cellCount + 63 ) >>> 6;
+        occupied = new long[ boardCount * wordsPerBoard ];
+
+        int powerOfTwo = 1;
+        while( powerOfTwo < cellCount )
+            powerOfTwo <<= 1;
+
+        ringSize = powerOfTwo;
+        ringMask = powerOfTwo - 1;
+        rings = new int[ boardCount * ringSize ];
+        ringHeads = new int[ boardCount ];
+        segmentCounts = new int[ boardCount ];
+
+        freeCells = new int[ boardCount * cellCount ];
+        freePositions = new int[ boardCount * cellCount ];
+        freeCounts = new int[ boardCount ];
+
+        headXs = new int[ boardCount ];
+        headYs = new int[ boardCount ];
+        foods = new int[ boardCount ];
+        inputDirections = new int[ boardCount ];
+        moveDirections = new int[ boardCount ];
+        bodyLengths = new int[ boardCount ];
+
+        randomStates = new long[ boardCount ];
+
+        rewards = new float[ boardCount ];
+        dones = new boolean[ boardCount ];
+        finalLengths = new int[ boardCount ];
+
+        nextSeed = seed;
+
+        for( int board = 0; board < boardCount; board++ )
+            reset( board );
+    }
+
+    public int getBoardCount()
+    {
+        return boardCount;
+    }
+
+    public int getTilesX()
+    {
+        return tilesX;
+    }
+
+    public int getTilesY()
+    {
+        return tilesY;
+    }
+
+    /**
+     * Returns the rewards of the last step, FOOD_REWARD for every food eaten and DEATH_REWARD for running into the snake.
+     * The array is reused by every step.
+     */
+    public float[] getRewards()
+    {
+        return rewards;
+    }
+
+    /**
+     * Returns which boards ended with the last step and were started again. The array is reused by every step.
+     */
+    public boolean[] getDones()
+    {
+        return dones;
+    }
+
+    /**
+     * Returns the length the snake of every board reached in the episode which ended with the last step,
+     * only valid where the done flag is set. The array is reused by every step.
+     */
+    public int[] getFinalLengths()
+    {
+        return finalLengths;
+    }
+
+    public int getHeadX( int board )
+    {
+        return headXs[ board ];
+    }
+
+    public int getHeadY( int board )
+    {
+        return headYs[ board ];
+    }
+
+    public int getFoodX( int board )
+    {
+        return foods[ board ] % tilesX;
+    }
+
+    public int getFoodY( int board )
+    {
+        return foods[ board ] / tilesX;
+    }
+
+    public int getBodyLength( int board )
+    {
+        return bodyLengths[ board ];
+    }
+
+    public int getMoveDirection( int board )
+    {
+        return moveDirections[ board ];
+    }
+
+    public int getSegmentCount( int board )
+    {
+        return segmentCounts[ board ];
+    }
+
+    /**
+     * Returns the tile of the given segment, 0 is the head.
+     */
+    public int getSegment( int board, int index )
+    {
+        return rings[ board * ringSize + ( ( ringHeads[ board ] + index ) & ringMask ) ];
+    }
+
+    public boolean isOccupied( int board, int element )
+    {
+        return ( occupied[ board * wordsPerBoard + ( element >>> 6 ) ] & ( 1L << element ) ) != 0;
+    }
+
+    /**
+     * Moves the snake of every board one tile.
+     *
+     * @param actions the direction of every board as for Simulation.step(), NONE keeps the current one
+     */
+    public void step( int[] actions )
+    {
+        for( int board = 0; board < boardCount; board++ )
+        {
+            float reward = 0;
+            boolean done = false;
+
+            int action = actions[ board ];
+            int moveDirection = moveDirections[ board ];
+
+            // UP, DOWN and LEFT, RIGHT only differ in the lowest bit
+            if( action >= Simulation.UP && action <= Simulation.RIGHT && ( action ^ 1 ) != moveDirection )
+                inputDirections[ board ] = action;
+
+            int ringBase = board * ringSize;
+            int wordBase = board * wordsPerBoard;
+
+            // updateBody(): remove the tail
+            int segmentCount = segmentCounts[ board ] - 1;
+            int tail = rings[ ringBase + ( ( ringHeads[ board ] + segmentCount ) & ringMask ) ];
+            occupied[ wordBase + ( tail >>> 6 ) ] &= ~( 1L << tail );
+            addFreeCell( board, tail );
+
+            int head = headYs[ board ] * tilesX + headXs[ board ];
+
+            // updateHead(), once more for every food eaten
+            while( true )
+            {
+                head = Simulation.getNeighbour( head, moveDirection, tilesX, tilesY );
+
+                moveDirection = inputDirections[ board ];
+
+                int word = wordBase + ( head >>> 6 );
+                long bit = 1L << head;
+
+                if( ( occupied[ word ] & bit ) != 0 )
+                {
+                    reward += DEATH_REWARD;
+                    done = true;
+                    break;
+                }
+
+                occupied[ word ] |= bit;
+                removeFreeCell( board, head );
+
+                int ringHead = ( ringHeads[ board ] - 1 ) & ringMask;
+                rings[ ringBase + ringHead ] = head;
+                ringHeads[ board ] = ringHead;
+                segmentCount++;
+
+                if( head != foods[ board ] )
+                    break;
+
+                // the board is full, nothing left to win
+                if( segmentCount == cellCount )
+                {
+                    reward += FOOD_REWARD;
+                    done = true;
+                    break;
+                }
+
+                segmentCounts[ board ] = segmentCount;
+                generateFood( board );
+
+                bodyLengths[ board ]++;
+                reward += FOOD_REWARD;
+            }
+
+            segmentCounts[ board ] = segmentCount;
+            headXs[ board ] = head % tilesX;
+            headYs[ board ] = head / tilesX;
+            moveDirections[ board ] = moveDirection;
+
+            rewards[ board ] = reward;
+            dones[ board ] = done;
+
+            if( done )
+            {
+                finalLengths[ board ] = bodyLengths[ board ];
+                reset( board );
+            }
+        }
+    }
+
+    /**
+     * Starts the board again with the next seed, the same way a new Simulation does.
+     */
+    private void reset( int board )
+    {
+        int wordBase = board * wordsPerBoard;
+        for( int i = 0; i < wordsPerBoard; i++ )
+            occupied[ wordBase + i ] = 0;
+
+        int cellBase = board * cellCount;
+        for( int cell = 0; cell < cellCount; cell++ )
+        {
+            freeCells[ cellBase + cell ] = cell;
+            freePositions[ cellBase + cell ] = cell;
+        }
+
+        freeCounts[ board ] = cellCount;
+
+        random.setSeed( nextSeed++ );
+
+        int headX = random.nextInt( tilesX - 1 ) + 1;
+        int headY = random.nextInt( tilesY - 1 ) + 1;
+        int head = headY * tilesX + headX;
+
+        randomStates[ board ] = random.getState();
+
+        occupied[ wordBase + ( head >>> 6 ) ] |= 1L << head;
+        removeFreeCell( board, head );
+
+        ringHeads[ board ] = 0;
+        rings[ board * ringSize ] = head;
+        segmentCounts[ board ] = 1;
+
+        headXs[ board ] = headX;
+        headYs[ board ] = headY;
+        inputDirections[ board ] = Simulation.DOWN;
+        moveDirections[ board ] = Simulation.DOWN;
+        bodyLengths[ board ] = 1;
+
+        generateFood( board );
+    }
+
+    /**
+     * Puts the food on a random free tile, picked like Simulation does.
+     */
+    private void generateFood( int board )
+    {
+        random.setState( randomStates[ board ] );
+        int index = random.nextInt( freeCounts[ board ] );
+        randomStates[ board ] = random.getState();
+
+        foods[ board ] = freeCells[ board * cellCount + index ];
+    }
+
+    /**
+     * Adds the tile to the free ones of the board like FreeCellSet.add() does, the tile must not be free yet.
+     */
+    private void addFreeCell( int board, int cell )
+    {
+        int cellBase = board * cellCount;
+        int position = freeCounts[ board ]++;
+
+        freeCells[ cellBase + position ] = cell;
+        freePositions[ cellBase + cell ] = position;
+    }
+
+    /**
+     * Removes the free tile like FreeCellSet.remove() does, by moving the last one into its place.
+     */
+    private void removeFreeCell( int board, int cell )
+    {
+        int cellBase = board * cellCount;
+        int position = freePositions[ cellBase + cell ];
+        int last = freeCells[ cellBase + --freeCounts[ board ] ];
+
+        freeCells[ cellBase + position ] = last;
+        freePositions[ cellBase + last ] = position;
+    }
+}
@@ -0,0 +1,312 @@
+package com.snake2D.game.simulation;
+
+/**
+ * Headless rules of two snakes on one board, competing for the same food.
+ * Both snakes move at the same time on every step(). A snake loses when it
+ * runs into a tile covered by either snake, both lose when their heads meet.
+ * Unlike the single player game a new direction is taken on the same step
+ * and a snake grows by keeping its tail, so neither side moves twice.
+ *
+ * The whole state lives in arrays of a fixed size, so copyFrom() clones it
+ * in microseconds without allocating, which is what rollback needs.
+ */
+public class VersusSimulation
+{
+    public static final int PLAYERS = 2;
+
+    // results besides the number of the winning player
+    public static final int RUNNING = -1;
+    public static final int DRAW = PLAYERS;
+
+    private final int tilesX;
+    private final int tilesY;
+    private final int cellCount;
+
+    // tiles covered by any of the snakes
+    private final Bitboard occupied;
+
+    // tiles which are not covered by any snake
+    private final FreeCellSet freeCells;
+
+    // tiles of every snake from head to tail, large enough to never grow
+    private final BodyRing[] bodies = new BodyRing[ PLAYERS ];
+
+    private final int[] moveDirections = new int[ PLAYERS ];
+    private final int[] scores = new int[ PLAYERS ];
+
+    private int food;
+
+    private int result = RUNNING;
+
+    private long tick = 0;
+
+    private final Rng random;
+
+    public VersusSimulation( int tilesX, int tilesY, long seed )
+    {
+        if( tilesX < 4 || tilesY < 2 )
+            throw new IllegalArgumentException( "board has to be at least 4x2 tiles: " + tilesX + "x" + tilesY );
+
+        this.tilesX = tilesX;
+        this.tilesY = tilesY;
+
+        cellCount = tilesX * tilesY;
+
+        occupied = new Bitboard( cellCount );
+        freeCells = new FreeCellSet( cellCount );
+
+        for( int player = 0; player < PLAYERS; player++ )
+            bodies[ player ] = new BodyRing( cellCount );
+
+        random = new Rng( seed );
+
+        // the snakes start point symmetric to each other in the left and right half
+        occupy( 0, getElement( tilesX / 4, tilesY / 2 ) );
+        occupy( 1, getElement( tilesX - 1 - tilesX / 4, tilesY / 2 ) );
+
+        moveDirections[ 0 ] = Simulation.UP;
+        moveDirections[ 1 ] = Simulation.DOWN;
+
+        generateFood();
+    }
+
+    /**
+     * Creates a copy of the other simulation, e.g. to preallocate snapshots of it.
+     */
+    public VersusSimulation( VersusSimulation other )
+    {
+        this( other.tilesX, other.tilesY, 0 );
+
+        copyFrom( other );
+    }
+
+    /**
+     * Makes this simulation equal to the other one, which has to be of the same board size.
+     */
+    public void copyFrom( VersusSimulation other )
+    {
+        if( other.tilesX != tilesX || other.tilesY != tilesY )
+            throw new IllegalArgumentException( "board size differs: " + other.tilesX + "x" + other.tilesY
+                    + " instead of " + tilesX + "x" + tilesY );
+
+        occupied.copyFrom( other.occupied );
+        freeCells.copyFrom( other.freeCells );
+
+        for( int player = 0; player < PLAYERS; player++ )
+        {
+            bodies[ player ].copyFrom( other.bodies[ player ] );
+            moveDirections[ player ] = other.moveDirections[ player ];
+            scores[ player ] = other.scores[ player ];
+        }
+
+        food = other.food;
+        result = other.result;
+        tick = other.tick;
+
+        random.setState( other.random.getState() );
+    }
+
+    public int getTilesX()
+    {
+        return tilesX;
+    }
+
+    public int getTilesY()
+    {
+        return tilesY;
+    }
+
+    /**
+     * Returns the number of steps taken so far.
+     */
+    public long getTick()
+    {
+        return tick;
+    }
+
+    public int getFood()
+    {
+        return food;
+    }
+
+    public int getHead( int player )
+    {
+        return bodies[ player ].getFirst();
+    }
+
+    public int getSegmentCount( int player )
+    {
+        return bodies[ player ].size();
+    }
+
+    /**
+     * Returns the tile of the given segment of a snake, 0 is the head.
+     */
+    public int getSegment( int player, int index )
+    {
+        return bodies[ player ].get( index );
+    }
+
+    public int getMoveDirection( int player )
+    {
+        return moveDirections[ player ];
+    }
+
+    /**
+     * Returns how much food the snake has eaten.
+     */
+    public int getScore( int player )
+    {
+        return scores[ player ];
+    }
+
+    /**
+     * Returns RUNNING, DRAW or the number of the player who won.
+     */
+    public int getResult()
+    {
+        return result;
+    }
+
+    public boolean isOver()
+    {
+        return result != RUNNING;
+    }
+
+    public int getElement( int elementX, int elementY )
+    {
+        return elementY * tilesX + elementX;
+    }
+
+    public int getElementX( int element )
+    {
+        return element % tilesX;
+    }
+
+    public int getElementY( int element )
+    {
+        return element / tilesX;
+    }
+
+    public boolean isOccupied( int element )
+    {
+        return occupied.get( element );
+    }
+
+    /**
+     * Returns the tile next to the given one in the given direction, across the border if need be.
+     */
+    public int getNeighbour( int element, int direction )
+    {
+        return Simulation.getNeighbour( element, direction, tilesX, tilesY );
+    }
+
+    /**
+     * Returns a hash of the whole state, so peers can tell whether they still agree.
+     */
+    public long getChecksum()
+    {
+        long hash = tick;
+
+        hash = hash * 31 + random.getState();
+        hash = hash * 31 + food;
+        hash = hash * 31 + result;
+
+        for( int player = 0; player < PLAYERS; player++ )
+        {
+            hash = hash * 31 + bodies[ player ].getFirst();
+            hash = hash * 31 + bodies[ player ].size();
+            hash = hash * 31 + moveDirections[ player ];
+            hash = hash * 31 + scores[ player ];
+        }
+
+        for( int i = 0; i < occupied.getWordCount(); i++ )
+            hash = hash * 31 + occupied.getWord( i );
+
+        return hash;
+    }
+
+    /**
+     * Moves both snakes one tile.
+     * A direction of NONE or reversing into the own body keeps the current one.
+     */
+    public void step( int direction0, int direction1 )
+    {
+        if( result != RUNNING )
+            return;
+
+        steer( 0, direction0 );
+        steer( 1, direction1 );
+
+        int head0 = getNeighbour( bodies[ 0 ].getFirst(), moveDirections[ 0 ] );
+        int head1 = getNeighbour( bodies[ 1 ].getFirst(), moveDirections[ 1 ] );
+
+        boolean grows0 = head0 == food;
+        boolean grows1 = head1 == food;
+
+        // the tails move out of the way first, so a snake may follow any tail closely
+        if( !grows0 )
+            vacate( bodies[ 0 ].removeLast() );
+        if( !grows1 )
+            vacate( bodies[ 1 ].removeLast() );
+
+        boolean crashed0 = occupied.get( head0 ) || head0 == head1;
+        boolean crashed1 = occupied.get( head1 ) || head0 == head1;
+
+        tick++;
+
+        if( crashed0 || crashed1 )
+        {
+            result = crashed0 && crashed1 ? DRAW : crashed0 ? 1 : 0;
+            return;
+        }
+
+        occupy( 0, head0 );
+        occupy( 1, head1 );
+
+        if( grows0 || grows1 )
+        {
+            if( grows0 )
+                scores[ 0 ]++;
+            else
+                scores[ 1 ]++;
+
+            // the board is full, the snake which ate more wins
+            if( bodies[ 0 ].size() + bodies[ 1 ].size() == cellCount )
+            {
+                result = scores[ 0 ] == scores[ 1 ] ? DRAW : scores[ 0 ] > scores[ 1 ] ? 0 : 1;
+                return;
+            }
+
+            generateFood();
+        }
+    }
+
+    private void steer( int player, int direction )
+    {
+        if( direction >= Simulation.UP && direction <= Simulation.RIGHT
+                && !Simulation.isOpposite( direction, moveDirections[ player ] ) )
+            moveDirections[ player ] = direction;
+    }
+
+    private void occupy( int player, int element )
+    {
+        occupied.set( element );
+        bodies[ player ].addFirst( element );
+
+        freeCells.remove( element );
+    }
+
+    private void vacate( int element )
+    {
+        occupied.clear( element );
+
+        freeCells.add( element );
+    }
+
+    private void generateFood()
+    {
+        // pick a random tile which is not covered by any snake
+        food = freeCells.get( random.nextInt( freeCells.size() ) );
+    }
+}